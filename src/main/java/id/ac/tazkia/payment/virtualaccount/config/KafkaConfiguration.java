@@ -0,0 +1,88 @@
+package id.ac.tazkia.payment.virtualaccount.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import id.ac.tazkia.payment.virtualaccount.helper.KafkaCodec;
+import id.ac.tazkia.payment.virtualaccount.helper.StripedExecutor;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+
+import java.util.Map;
+
+/**
+ * Setiap topic yang banyak message-nya punya container factory sendiri,
+ * supaya jumlah consumer thread dan jumlah record per poll bisa diatur per topic.
+ * Konfigurasi lainnya tetap diambil dari spring.kafka.*
+ */
+@Configuration
+public class KafkaConfiguration {
+
+    @Value("${kafka.tagihan.request.batch-size}") private Integer tagihanRequestBatchSize;
+    @Value("${kafka.tagihan.request.concurrency}") private Integer tagihanRequestConcurrency;
+    @Value("${kafka.va.response.batch-size}") private Integer vaResponseBatchSize;
+    @Value("${kafka.va.response.concurrency}") private Integer vaResponseConcurrency;
+    @Value("${kafka.va.payment.batch-size}") private Integer vaPaymentBatchSize;
+    @Value("${kafka.va.payment.concurrency}") private Integer vaPaymentConcurrency;
+    @Value("${kafka.listener.jumlah-jalur}") private Integer jumlahJalur;
+
+    @Autowired private ConcurrentKafkaListenerContainerFactoryConfigurer configurer;
+    @Autowired private KafkaProperties kafkaProperties;
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> debiturKafkaListenerContainerFactory() {
+        return factory(null, 1, false);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory() {
+        return factory(tagihanRequestBatchSize, tagihanRequestConcurrency, true);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> vaResponseKafkaListenerContainerFactory() {
+        return factory(vaResponseBatchSize, vaResponseConcurrency, true);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> vaPaymentKafkaListenerContainerFactory() {
+        return factory(vaPaymentBatchSize, vaPaymentConcurrency, true);
+    }
+
+    @Bean
+    public KafkaCodec kafkaCodec(ObjectMapper objectMapper) {
+        return new KafkaCodec(objectMapper);
+    }
+
+    /**
+     * Dipakai bersama oleh listener VA response dan pembayaran,
+     * message untuk nomor tagihan yang sama diproses berurutan.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public StripedExecutor listenerExecutor() {
+        return new StripedExecutor("listener", jumlahJalur);
+    }
+
+    /**
+     * Value message dibaca sebagai byte[], di-decode oleh KafkaCodec.
+     */
+    private ConcurrentKafkaListenerContainerFactory<Object, Object> factory(Integer batchSize, Integer concurrency, boolean batch) {
+        Map<String, Object> konfigurasi = kafkaProperties.buildConsumerProperties();
+        konfigurasi.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        if (batchSize != null) {
+            konfigurasi.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchSize);
+        }
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, new DefaultKafkaConsumerFactory<>(konfigurasi));
+        factory.setBatchListener(batch);
+        factory.setConcurrency(concurrency);
+        return factory;
+    }
+}
@@ -0,0 +1,33 @@
+package id.ac.tazkia.payment.virtualaccount.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Tanpa konfigurasi ini semua method @Scheduled berjalan bergantian di satu thread,
+ * sehingga satu query yang lambat (misalnya pemeriksaan selisih rekap) menunda heartbeat lease cluster
+ * dan heartbeat import job sampai lease-nya kedaluwarsa.
+ * Jumlah thread dibuat tidak kurang dari jumlah task, supaya setiap task selalu mendapat thread.
+ */
+@Configuration
+public class SchedulingConfiguration implements SchedulingConfigurer {
+
+    @Value("${scheduler.jumlah-thread}") private Integer jumlahThread;
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(jumlahThread);
+        scheduler.setThreadNamePrefix("scheduler-");
+        return scheduler;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.setTaskScheduler(taskScheduler());
+    }
+}
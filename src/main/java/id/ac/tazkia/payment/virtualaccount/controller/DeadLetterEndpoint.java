@@ -0,0 +1,29 @@
+package id.ac.tazkia.payment.virtualaccount.controller;
+
+import id.ac.tazkia.payment.virtualaccount.dto.StatusReplay;
+import id.ac.tazkia.payment.virtualaccount.service.DeadLetterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "deadletter")
+public class DeadLetterEndpoint {
+
+    @Autowired private DeadLetterService deadLetterService;
+
+    @ReadOperation
+    public StatusReplay statusReplay() {
+        return deadLetterService.getStatusReplay();
+    }
+
+    /**
+     * @param topic topic asal, bukan nama dead letter topic-nya
+     */
+    @WriteOperation
+    public StatusReplay replay(String topic, Integer jumlah, Integer perDetik) {
+        return deadLetterService.mulaiReplay(topic, jumlah, perDetik);
+    }
+}
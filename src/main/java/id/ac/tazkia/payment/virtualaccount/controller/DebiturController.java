@@ -3,6 +3,9 @@ package id.ac.tazkia.payment.virtualaccount.controller;
 import id.ac.tazkia.payment.virtualaccount.dao.DebiturDao;
 import id.ac.tazkia.payment.virtualaccount.dto.UploadError;
 import id.ac.tazkia.payment.virtualaccount.entity.Debitur;
+import id.ac.tazkia.payment.virtualaccount.entity.ImportJob;
+import id.ac.tazkia.payment.virtualaccount.service.DebiturCacheService;
+import id.ac.tazkia.payment.virtualaccount.service.ImportJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,23 +14,19 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.ModelMap;
-import org.springframework.util.StringUtils;
-import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.BindingResult;
-import org.springframework.validation.Validator;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.support.SessionStatus;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.validation.Valid;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InputStream;
+import java.util.Collections;
 
 @Transactional
 @Controller
@@ -39,7 +38,10 @@ public class DebiturController {
     private DebiturDao debiturDao;
 
     @Autowired
-    private Validator validator;
+    private DebiturCacheService debiturCacheService;
+
+    @Autowired
+    private ImportJobService importJobService;
 
     @PreAuthorize("hasAuthority('VIEW_DEBITUR')")
     @GetMapping("/api/debitur/")
@@ -93,6 +95,7 @@ public class DebiturController {
         }
 
         debiturDao.save(debitur);
+        debiturCacheService.invalidasi(debitur);
         status.setComplete();
         return "redirect:list";
     }
@@ -100,6 +103,7 @@ public class DebiturController {
     @PreAuthorize("hasAuthority('EDIT_DEBITUR')")
     @GetMapping("/debitur/delete{id}")
     public String hapusData(@RequestParam(value = "id", required = false) String id) {
+        debiturDao.findById(id).ifPresent(debiturCacheService::invalidasi);
         debiturDao.deleteById(id);
 
         return "redirect:/debitur/list";
@@ -112,6 +116,7 @@ public class DebiturController {
     }
 
     @PostMapping("/debitur/upload/form")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public String processFormUpload(@RequestParam(required = false) Boolean pakaiHeader,
             MultipartFile fileDebitur,
             RedirectAttributes redirectAttrs) {
@@ -119,85 +124,21 @@ public class DebiturController {
         LOGGER.debug("Nama File : {}", fileDebitur.getName());
         LOGGER.debug("Ukuran File : {}", fileDebitur.getSize());
 
-        List<UploadError> errors = new ArrayList<>();
-        Integer baris = 0;
-
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(fileDebitur.getInputStream()));
-            String content;
-
-            if (adaHeader(pakaiHeader)) {
-                content = reader.readLine(); //NOSONAR
-            }
-
-            while ((content = reader.readLine()) != null) {
-                baris++;
-                String[] data = content.split(",", -1);
-                if (rowInvalid(data, errors, baris, content)) continue;
-
-                Debitur d = new Debitur();
-                d.setNomorDebitur(data[0]);
-                d.setNama(data[1]);
-
-                if (StringUtils.hasText(data[3])) {
-                    d.setNoHp(data[3]);
-                }
-                
-                debiturDao.save(d);
-            }
+        // file diproses di background, progress dan hasilnya ditampilkan di halaman hasil import
+        try (InputStream input = fileDebitur.getInputStream()) {
+            ImportJob job = importJobService.kirimDebitur(input,
+                    fileDebitur.getOriginalFilename(), adaHeader(pakaiHeader));
+            return "redirect:/import/hasil?id=" + job.getId();
         } catch (IOException err) {
             LOGGER.warn(err.getMessage(), err);
-            errors.add(new UploadError(0, "Format file salah", err.getMessage()));
+            redirectAttrs.addFlashAttribute("errors",
+                    Collections.singletonList(new UploadError(0, "Format file salah", err.getMessage())));
+            return "redirect:/import/hasil";
         }
-
-        redirectAttrs
-                .addFlashAttribute("jumlahBaris", baris)
-                .addFlashAttribute("jumlahSukses", baris - errors.size())
-                .addFlashAttribute("jumlahError", errors.size())
-                .addFlashAttribute("errors", errors);
-
-        return "redirect:hasil";
-    }
-
-    private boolean rowInvalid(String[] data, List<UploadError> errors, Integer baris, String content) {
-        if (data.length != 4) {
-            errors.add(new UploadError(baris, "Format data salah", content));
-            return true;
-        }
-        if (!StringUtils.hasText(data[0])) {
-            errors.add(new UploadError(baris, "Nomor debitur harus diisi", content));
-            return true;
-        }
-        if (!StringUtils.hasText(data[1])) {
-            errors.add(new UploadError(baris, "Nama debitur harus diisi", content));
-            return true;
-        }
-        if (debiturDao.findByNomorDebitur(data[0]) != null) {
-            errors.add(new UploadError(baris, "Nomor debitur " + data[0] + " sudah digunakan", content));
-            return true;
-        }
-        
-        if(StringUtils.hasText(data[2])) {
-            Debitur d = new Debitur();
-            d.setEmail(data[2]);
-            BeanPropertyBindingResult binder = new BeanPropertyBindingResult(d, "debitur");
-            validator.validate(d, binder);
-
-            if (binder.hasFieldErrors("email")) {
-                errors.add(new UploadError(baris, "Format email salah", content));
-                return true;
-            }
-        }
-        return false;
     }
 
     private static boolean adaHeader(Boolean pakaiHeader) {
         return pakaiHeader != null && pakaiHeader;
     }
 
-    @GetMapping("/debitur/upload/hasil")
-    public void hasilFormUpload() {
-        // tidak perlu kirim data ke view
-    }
-
 }
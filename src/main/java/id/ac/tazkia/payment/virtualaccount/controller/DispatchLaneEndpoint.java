@@ -0,0 +1,22 @@
+package id.ac.tazkia.payment.virtualaccount.controller;
+
+import id.ac.tazkia.payment.virtualaccount.dto.StatusDispatchLane;
+import id.ac.tazkia.payment.virtualaccount.service.DispatchLaneService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@Endpoint(id = "lanes")
+public class DispatchLaneEndpoint {
+
+    @Autowired private DispatchLaneService dispatchLaneService;
+
+    @ReadOperation
+    public List<StatusDispatchLane> daftarLane() {
+        return dispatchLaneService.daftarStatus();
+    }
+}
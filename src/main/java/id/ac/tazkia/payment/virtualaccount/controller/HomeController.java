@@ -1,9 +1,6 @@
 package id.ac.tazkia.payment.virtualaccount.controller;
 
-import id.ac.tazkia.payment.virtualaccount.dao.TagihanDao;
-import id.ac.tazkia.payment.virtualaccount.dto.LaporanTagihan;
-import id.ac.tazkia.payment.virtualaccount.dto.RekapTagihan;
-import id.ac.tazkia.payment.virtualaccount.entity.StatusPembayaran;
+import id.ac.tazkia.payment.virtualaccount.service.RekapTagihanService;
 import java.io.IOException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,16 +11,11 @@ import org.springframework.util.FileCopyUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 
 import javax.servlet.http.HttpServletResponse;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.YearMonth;
 
 @Controller
 public class HomeController {
-    private static final String TANGGAL_LIVE = "20180101";
+    private static final YearMonth BULAN_LIVE = YearMonth.of(2018, 1);
 
     @Value("classpath:sample/tagihan.csv")
     private Resource contohFileTagihan;
@@ -31,46 +23,13 @@ public class HomeController {
     @Value("classpath:sample/debitur.csv")
     private Resource contohFileDebitur;
 
-    @Autowired private TagihanDao tagihanDao;
+    @Autowired private RekapTagihanService rekapTagihanService;
 
     @GetMapping("/home")
     public ModelMap home(){
-        List<RekapTagihan> rekap = tagihanDao
-                .rekapTagihan(LocalDate.parse(TANGGAL_LIVE, DateTimeFormatter.BASIC_ISO_DATE),
-                        LocalDate.now());
-
-        Map<String, LaporanTagihan> daftarLaporanTagihan = new LinkedHashMap<>();
-
-        for (RekapTagihan r : rekap) {
-            LaporanTagihan laporanTagihan = daftarLaporanTagihan.get(r.getJenisTagihan().getId());
-            if (laporanTagihan == null) {
-                laporanTagihan = new LaporanTagihan();
-                laporanTagihan.setJenisTagihan(r.getJenisTagihan());
-                daftarLaporanTagihan.put(r.getJenisTagihan().getId(), laporanTagihan);
-            }
-
-            if (!StatusPembayaran.LUNAS.equals(r.getStatusPembayaran())) {
-                laporanTagihan.setJumlahTagihanBelumLunas(
-                        laporanTagihan.getJumlahTagihanBelumLunas()
-                                + r.getJumlahTagihan());
-            }
-
-            if (StatusPembayaran.LUNAS.equals(r.getStatusPembayaran())) {
-                laporanTagihan.setJumlahTagihanLunas(
-                        laporanTagihan.getJumlahTagihanLunas()
-                                + r.getJumlahTagihan());
-            }
-
-            laporanTagihan.setNilaiTagihan(
-                    laporanTagihan.getNilaiTagihan()
-                            .add(r.getNilaiTagihan()));
-
-            laporanTagihan.setNilaiPembayaran(
-                    laporanTagihan.getNilaiPembayaran()
-                            .add(r.getNilaiPembayaran()));
-        }
         return new ModelMap()
-                .addAttribute("daftarLaporanTagihan", new ArrayList<>(daftarLaporanTagihan.values()))
+                .addAttribute("daftarLaporanTagihan",
+                        rekapTagihanService.laporanPerJenisTagihan(BULAN_LIVE, YearMonth.now()))
                 .addAttribute("pageTitle", "Dashboard");
     }
 
@@ -0,0 +1,66 @@
+package id.ac.tazkia.payment.virtualaccount.controller;
+
+import id.ac.tazkia.payment.virtualaccount.dao.ImportJobDao;
+import id.ac.tazkia.payment.virtualaccount.dao.ImportJobErrorDao;
+import id.ac.tazkia.payment.virtualaccount.dto.ProgressImport;
+import id.ac.tazkia.payment.virtualaccount.entity.ImportJob;
+import id.ac.tazkia.payment.virtualaccount.entity.ImportJobError;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Progress dan hasil import file yang dijalankan di background oleh ImportJobService.
+ */
+@Controller
+public class ImportJobController {
+
+    @Autowired private ImportJobDao importJobDao;
+    @Autowired private ImportJobErrorDao importJobErrorDao;
+
+    @GetMapping("/import/hasil")
+    public ModelMap hasilImport(@RequestParam(value = "id", required = false) String id,
+                                @PageableDefault(size = 100) Pageable page, ModelMap mm) {
+        ImportJob job = id == null ? null : importJobDao.findById(id).orElse(null);
+        if (job != null) {
+            Page<ImportJobError> errors = importJobErrorDao.findByImportJobOrderByBaris(job, page);
+            mm.addAttribute("job", job)
+                    .addAttribute("halamanError", errors)
+                    .addAttribute("errors", errors.getContent());
+        }
+        return mm;
+    }
+
+    @GetMapping("/api/import/{id}")
+    @ResponseBody
+    public ResponseEntity<ProgressImport> progressImport(@PathVariable String id) {
+        return importJobDao.findById(id)
+                .map(job -> ResponseEntity.ok(progress(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private static ProgressImport progress(ImportJob job) {
+        ProgressImport p = new ProgressImport();
+        p.setId(job.getId());
+        p.setJenis(job.getJenis());
+        p.setNamaFile(job.getNamaFile());
+        p.setStatus(job.getStatus());
+        p.setPerkiraanJumlahBaris(job.getPerkiraanJumlahBaris());
+        p.setJumlahBaris(job.getBarisTerakhir());
+        p.setJumlahSukses(job.getJumlahSukses());
+        p.setJumlahError(job.getJumlahError());
+        p.setKeterangan(job.getKeterangan());
+        p.setWaktuDibuat(job.getWaktuDibuat());
+        p.setWaktuMulai(job.getWaktuMulai());
+        p.setWaktuSelesai(job.getWaktuSelesai());
+        return p;
+    }
+}
@@ -4,6 +4,7 @@ import id.ac.tazkia.payment.virtualaccount.dao.BankDao;
 import id.ac.tazkia.payment.virtualaccount.dao.JenisTagihanDao;
 import id.ac.tazkia.payment.virtualaccount.entity.Bank;
 import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
+import id.ac.tazkia.payment.virtualaccount.service.ReferensiDataService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -33,6 +34,9 @@ public class JenisTagihanController {
     @Autowired
     private BankDao bankDao;
 
+    @Autowired
+    private ReferensiDataService referensiDataService;
+
     @GetMapping("/api/client/jenistagihan/")
     public Page<JenisTagihan> findAll(Pageable page) {
         return jenisTagihanDao.findAll(page);
@@ -65,6 +69,7 @@ public class JenisTagihanController {
         }
 
         jenisTagihanDao.save(jenisTagihan);
+        referensiDataService.invalidasi();
         status.setComplete();
         return "redirect:list";
     }
@@ -95,6 +100,7 @@ public class JenisTagihanController {
 
         jenisTagihan.getDaftarBank().add(bank);
         jenisTagihanDao.save(jenisTagihan);
+        referensiDataService.invalidasi();
         return REDIRECT_JENIS_TAGIHAN_BANK + jenisTagihan.getId();
     }
     
@@ -110,6 +116,7 @@ public class JenisTagihanController {
 
         jenisTagihan.getDaftarBank().remove(bank);
         jenisTagihanDao.save(jenisTagihan);
+        referensiDataService.invalidasi();
 
         return REDIRECT_JENIS_TAGIHAN_BANK + jenisTagihan.getId();
     }
@@ -2,6 +2,7 @@ package id.ac.tazkia.payment.virtualaccount.controller;
 
 import id.ac.tazkia.payment.virtualaccount.dao.KodeBiayaDao;
 import id.ac.tazkia.payment.virtualaccount.entity.KodeBiaya;
+import id.ac.tazkia.payment.virtualaccount.service.ReferensiDataService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Controller;
@@ -14,6 +15,7 @@ import org.springframework.web.bind.support.SessionStatus;
 @RequestMapping("/kode_biaya")
 public class KodeBiayaController {
     @Autowired private KodeBiayaDao kodeBiayaDao;
+    @Autowired private ReferensiDataService referensiDataService;
 
     @GetMapping("/list")
     public ModelMap daftarKodeBiaya(Pageable pageable) {
@@ -36,6 +38,7 @@ public class KodeBiayaController {
         }
 
         kodeBiayaDao.save(kodeBiaya);
+        referensiDataService.invalidasi();
         status.setComplete();
         return "redirect:list";
     }
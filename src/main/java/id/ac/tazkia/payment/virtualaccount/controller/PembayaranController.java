@@ -2,11 +2,17 @@ package id.ac.tazkia.payment.virtualaccount.controller;
 
 import id.ac.tazkia.payment.virtualaccount.dao.JenisTagihanDao;
 import id.ac.tazkia.payment.virtualaccount.dao.PembayaranDao;
+import id.ac.tazkia.payment.virtualaccount.dao.RekapPembayaranHarianDao;
+import id.ac.tazkia.payment.virtualaccount.dto.FormatEkspor;
 import id.ac.tazkia.payment.virtualaccount.dto.RekapPembayaran;
+import id.ac.tazkia.payment.virtualaccount.dto.RekapPembayaranPerKategori;
 import id.ac.tazkia.payment.virtualaccount.entity.Debitur;
 import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
 import id.ac.tazkia.payment.virtualaccount.entity.Pembayaran;
 import id.ac.tazkia.payment.virtualaccount.entity.Tagihan;
+import id.ac.tazkia.payment.virtualaccount.service.EksporService;
+import id.ac.tazkia.payment.virtualaccount.service.ReferensiDataService;
+import id.ac.tazkia.payment.virtualaccount.service.RekonsiliasiService;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -18,6 +24,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -37,6 +44,10 @@ public class PembayaranController {
 
     @Autowired private PembayaranDao pembayaranDao;
     @Autowired private JenisTagihanDao jenisTagihanDao;
+    @Autowired private EksporService eksporService;
+    @Autowired private RekapPembayaranHarianDao rekapPembayaranHarianDao;
+    @Autowired private ReferensiDataService referensiDataService;
+    @Autowired private RekonsiliasiService rekonsiliasiService;
 
     @ModelAttribute("listJenisTagihan")
     public Iterable<JenisTagihan> daftarJenisTagihan() {
@@ -136,70 +147,73 @@ public class PembayaranController {
         }
 
         SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMdd");
-        for (RekapPembayaran r : pembayaranDao.rekapPembayaran(mulai.atStartOfDay(), sampai.plusDays(1).atStartOfDay())) {
-            r.setJumlah(r.getJumlah());
+        for (RekapPembayaran r : rekapPembayaranHarianDao.rekapHarian(mulai, sampai)) {
             hasil.put(formatter.format(r.getTanggal()), r);
         }
 
         return new ArrayList<>(hasil.values());
     }
 
+    @GetMapping("/rekap/bank")
+    @ResponseBody
+    public List<RekapPembayaranPerKategori> rekapPembayaranPerBank(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate mulai,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate sampai) {
+        List<RekapPembayaranPerKategori> hasil = rekapPembayaranHarianDao.rekapPerBank(mulai, sampai);
+        for (RekapPembayaranPerKategori r : hasil) {
+            // pembayaran tanpa bank dicatat dengan id '-'
+            if (!"-".equals(r.getId())) {
+                referensiDataService.bank(r.getId()).ifPresent(b -> r.setNama(b.getNama()));
+            }
+        }
+        return hasil;
+    }
+
+    @GetMapping("/rekap/jenis")
+    @ResponseBody
+    public List<RekapPembayaranPerKategori> rekapPembayaranPerJenisTagihan(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate mulai,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate sampai) {
+        List<RekapPembayaranPerKategori> hasil = rekapPembayaranHarianDao.rekapPerJenisTagihan(mulai, sampai);
+        for (RekapPembayaranPerKategori r : hasil) {
+            referensiDataService.jenisTagihan(r.getId()).ifPresent(j -> r.setNama(j.getNama()));
+        }
+        return hasil;
+    }
+
     @GetMapping("/csv")
     public void rekapPembayaranCsv(@RequestParam JenisTagihan jenis,
                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate mulai,
                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate sampai,
+                                   @RequestParam(defaultValue = "CSV") FormatEkspor format,
                                    HttpServletResponse response) throws IOException {
-        String filename = "pembayaran-"
+        String filename = format.namaFile("pembayaran-"
                 +mulai.format(DateTimeFormatter.BASIC_ISO_DATE)
                 +"-"
-                +sampai.format(DateTimeFormatter.BASIC_ISO_DATE)
-                +".csv";
+                +sampai.format(DateTimeFormatter.BASIC_ISO_DATE));
         response.setHeader("Content-Disposition", "attachment;filename="+filename);
-        response.setContentType("text/csv");
-        response.getWriter().println("No,NIM,Nama,Bank,Nominal,Tanggal Transfer,Waktu Transfer,Referensi");
-
-
-        Iterable<Pembayaran> dataPembayaran = pembayaranDao
-                .findByTagihanJenisTagihanAndWaktuTransaksiBetweenOrderByWaktuTransaksi(jenis,mulai.atStartOfDay(), sampai.plusDays(1).atStartOfDay());
-
-        Integer baris = 0;
-        BigDecimal total = BigDecimal.ZERO;
-        for (Pembayaran p : dataPembayaran) {
-            baris++;
-            total = total.add(p.getJumlah());
-            response.getWriter().print(baris);
-            response.getWriter().print(",");
-            response.getWriter().print(p.getTagihan().getDebitur().getNomorDebitur());
-            response.getWriter().print(",");
-            response.getWriter().print(p.getTagihan().getDebitur().getNama());
-            response.getWriter().print(",");
-            response.getWriter().print(p.getBank().getNama());
-            response.getWriter().print(",");
-            response.getWriter().print(p.getJumlah().setScale(0).toPlainString());
-            response.getWriter().print(",");
-            response.getWriter().print(p.getWaktuTransaksi().format(DateTimeFormatter.ISO_LOCAL_DATE));
-            response.getWriter().print(",");
-            response.getWriter().print(p.getWaktuTransaksi().format(DateTimeFormatter.ISO_LOCAL_TIME));
-            response.getWriter().print(",");
-            response.getWriter().print(p.getReferensi());
-            response.getWriter().println();
-        }
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
 
-        response.getWriter().print("-");
-        response.getWriter().print(",");
-        response.getWriter().print("-");
-        response.getWriter().print(",");
-        response.getWriter().print("Jumlah");
-        response.getWriter().print(",");
-        response.getWriter().print("-");
-        response.getWriter().print(",");
-        response.getWriter().print(total.setScale(0).toPlainString());
-        response.getWriter().print(",");
-        response.getWriter().print("-");
-        response.getWriter().print(",");
-        response.getWriter().print("-");
-        response.getWriter().println();
-
-        response.getWriter().flush();
+        eksporService.eksporPembayaran(jenis, mulai, sampai, format, response.getOutputStream());
+    }
+
+    @PreAuthorize("hasAuthority('VIEW_PEMBAYARAN')")
+    @PostMapping("/rekonsiliasi")
+    public void rekonsiliasi(@RequestParam("fileMutasi") MultipartFile fileMutasi,
+                             @RequestParam(required = false) Boolean pakaiHeader,
+                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate mulai,
+                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate sampai,
+                             HttpServletResponse response) throws IOException {
+        String filename = FormatEkspor.CSV.namaFile("rekonsiliasi-"
+                + mulai.format(DateTimeFormatter.BASIC_ISO_DATE)
+                + "-"
+                + sampai.format(DateTimeFormatter.BASIC_ISO_DATE));
+        response.setHeader("Content-Disposition", "attachment;filename=" + filename);
+        response.setContentType(FormatEkspor.CSV.getContentType());
+        response.setCharacterEncoding("UTF-8");
+
+        rekonsiliasiService.rekonsiliasi(fileMutasi.getInputStream(), pakaiHeader != null && pakaiHeader,
+                mulai, sampai, response.getOutputStream());
     }
 }
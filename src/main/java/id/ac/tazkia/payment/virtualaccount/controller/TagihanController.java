@@ -1,17 +1,22 @@
 package id.ac.tazkia.payment.virtualaccount.controller;
 
 import id.ac.tazkia.payment.virtualaccount.dao.*;
+import id.ac.tazkia.payment.virtualaccount.dto.FormatEkspor;
 import id.ac.tazkia.payment.virtualaccount.dto.UpdateTagihan;
 import id.ac.tazkia.payment.virtualaccount.dto.UploadError;
 import id.ac.tazkia.payment.virtualaccount.entity.*;
+import id.ac.tazkia.payment.virtualaccount.service.EksporService;
+import id.ac.tazkia.payment.virtualaccount.service.ImportJobService;
 import id.ac.tazkia.payment.virtualaccount.service.KafkaSenderService;
 import id.ac.tazkia.payment.virtualaccount.service.TagihanService;
+import id.ac.tazkia.payment.virtualaccount.service.UmurTagihanService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.ui.ModelMap;
@@ -21,16 +26,13 @@ import org.springframework.web.bind.support.SessionStatus;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.math.BigDecimal;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
 
 @Controller
 @RequestMapping("/tagihan")
@@ -53,6 +55,9 @@ public class TagihanController {
     @Autowired
     private JenisTagihanDao jenisTagihanDao;
     @Autowired private DebiturDao debiturDao;
+    @Autowired private ImportJobService importJobService;
+    @Autowired private EksporService eksporService;
+    @Autowired private UmurTagihanService umurTagihanService;
 
     @GetMapping("/list")
     public ModelMap listTagihan(@RequestParam(value = "jenis", required = false) JenisTagihan jenisTagihan,
@@ -198,6 +203,45 @@ public class TagihanController {
         return REDIRECT_LIST_VIEW;
     }
 
+    @GetMapping("/ekspor")
+    public void eksporTagihan(@RequestParam JenisTagihan jenis,
+                              @RequestParam(defaultValue = "false") Boolean lunas,
+                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate mulai,
+                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate sampai,
+                              @RequestParam(defaultValue = "CSV") FormatEkspor format,
+                              HttpServletResponse response) throws IOException {
+        String filename = format.namaFile("tagihan-" + jenis.getKode()
+                + (lunas ? "-lunas-" : "-outstanding-")
+                + mulai.format(DateTimeFormatter.BASIC_ISO_DATE)
+                + "-" + sampai.format(DateTimeFormatter.BASIC_ISO_DATE));
+        response.setHeader("Content-Disposition", "attachment;filename=" + filename);
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+
+        eksporService.eksporTagihan(jenis, lunas, mulai, sampai, format, response.getOutputStream());
+    }
+
+    @GetMapping("/umur")
+    public ModelMap laporanUmurTagihan(@RequestParam(required = false)
+                                       @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tanggal) {
+        LocalDate tanggalLaporan = tanggal == null ? LocalDate.now() : tanggal;
+        return new ModelMap()
+                .addAttribute("tanggal", tanggalLaporan)
+                .addAttribute("daftarUmurTagihan", umurTagihanService.hitung(tanggalLaporan));
+    }
+
+    @GetMapping("/umur/ekspor")
+    public void eksporUmurTagihan(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tanggal,
+                                  @RequestParam(defaultValue = "CSV") FormatEkspor format,
+                                  HttpServletResponse response) throws IOException {
+        String filename = format.namaFile("umur-tagihan-" + tanggal.format(DateTimeFormatter.BASIC_ISO_DATE));
+        response.setHeader("Content-Disposition", "attachment;filename=" + filename);
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+
+        eksporService.eksporUmurTagihan(tanggal, format, response.getOutputStream());
+    }
+
     @GetMapping("/upload/form")
     public void displayFormUpload(){
         // tidak ada data
@@ -209,86 +253,24 @@ public class TagihanController {
                               @RequestParam(required = false) Boolean pakaiHeader,
                               MultipartFile fileTagihan,
                               RedirectAttributes redirectAttrs) {
-        List<UploadError> errors = new ArrayList<>();
-        Integer baris = 0;
-
         if(jenisTagihan == null){
-            errors.add(new UploadError(baris, "Jenis tagihan harus diisi", ""));
-            redirectAttrs
-                    .addFlashAttribute("jumlahBaris", 0)
-                    .addFlashAttribute("jumlahSukses", 0)
-                    .addFlashAttribute("jumlahError", errors.size())
-                    .addFlashAttribute("errors", errors);
+            redirectAttrs.addFlashAttribute("errors",
+                    Collections.singletonList(new UploadError(0, "Jenis tagihan harus diisi", "")));
             return REDIRECT_HASIL_VIEW;
         }
 
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(fileTagihan.getInputStream()));
-            String content;
-
-            if((pakaiHeader != null && pakaiHeader)){
-                content = reader.readLine(); //NOSONAR
-            }
-
-            while ((content = reader.readLine()) != null) {
-                baris++;
-                String[] data = content.split(",");
-                if (data.length != 4) {
-                    errors.add(new UploadError(baris, "Format data salah", content));
-                    continue;
-                }
-
-                Tagihan t = new Tagihan();
-                t.setJenisTagihan(jenisTagihan);
-                t.setKodeBiaya(kodeBiaya);
-                t.setTanggalTagihan(LocalDate.now());
-                t.setNomor(data[0]);
-
-                Debitur d = debiturDao.findByNomorDebitur(data[0]);
-                if (d == null) {
-                    errors.add(new UploadError(baris, "Debitur "+data[1]+" tidak terdaftar", content));
-                    continue;
-                }
-
-                t.setDebitur(d);
-                t.setKeterangan(data[1]);
-
-                try {
-                    t.setNilaiTagihan(new BigDecimal(data[2]));
-                } catch (NumberFormatException ex) {
-                    errors.add(new UploadError(baris, "Format nilai tagihan salah", content));
-                    continue;
-                }
-
-                try {
-                    LocalDate tanggalJatuhTempo = LocalDate.parse(data[3], DateTimeFormatter.ISO_LOCAL_DATE);
-                    t.setTanggalJatuhTempo(tanggalJatuhTempo);
-                } catch (DateTimeParseException ex) {
-                    errors.add(new UploadError(baris, "Format tanggal salah", content));
-                    continue;
-                }
-
-                tagihanService.saveTagihan(t);
-                
-            }
+        // file diproses di background, progress dan hasilnya ditampilkan di halaman hasil import
+        try (InputStream input = fileTagihan.getInputStream()) {
+            ImportJob job = importJobService.kirimTagihan(jenisTagihan, kodeBiaya, input,
+                    fileTagihan.getOriginalFilename(), pakaiHeader != null && pakaiHeader);
+            return REDIRECT_HASIL_VIEW + "?id=" + job.getId();
         } catch (IOException err){
             LOGGER.warn(err.getMessage(), err);
-            errors.add(new UploadError(0, "Format file salah", ""));
+            redirectAttrs.addFlashAttribute("errors",
+                    Collections.singletonList(new UploadError(0, "Format file salah", err.getMessage())));
+            return REDIRECT_HASIL_VIEW;
         }
-
-        redirectAttrs
-                .addFlashAttribute("jumlahBaris", baris)
-                .addFlashAttribute("jumlahSukses", baris - errors.size())
-                .addFlashAttribute("jumlahError", errors.size())
-                .addFlashAttribute("errors", errors);
-
-        return REDIRECT_HASIL_VIEW;
-    }
-    private static final String REDIRECT_HASIL_VIEW = "redirect:hasil";
-
-    @GetMapping("/upload/hasil")
-    public void hasilFormUpload(){
-        // tampilkan form
     }
+    private static final String REDIRECT_HASIL_VIEW = "redirect:/import/hasil";
 
 }
@@ -1,11 +1,15 @@
 package id.ac.tazkia.payment.virtualaccount.controller;
 
 import id.ac.tazkia.payment.virtualaccount.dao.VirtualAccountDao;
+import id.ac.tazkia.payment.virtualaccount.dto.FormatEkspor;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
 import id.ac.tazkia.payment.virtualaccount.entity.Tagihan;
 import id.ac.tazkia.payment.virtualaccount.entity.VaStatus;
 import id.ac.tazkia.payment.virtualaccount.entity.VirtualAccount;
+import id.ac.tazkia.payment.virtualaccount.service.EksporService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,11 +17,17 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
 @Controller
 @RequestMapping("/va")
 public class VirtualAccountController {
 
     @Autowired private VirtualAccountDao virtualAccountDao;
+    @Autowired private EksporService eksporService;
 
     @GetMapping("/list")
     public ModelMap daftarVa(@RequestParam Tagihan tagihan, Pageable page) {
@@ -26,12 +36,31 @@ public class VirtualAccountController {
                         virtualAccountDao.findByTagihan(tagihan, page));
     }
 
+    @GetMapping("/ekspor")
+    public void eksporVa(@RequestParam JenisTagihan jenis,
+                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate mulai,
+                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate sampai,
+                         @RequestParam(defaultValue = "CSV") FormatEkspor format,
+                         HttpServletResponse response) throws IOException {
+        String filename = format.namaFile("va-" + jenis.getKode() + "-"
+                + mulai.format(DateTimeFormatter.BASIC_ISO_DATE)
+                + "-" + sampai.format(DateTimeFormatter.BASIC_ISO_DATE));
+        response.setHeader("Content-Disposition", "attachment;filename=" + filename);
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+
+        eksporService.eksporVirtualAccount(jenis, mulai, sampai, format, response.getOutputStream());
+    }
+
     @PostMapping("/retry")
     public String retryCreateVa(@RequestParam(name = "id") VirtualAccount virtualAccount) {
         if (virtualAccount == null) {
             return "redirect:/home";
         }
         virtualAccount.setVaStatus(VaStatus.CREATE);
+        virtualAccount.setJumlahPercobaan(0);
+        virtualAccount.setJadwalPercobaan(null);
+        virtualAccount.setKeteranganGagal(null);
         virtualAccountDao.save(virtualAccount);
         return "redirect:/va/list?tagihan=" + virtualAccount.getTagihan().getId();
     }
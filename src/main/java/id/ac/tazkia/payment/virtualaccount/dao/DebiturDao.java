@@ -3,9 +3,18 @@ package id.ac.tazkia.payment.virtualaccount.dao;
 import id.ac.tazkia.payment.virtualaccount.entity.Debitur;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface DebiturDao extends PagingAndSortingRepository<Debitur, String> {
     Debitur findByNomorDebitur(String nomor);
+    List<Debitur> findByNomorDebiturIn(Collection<String> nomor);
+
+    @Query("select d.nomorDebitur from Debitur d where d.nomorDebitur in :nomor")
+    List<String> findNomorDebiturByNomorDebiturIn(@Param("nomor") Collection<String> nomor);
     Page<Debitur> findByNomorDebiturOrNamaContainingIgnoreCase(String nomor, String nama, Pageable page);
 }
@@ -0,0 +1,43 @@
+package id.ac.tazkia.payment.virtualaccount.dao;
+
+import id.ac.tazkia.payment.virtualaccount.entity.ImportJob;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ImportJobDao extends CrudRepository<ImportJob, String> {
+
+    // job milik node ini yang belum selesai, atau job node lain yang berhenti heartbeat.
+    // tanpa limit, karena job yang file-nya tidak ada di node ini dilewati setelah query
+    @Query(value = "select * from import_job where status in ('ANTRI', 'PROSES') " +
+            "and (id_node = :node or heartbeat_terakhir < now() - :ttl * interval '1 second') " +
+            "order by waktu_dibuat for update skip locked", nativeQuery = true)
+    List<ImportJob> cariBelumSelesai(@Param("node") String node, @Param("ttl") Integer ttl);
+
+    @Modifying
+    @Query(value = "update import_job set status = 'PROSES', id_node = :node, heartbeat_terakhir = now(), " +
+            "waktu_mulai = coalesce(waktu_mulai, now()) where id in (:ids)", nativeQuery = true)
+    int klaim(@Param("node") String node, @Param("ids") Collection<String> ids);
+
+    @Modifying
+    @Query(value = "update import_job set heartbeat_terakhir = now() " +
+            "where id in (:ids) and id_node = :node", nativeQuery = true)
+    int heartbeat(@Param("node") String node, @Param("ids") Collection<String> ids);
+
+    // tidak mengubah apa-apa bila job sudah diambil alih node lain
+    @Modifying
+    @Query(value = "update import_job set baris_terakhir = :baris, jumlah_error = jumlah_error + :jumlahError, " +
+            "heartbeat_terakhir = now() where id = :id and id_node = :node and status = 'PROSES'", nativeQuery = true)
+    int checkpoint(@Param("id") String id, @Param("node") String node,
+                   @Param("baris") Integer baris, @Param("jumlahError") Integer jumlahError);
+
+    @Modifying
+    @Query(value = "update import_job set status = :status, keterangan = :keterangan, waktu_selesai = now() " +
+            "where id = :id and id_node = :node and status = 'PROSES'", nativeQuery = true)
+    int selesai(@Param("id") String id, @Param("node") String node,
+                @Param("status") String status, @Param("keterangan") String keterangan);
+}
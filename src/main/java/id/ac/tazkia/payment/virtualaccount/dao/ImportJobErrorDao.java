@@ -0,0 +1,11 @@
+package id.ac.tazkia.payment.virtualaccount.dao;
+
+import id.ac.tazkia.payment.virtualaccount.entity.ImportJob;
+import id.ac.tazkia.payment.virtualaccount.entity.ImportJobError;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.PagingAndSortingRepository;
+
+public interface ImportJobErrorDao extends PagingAndSortingRepository<ImportJobError, String> {
+    Page<ImportJobError> findByImportJobOrderByBaris(ImportJob importJob, Pageable page);
+}
@@ -1,10 +1,19 @@
 package id.ac.tazkia.payment.virtualaccount.dao;
 
 import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface JenisTagihanDao extends PagingAndSortingRepository<JenisTagihan, String> {
     List<JenisTagihan> findByAktifOrderByKode(Boolean aktif);
+
+    @Query("select distinct j from JenisTagihan j left join fetch j.daftarBank where j.id in :ids")
+    List<JenisTagihan> findByIdIn(@Param("ids") Collection<String> ids);
+
+    @Query("select distinct j from JenisTagihan j left join fetch j.daftarBank")
+    List<JenisTagihan> findAllDenganBank();
 }
@@ -0,0 +1,40 @@
+package id.ac.tazkia.payment.virtualaccount.dao;
+
+import id.ac.tazkia.payment.virtualaccount.entity.Outbox;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxDao extends CrudRepository<Outbox, Long> {
+
+    // pesan yang sudah dikirim tapi tidak kunjung dikonfirmasi dianggap hilang dan dikirim ulang.
+    // untuk topic dan kunci urutan yang sama hanya pesan paling awal yang boleh diambil, pesan berikutnya menunggu
+    // sampai pesan sebelumnya dikonfirmasi dan dihapus, termasuk bila harus dikirim ulang karena gagal
+    @Query(value = "select o.* from outbox o " +
+            "where (o.waktu_kirim is null or o.waktu_kirim < now() - :timeout * interval '1 second') " +
+            "and (hashtext(coalesce(o.kunci, '')) & 2147483647) % :jumlahShard in (:shard) " +
+            "and (o.kunci_urutan is null or not exists " +
+            "(select 1 from outbox sebelum where sebelum.topic = o.topic " +
+            "and sebelum.kunci_urutan = o.kunci_urutan and sebelum.id < o.id)) " +
+            "order by o.id limit :jumlah for update of o skip locked", nativeQuery = true)
+    List<Outbox> klaimPesan(@Param("jumlahShard") Integer jumlahShard,
+                            @Param("shard") Collection<Integer> shard,
+                            @Param("timeout") Integer timeout,
+                            @Param("jumlah") Integer jumlah);
+
+    @Modifying
+    @Query(value = "update outbox set waktu_kirim = now() where id in (:ids)", nativeQuery = true)
+    int tandaiSedangDikirim(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "update outbox set waktu_kirim = null where id in (:ids)", nativeQuery = true)
+    int kembalikanKeAntrian(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from Outbox o where o.id in :ids")
+    int hapus(@Param("ids") Collection<Long> ids);
+}
@@ -1,6 +1,6 @@
 package id.ac.tazkia.payment.virtualaccount.dao;
 
-import id.ac.tazkia.payment.virtualaccount.dto.RekapPembayaran;
+import id.ac.tazkia.payment.virtualaccount.entity.Bank;
 import id.ac.tazkia.payment.virtualaccount.entity.Debitur;
 import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
 import id.ac.tazkia.payment.virtualaccount.entity.Pembayaran;
@@ -38,12 +38,15 @@ public interface PembayaranDao extends PagingAndSortingRepository<Pembayaran, St
 
     Page<Pembayaran> findByTagihanJenisTagihan(JenisTagihan jenisTagihan, Pageable pageable);
 
-    @Query("select new id.ac.tazkia.payment.virtualaccount.dto.RekapPembayaran(cast(p.waktuTransaksi as date), sum(p.jumlah), count(p)) " +
-            "from Pembayaran p where p.waktuTransaksi >= :mulai and p.waktuTransaksi <= :sampai " +
-            "group by cast(p.waktuTransaksi as date) "+
-            "order by cast(p.waktuTransaksi as date) ")
-    List<RekapPembayaran> rekapPembayaran(@Param("mulai") LocalDateTime mulai,
-                                          @Param("sampai") LocalDateTime sampai);
+    boolean existsByBankAndReferensi(Bank bank, String referensi);
+
+    @Query("select p.bank.id, p.referensi from Pembayaran p where p.waktuTransaksi >= :mulai")
+    List<Object[]> findReferensiSejak(@Param("mulai") LocalDateTime mulai);
+
+    // pembayaran ganda yang tercatat sebelum ada unique index, ditandai saat migrasi
+    @Query(value = "select p.id, p.id_bank, p.referensi, p.jumlah, p.waktu_transaksi from pembayaran p " +
+            "where p.duplikat_lama order by p.id_bank, p.referensi, p.waktu_transaksi", nativeQuery = true)
+    List<Object[]> findDuplikatLama();
 
     Iterable<Pembayaran> findByTagihanJenisTagihanAndWaktuTransaksiBetweenOrderByWaktuTransaksi(JenisTagihan jenis, LocalDateTime mulai, LocalDateTime sampai);
 }
@@ -0,0 +1,56 @@
+package id.ac.tazkia.payment.virtualaccount.dao;
+
+import id.ac.tazkia.payment.virtualaccount.entity.PendingVaRequest;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface PendingVaRequestDao extends CrudRepository<PendingVaRequest, String> {
+
+    @Modifying
+    @Query("delete from PendingVaRequest p where p.virtualAccount.id in :ids")
+    int hapusByVirtualAccount(@Param("ids") Collection<String> ids);
+
+    @Modifying
+    @Query("update PendingVaRequest p set p.waktuKirim = :waktu where p.idOutbox in :ids")
+    int tandaiTerkirim(@Param("ids") Collection<Long> ids, @Param("waktu") LocalDateTime waktu);
+
+    // request yang tidak pernah direspon dan VA-nya sudah tidak menunggu response, misalnya sudah timeout atau GAGAL
+    @Modifying
+    @Query(value = "delete from pending_va_request where id in (select p.id from pending_va_request p " +
+            "inner join virtual_account v on p.id_virtual_account = v.id " +
+            "inner join bank b on v.id_bank = b.id " +
+            "where p.waktu_response is null and v.va_status <> 'SEDANG_PROSES' " +
+            "and p.waktu_kirim < now() - b.batas_waktu_respon * interval '1 second' " +
+            "and (hashtext(v.id_tagihan) & 2147483647) % :jumlahShard in (:shard) " +
+            "limit :jumlah)", nativeQuery = true)
+    int hapusTanpaResponse(@Param("jumlahShard") Integer jumlahShard,
+                           @Param("shard") Collection<Integer> shard,
+                           @Param("jumlah") Integer jumlah);
+
+    // untuk response dari gateway yang belum mengirimkan requestId
+    @Modifying
+    @Query("update PendingVaRequest p set p.waktuResponse = :waktu, p.sukses = :sukses " +
+            "where p.virtualAccount.id = :idVa and p.waktuResponse is null")
+    int tandaiDirespon(@Param("idVa") String idVa,
+                       @Param("waktu") LocalDateTime waktu,
+                       @Param("sukses") Boolean sukses);
+
+    @Query("select p.id, p.sukses, p.waktuKirim, p.waktuResponse from PendingVaRequest p " +
+            "where p.id in :ids and p.waktuResponse is not null")
+    List<Object[]> cariYangSudahDirespon(@Param("ids") Collection<String> ids);
+
+    @Modifying
+    @Query("delete from PendingVaRequest p where p.id in :ids")
+    int hapus(@Param("ids") Collection<String> ids);
+
+    // response yang tidak pernah dibaca, misalnya karena node pengirimnya sudah mati
+    @Modifying
+    @Query("delete from PendingVaRequest p where p.waktuResponse < :batas")
+    int hapusResponseSebelum(@Param("batas") LocalDateTime batas);
+}
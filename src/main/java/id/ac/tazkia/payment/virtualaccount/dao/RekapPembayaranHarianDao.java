@@ -0,0 +1,41 @@
+package id.ac.tazkia.payment.virtualaccount.dao;
+
+import id.ac.tazkia.payment.virtualaccount.dto.RekapPembayaran;
+import id.ac.tazkia.payment.virtualaccount.dto.RekapPembayaranPerKategori;
+import id.ac.tazkia.payment.virtualaccount.entity.RekapPembayaranHarian;
+import id.ac.tazkia.payment.virtualaccount.entity.RekapPembayaranHarianId;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface RekapPembayaranHarianDao extends CrudRepository<RekapPembayaranHarian, RekapPembayaranHarianId> {
+
+    @Modifying
+    @Query(value = "insert into rekap_pembayaran_harian (tanggal, id_bank, id_jenis_tagihan, jumlah, nilai) " +
+            "values (:tanggal, :bank, :jenis, 1, :nilai) " +
+            "on conflict (tanggal, id_bank, id_jenis_tagihan) do update " +
+            "set jumlah = rekap_pembayaran_harian.jumlah + 1, nilai = rekap_pembayaran_harian.nilai + excluded.nilai",
+            nativeQuery = true)
+    int tambah(@Param("tanggal") LocalDate tanggal, @Param("bank") String bank,
+               @Param("jenis") String jenis, @Param("nilai") BigDecimal nilai);
+
+    @Query("select new id.ac.tazkia.payment.virtualaccount.dto.RekapPembayaran(r.id.tanggal, sum(r.nilai), sum(r.jumlah)) " +
+            "from RekapPembayaranHarian r where r.id.tanggal >= :mulai and r.id.tanggal <= :sampai " +
+            "group by r.id.tanggal order by r.id.tanggal")
+    List<RekapPembayaran> rekapHarian(@Param("mulai") LocalDate mulai, @Param("sampai") LocalDate sampai);
+
+    @Query("select new id.ac.tazkia.payment.virtualaccount.dto.RekapPembayaranPerKategori(r.id.idBank, sum(r.jumlah), sum(r.nilai)) " +
+            "from RekapPembayaranHarian r where r.id.tanggal >= :mulai and r.id.tanggal <= :sampai " +
+            "group by r.id.idBank")
+    List<RekapPembayaranPerKategori> rekapPerBank(@Param("mulai") LocalDate mulai, @Param("sampai") LocalDate sampai);
+
+    @Query("select new id.ac.tazkia.payment.virtualaccount.dto.RekapPembayaranPerKategori(r.id.idJenisTagihan, sum(r.jumlah), sum(r.nilai)) " +
+            "from RekapPembayaranHarian r where r.id.tanggal >= :mulai and r.id.tanggal <= :sampai " +
+            "group by r.id.idJenisTagihan")
+    List<RekapPembayaranPerKategori> rekapPerJenisTagihan(@Param("mulai") LocalDate mulai, @Param("sampai") LocalDate sampai);
+}
@@ -1,12 +1,31 @@
 package id.ac.tazkia.payment.virtualaccount.dao;
 
 import id.ac.tazkia.payment.virtualaccount.entity.RunningNumber;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
-
-import javax.persistence.LockModeType;
+import org.springframework.data.repository.query.Param;
 
 public interface RunningNumberDao extends CrudRepository<RunningNumber, String> {
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    RunningNumber findByPemakaianAndPrefix(String pemakaian, String prefix);
+
+    /**
+     * Menambah nomor terakhir dalam satu statement, baris untuk prefix baru dibuat bila belum ada.
+     * @return nomor terakhir setelah ditambah
+     */
+    @Query(value = "insert into running_number (id, pemakaian, prefix, last_number) " +
+            "values (:id, :pemakaian, :prefix, :jumlah) " +
+            "on conflict (prefix) do update set last_number = running_number.last_number + excluded.last_number " +
+            "returning last_number", nativeQuery = true)
+    Long tambah(@Param("id") String id, @Param("pemakaian") String pemakaian,
+                @Param("prefix") String prefix, @Param("jumlah") Long jumlah);
+
+    /**
+     * Mengembalikan sisa blok yang tidak terpakai,
+     * hanya bila belum ada blok lain yang diambil sesudahnya.
+     */
+    @Modifying
+    @Query(value = "update running_number set last_number = :awalSisa - 1 " +
+            "where pemakaian = :pemakaian and prefix = :prefix and last_number = :akhir", nativeQuery = true)
+    int kembalikanSisa(@Param("pemakaian") String pemakaian, @Param("prefix") String prefix,
+                       @Param("awalSisa") Long awalSisa, @Param("akhir") Long akhir);
 }
@@ -0,0 +1,44 @@
+package id.ac.tazkia.payment.virtualaccount.dao;
+
+import id.ac.tazkia.payment.virtualaccount.entity.SchedulerLease;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface SchedulerLeaseDao extends CrudRepository<SchedulerLease, Integer> {
+
+    @Modifying
+    @Query(value = "insert into cluster_node (id, heartbeat_terakhir) values (:node, now()) " +
+            "on conflict (id) do update set heartbeat_terakhir = now()", nativeQuery = true)
+    int heartbeat(@Param("node") String node);
+
+    @Query(value = "select count(*) from cluster_node " +
+            "where heartbeat_terakhir > now() - :ttl * interval '1 second'", nativeQuery = true)
+    Long hitungNodeAktif(@Param("ttl") Integer ttl);
+
+    @Modifying
+    @Query(value = "update scheduler_lease set berlaku_sampai = now() + :ttl * interval '1 second' " +
+            "where id_node = :node and berlaku_sampai > now()", nativeQuery = true)
+    int perpanjang(@Param("node") String node, @Param("ttl") Integer ttl);
+
+    // shard yang belum ada pemiliknya atau pemiliknya berhenti heartbeat
+    @Modifying
+    @Query(value = "update scheduler_lease set id_node = :node, berlaku_sampai = now() + :ttl * interval '1 second' " +
+            "where shard in (select shard from scheduler_lease " +
+            "where id_node is null or berlaku_sampai is null or berlaku_sampai < now() " +
+            "order by shard limit :jumlah for update skip locked)", nativeQuery = true)
+    int klaim(@Param("node") String node, @Param("ttl") Integer ttl, @Param("jumlah") Integer jumlah);
+
+    @Modifying
+    @Query(value = "update scheduler_lease set id_node = null, berlaku_sampai = null " +
+            "where shard in (select shard from scheduler_lease where id_node = :node " +
+            "order by shard desc limit :jumlah)", nativeQuery = true)
+    int lepas(@Param("node") String node, @Param("jumlah") Integer jumlah);
+
+    @Query(value = "select shard from scheduler_lease " +
+            "where id_node = :node and berlaku_sampai > now() order by shard", nativeQuery = true)
+    List<Integer> findShardByNode(@Param("node") String node);
+}
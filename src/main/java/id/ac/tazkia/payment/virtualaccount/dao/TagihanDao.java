@@ -4,12 +4,14 @@ import id.ac.tazkia.payment.virtualaccount.dto.RekapTagihan;
 import id.ac.tazkia.payment.virtualaccount.entity.*;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 public interface TagihanDao extends PagingAndSortingRepository<Tagihan, String> {
@@ -19,6 +21,31 @@ public interface TagihanDao extends PagingAndSortingRepository<Tagihan, String>
     Page<Tagihan> findByDebiturAndStatusTagihanOrderByTanggalTagihan(Debitur debitur, StatusTagihan status, Pageable pageable);
     Page<Tagihan> findAllByStatusTagihan(StatusTagihan status, Pageable pageable);
     Page<Tagihan> findByStatusNotifikasi(StatusNotifikasi statusNotifikasi, Pageable page);
+
+    @Query(value = "select * from tagihan t where t.status_notifikasi = :status " +
+            "and (hashtext(t.id) & 2147483647) % :jumlahShard in (:shard) " +
+            "limit :jumlah", nativeQuery = true)
+    List<Tagihan> findByStatusNotifikasiAndShard(@Param("status") String statusNotifikasi,
+                                                 @Param("jumlahShard") Integer jumlahShard,
+                                                 @Param("shard") Collection<Integer> shard,
+                                                 @Param("jumlah") Integer jumlah);
+    /**
+     * Menambah jumlah pembayaran secara atomik, hanya bila tagihan belum lunas dan tidak jadi kelebihan bayar.
+     * @return jumlah_pembayaran, status_pembayaran dan status_tagihan setelah update, kosong bila ditolak
+     */
+    @Query(value = "update tagihan set jumlah_pembayaran = jumlah_pembayaran + :jumlah, " +
+            "status_pembayaran = case when jumlah_pembayaran + :jumlah >= nilai_tagihan then 'LUNAS' else 'DIBAYAR_SEBAGIAN' end, " +
+            "status_tagihan = case when jumlah_pembayaran + :jumlah >= nilai_tagihan then 'NONAKTIF' else status_tagihan end, " +
+            "updated_at = now(), version = version + 1 " +
+            "where id = :id and status_pembayaran <> 'LUNAS' and jumlah_pembayaran + :jumlah <= nilai_tagihan " +
+            "returning jumlah_pembayaran, status_pembayaran, status_tagihan", nativeQuery = true)
+    List<Object[]> tambahPembayaran(@Param("id") String id, @Param("jumlah") BigDecimal jumlah);
+
+    // hanya kolom status notifikasi, supaya tidak menimpa pembayaran yang masuk setelah tagihan dibaca
+    @Modifying
+    @Query("update Tagihan t set t.statusNotifikasi = :status, t.version = t.version + 1 where t.id = :id")
+    int updateStatusNotifikasi(@Param("id") String id, @Param("status") StatusNotifikasi status);
+
     @Query(
             "select sum(t.nilaiTagihan) from Tagihan t where t.jenisTagihan = :jenisTagihan and t.statusTagihan = :statusTagihan"
     )
@@ -5,8 +5,13 @@ import id.ac.tazkia.payment.virtualaccount.entity.VaStatus;
 import id.ac.tazkia.payment.virtualaccount.entity.VirtualAccount;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface VirtualAccountDao extends PagingAndSortingRepository<VirtualAccount, String> {
@@ -14,4 +19,103 @@ public interface VirtualAccountDao extends PagingAndSortingRepository<VirtualAcc
     List<VirtualAccount> findByVaStatusAndTagihanNomor(VaStatus status, String nomor);
     Page<VirtualAccount> findByTagihan(Tagihan tagihan, Pageable page);
     Iterable<VirtualAccount> findByTagihan(Tagihan tagihan);
+
+    // klaim sejumlah VA sekaligus, baris yang sedang dikunci transaksi lain dilewati
+    @Query(value = "select v.id from virtual_account v where v.va_status = :status and v.id_bank = :bank " +
+            "and (hashtext(v.id_tagihan) & 2147483647) % :jumlahShard in (:shard) " +
+            "order by v.id limit :jumlah for update skip locked", nativeQuery = true)
+    List<String> klaimVaUntukDiproses(@Param("status") String status, @Param("bank") String bank,
+                                      @Param("jumlahShard") Integer jumlahShard,
+                                      @Param("shard") Collection<Integer> shard,
+                                      @Param("jumlah") Integer jumlah);
+
+    @Query("select v from VirtualAccount v " +
+            "join fetch v.bank " +
+            "join fetch v.tagihan t " +
+            "join fetch t.debitur " +
+            "join fetch t.jenisTagihan " +
+            "join fetch t.kodeBiaya " +
+            "where v.id in :ids")
+    List<VirtualAccount> findByIdIn(@Param("ids") Collection<String> ids);
+
+    @Query("select v.bank.id, count(v) from VirtualAccount v where v.vaStatus in :status group by v.bank.id")
+    List<Object[]> hitungAntrianPerBank(@Param("status") Collection<VaStatus> status);
+
+    @Modifying
+    @Query("update VirtualAccount v set v.vaStatus = :status where v.id in :ids")
+    int updateVaStatus(@Param("status") VaStatus status, @Param("ids") Collection<String> ids);
+
+    @Modifying
+    @Query("update VirtualAccount v " +
+            "set v.vaStatus = id.ac.tazkia.payment.virtualaccount.entity.VaStatus.SEDANG_PROSES, " +
+            "v.requestTerakhir = :request, v.waktuRequestTerakhir = :waktu where v.id in :ids")
+    int tandaiSedangProses(@Param("request") VaStatus request, @Param("waktu") LocalDateTime waktu,
+                           @Param("ids") Collection<String> ids);
+
+    // request yang gagal dicatat sebagai request terakhir, supaya percobaan ulang mengirim request yang sama
+    @Modifying
+    @Query("update VirtualAccount v " +
+            "set v.vaStatus = id.ac.tazkia.payment.virtualaccount.entity.VaStatus.ERROR, v.jadwalPercobaan = null, " +
+            "v.requestTerakhir = :request, v.keteranganGagal = :keterangan where v.id in :ids")
+    int tandaiError(@Param("request") VaStatus request, @Param("keterangan") String keterangan,
+                    @Param("ids") Collection<String> ids);
+
+    @Modifying
+    @Query(value = "update virtual_account set va_status = " +
+            "case when id_bank = :bank then :statusBank else :statusLain end " +
+            "where id_tagihan = :tagihan and va_status = 'AKTIF'", nativeQuery = true)
+    int updateStatusSetelahPembayaran(@Param("tagihan") String tagihan, @Param("bank") String bank,
+                                      @Param("statusBank") String statusBank,
+                                      @Param("statusLain") String statusLain);
+
+    // query di bawah ini dipakai sweeper, masing-masing hanya mengubah maksimal :jumlah baris per panggilan
+
+    @Modifying
+    @Query(value = "update virtual_account set va_status = 'ERROR', jadwal_percobaan = null, keterangan_gagal = :keterangan " +
+            "where id in (select v.id from virtual_account v where v.va_status = 'SEDANG_PROSES' and v.id_bank = :bank " +
+            "and v.waktu_request_terakhir < now() - :batasDetik * interval '1 second' " +
+            "and (hashtext(v.id_tagihan) & 2147483647) % :jumlahShard in (:shard) " +
+            "order by v.waktu_request_terakhir limit :jumlah for update skip locked)", nativeQuery = true)
+    int tandaiTimeout(@Param("bank") String bank, @Param("batasDetik") Integer batasDetik,
+                      @Param("keterangan") String keterangan,
+                      @Param("jumlahShard") Integer jumlahShard,
+                      @Param("shard") Collection<Integer> shard,
+                      @Param("jumlah") Integer jumlah);
+
+    @Modifying
+    @Query(value = "update virtual_account set jadwal_percobaan = now() " +
+            "+ least(:jedaMaksimum, :jedaAwal * power(2, jumlah_percobaan)) * (0.5 + random() / 2) * interval '1 second' " +
+            "where id in (select v.id from virtual_account v where v.va_status = 'ERROR' and v.jadwal_percobaan is null " +
+            "and v.jumlah_percobaan < :maksimum " +
+            "and (hashtext(v.id_tagihan) & 2147483647) % :jumlahShard in (:shard) " +
+            "limit :jumlah for update skip locked)", nativeQuery = true)
+    int jadwalkanPercobaan(@Param("maksimum") Integer maksimum,
+                           @Param("jedaAwal") Integer jedaAwal, @Param("jedaMaksimum") Integer jedaMaksimum,
+                           @Param("jumlahShard") Integer jumlahShard,
+                           @Param("shard") Collection<Integer> shard,
+                           @Param("jumlah") Integer jumlah);
+
+    @Modifying
+    @Query(value = "update virtual_account set va_status = 'GAGAL', " +
+            "keterangan_gagal = substr('Gagal setelah ' || jumlah_percobaan || ' percobaan : ' || coalesce(keterangan_gagal, '-'), 1, 255) " +
+            "where id in (select v.id from virtual_account v where v.va_status = 'ERROR' and v.jadwal_percobaan is null " +
+            "and v.jumlah_percobaan >= :maksimum " +
+            "and (hashtext(v.id_tagihan) & 2147483647) % :jumlahShard in (:shard) " +
+            "limit :jumlah for update skip locked)", nativeQuery = true)
+    int hentikanPercobaan(@Param("maksimum") Integer maksimum,
+                          @Param("jumlahShard") Integer jumlahShard,
+                          @Param("shard") Collection<Integer> shard,
+                          @Param("jumlah") Integer jumlah);
+
+    // VA dikembalikan ke antrian sesuai request terakhirnya, VA lama yang belum tercatat dianggap CREATE bila belum punya nomor
+    @Modifying
+    @Query(value = "update virtual_account set " +
+            "va_status = coalesce(request_terakhir, case when nomor is null then 'CREATE' else 'UPDATE' end), " +
+            "jumlah_percobaan = jumlah_percobaan + 1, jadwal_percobaan = null " +
+            "where id in (select v.id from virtual_account v where v.va_status = 'ERROR' and v.jadwal_percobaan <= now() " +
+            "and (hashtext(v.id_tagihan) & 2147483647) % :jumlahShard in (:shard) " +
+            "order by v.jadwal_percobaan limit :jumlah for update skip locked)", nativeQuery = true)
+    int kembalikanKeAntrian(@Param("jumlahShard") Integer jumlahShard,
+                            @Param("shard") Collection<Integer> shard,
+                            @Param("jumlah") Integer jumlah);
 }
@@ -0,0 +1,22 @@
+package id.ac.tazkia.payment.virtualaccount.dto;
+
+public enum FormatEkspor {
+    CSV("text/csv", "csv"),
+    JSONL("application/x-ndjson", "jsonl");
+
+    private final String contentType;
+    private final String ekstensi;
+
+    FormatEkspor(String contentType, String ekstensi) {
+        this.contentType = contentType;
+        this.ekstensi = ekstensi;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String namaFile(String nama) {
+        return nama + "." + ekstensi;
+    }
+}
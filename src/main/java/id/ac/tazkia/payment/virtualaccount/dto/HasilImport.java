@@ -0,0 +1,16 @@
+package id.ac.tazkia.payment.virtualaccount.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class HasilImport {
+    private Integer jumlahBaris = 0;
+    private List<UploadError> errors = new ArrayList<>();
+
+    public Integer getJumlahSukses() {
+        return jumlahBaris - errors.size();
+    }
+}
@@ -0,0 +1,21 @@
+package id.ac.tazkia.payment.virtualaccount.dto;
+
+import lombok.Data;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+public class HasilRekonsiliasi {
+    private Integer jumlahMutasi = 0;
+    private Integer jumlahPembayaran = 0;
+    private Map<StatusRekonsiliasi, Integer> jumlahPerStatus = new EnumMap<>(StatusRekonsiliasi.class);
+
+    public void tambah(StatusRekonsiliasi status) {
+        jumlahPerStatus.merge(status, 1, Integer::sum);
+    }
+
+    public Integer getJumlah(StatusRekonsiliasi status) {
+        return jumlahPerStatus.getOrDefault(status, 0);
+    }
+}
@@ -0,0 +1,23 @@
+package id.ac.tazkia.payment.virtualaccount.dto;
+
+import id.ac.tazkia.payment.virtualaccount.entity.JenisImport;
+import id.ac.tazkia.payment.virtualaccount.entity.StatusImport;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ProgressImport {
+    private String id;
+    private JenisImport jenis;
+    private String namaFile;
+    private StatusImport status;
+    private Integer perkiraanJumlahBaris;
+    private Integer jumlahBaris;
+    private Integer jumlahSukses;
+    private Integer jumlahError;
+    private String keterangan;
+    private LocalDateTime waktuDibuat;
+    private LocalDateTime waktuMulai;
+    private LocalDateTime waktuSelesai;
+}
@@ -6,6 +6,7 @@ import lombok.NoArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.Date;
 
 @Data @AllArgsConstructor @NoArgsConstructor
@@ -14,4 +15,8 @@ public class RekapPembayaran {
     private Date tanggal;
     private BigDecimal nilai;
     private Long jumlah;
+
+    public RekapPembayaran(LocalDate tanggal, BigDecimal nilai, Long jumlah) {
+        this(java.sql.Date.valueOf(tanggal), nilai, jumlah);
+    }
 }
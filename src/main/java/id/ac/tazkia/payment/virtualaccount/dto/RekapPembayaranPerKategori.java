@@ -0,0 +1,22 @@
+package id.ac.tazkia.payment.virtualaccount.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Rekap pembayaran dalam satu rentang tanggal per bank atau per jenis tagihan.
+ */
+@Data @AllArgsConstructor @NoArgsConstructor
+public class RekapPembayaranPerKategori {
+    private String id;
+    private String nama;
+    private Long jumlah;
+    private BigDecimal nilai;
+
+    public RekapPembayaranPerKategori(String id, Long jumlah, BigDecimal nilai) {
+        this(id, null, jumlah, nilai);
+    }
+}
@@ -0,0 +1,14 @@
+package id.ac.tazkia.payment.virtualaccount.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data @AllArgsConstructor
+public class StatusDispatchLane {
+    private String bank;
+    private String status;
+    private Double window;
+    private Integer sedangProses;
+    private Long antrian;
+    private Integer timeoutBeruntun;
+}
@@ -0,0 +1,11 @@
+package id.ac.tazkia.payment.virtualaccount.dto;
+
+public enum StatusRekonsiliasi {
+    COCOK,
+    // referensi tidak ditemukan, tetapi ada pembayaran bank yang sama dengan nilai sama di tanggal yang berdekatan
+    COCOK_NILAI,
+    NILAI_BERBEDA,
+    TIDAK_ADA_DI_APLIKASI,
+    TIDAK_ADA_DI_BANK,
+    FORMAT_SALAH
+}
@@ -0,0 +1,16 @@
+package id.ac.tazkia.payment.virtualaccount.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class StatusReplay {
+    private volatile boolean berjalan;
+    private volatile String topic;
+    private volatile int target;
+    private volatile int terkirim;
+    private volatile String error;
+    private volatile LocalDateTime waktuMulai;
+    private volatile LocalDateTime waktuSelesai;
+}
@@ -0,0 +1,21 @@
+package id.ac.tazkia.payment.virtualaccount.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Sisa tagihan AKTIF yang sudah lewat jatuh tempo per jenis tagihan dan kode biaya,
+ * dikelompokkan menurut jumlah hari lewat jatuh tempo.
+ */
+@Data
+public class UmurTagihan {
+    private String jenisTagihan;
+    private String kodeBiaya;
+    private Long jumlahTagihan;
+    private BigDecimal sampai30Hari;
+    private BigDecimal sampai60Hari;
+    private BigDecimal sampai90Hari;
+    private BigDecimal lebih90Hari;
+    private BigDecimal total;
+}
@@ -11,6 +11,7 @@ import java.math.BigDecimal;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data @Builder
 public class VaRequest {
+    private String requestId;
     private String bankId;
     private String accountNumber;
     private String invoiceNumber;
@@ -7,6 +7,7 @@ import java.math.BigDecimal;
 
 @Data
 public class VaResponse {
+    private String requestId;
     private VaStatus requestType;
     private VaRequestStatus requestStatus;
     private String accountNumber;
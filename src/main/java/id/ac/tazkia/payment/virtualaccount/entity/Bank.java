@@ -29,4 +29,7 @@ public class Bank {
     private Integer jumlahDigitVirtualAccount = 0;
     @NotNull @Min(0)
     private Integer jumlahDigitPrefix = 0;
+    // dalam detik, VA yang belum mendapat response lewat dari batas ini akan dikirim ulang
+    @NotNull @Min(1)
+    private Integer batasWaktuRespon = 300;
 }
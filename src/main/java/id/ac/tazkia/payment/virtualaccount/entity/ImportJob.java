@@ -0,0 +1,73 @@
+package id.ac.tazkia.payment.virtualaccount.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+@Entity @Data
+public class ImportJob {
+
+    @Id
+    private String id;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private JenisImport jenis;
+
+    private String namaFile;
+
+    // file yang di-spool ke disk lokal node penerima upload
+    @NotNull
+    private String lokasiFile;
+
+    @NotNull
+    private Boolean pakaiHeader = false;
+
+    @ManyToOne
+    @JoinColumn(name = "id_jenis_tagihan")
+    private JenisTagihan jenisTagihan;
+
+    @ManyToOne
+    @JoinColumn(name = "id_kode_biaya")
+    private KodeBiaya kodeBiaya;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private StatusImport status = StatusImport.ANTRI;
+
+    @NotNull
+    private String idNode;
+
+    // dihitung dari jumlah baris baru di file, field yang berisi baris baru membuatnya sedikit lebih besar
+    @NotNull
+    private Integer perkiraanJumlahBaris = 0;
+
+    // checkpoint, nomor baris terakhir yang hasilnya sudah di-commit
+    @NotNull
+    private Integer barisTerakhir = 0;
+
+    @NotNull
+    private Integer jumlahError = 0;
+
+    private String keterangan;
+
+    @NotNull
+    private LocalDateTime waktuDibuat = LocalDateTime.now();
+
+    private LocalDateTime waktuMulai;
+
+    private LocalDateTime waktuSelesai;
+
+    @NotNull
+    private LocalDateTime heartbeatTerakhir = LocalDateTime.now();
+
+    public Integer getJumlahSukses() {
+        return barisTerakhir - jumlahError;
+    }
+
+    public boolean isBerjalan() {
+        return status == StatusImport.ANTRI || status == StatusImport.PROSES;
+    }
+}
@@ -0,0 +1,28 @@
+package id.ac.tazkia.payment.virtualaccount.entity;
+
+import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+
+@Entity @Data
+public class ImportJobError {
+
+    @Id @GeneratedValue(generator = "uuid")
+    @GenericGenerator(name = "uuid", strategy = "uuid2")
+    private String id;
+
+    @NotNull
+    @ManyToOne
+    @JoinColumn(name = "id_import_job")
+    private ImportJob importJob;
+
+    @NotNull
+    private Integer baris;
+
+    @NotNull
+    private String keterangan;
+
+    private String data;
+}
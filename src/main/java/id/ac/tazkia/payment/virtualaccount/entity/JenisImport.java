@@ -0,0 +1,5 @@
+package id.ac.tazkia.payment.virtualaccount.entity;
+
+public enum JenisImport {
+    TAGIHAN, DEBITUR
+}
@@ -0,0 +1,36 @@
+package id.ac.tazkia.payment.virtualaccount.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+@Entity @Data
+public class Outbox {
+
+    // pakai sequence supaya urutan pengiriman sama dengan urutan penyimpanan
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_seq")
+    @SequenceGenerator(name = "outbox_seq", sequenceName = "outbox_id_seq", allocationSize = 1)
+    private Long id;
+
+    @NotNull @NotEmpty
+    private String topic;
+
+    private String kunci;
+
+    // message dengan topic dan kunci urutan yang sama dikirim satu per satu sesuai urutan id
+    private String kunciUrutan;
+
+    @NotNull @NotEmpty
+    @Column(columnDefinition = "text")
+    private String pesan;
+
+    @NotNull
+    private LocalDateTime waktuDibuat = LocalDateTime.now();
+
+    // terisi selama pesan menunggu konfirmasi dari broker
+    private LocalDateTime waktuKirim;
+}
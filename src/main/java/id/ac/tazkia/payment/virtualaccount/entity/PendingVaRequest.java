@@ -0,0 +1,36 @@
+package id.ac.tazkia.payment.virtualaccount.entity;
+
+import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+@Entity @Data
+public class PendingVaRequest {
+
+    // dikirim sebagai requestId di VaRequest dan dikembalikan bank di VaResponse
+    @Id @GeneratedValue(generator = "uuid")
+    @GenericGenerator(name = "uuid", strategy = "uuid2")
+    private String id;
+
+    @NotNull
+    @ManyToOne
+    @JoinColumn(name = "id_virtual_account")
+    private VirtualAccount virtualAccount;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private VaStatus requestType;
+
+    // diisi ulang oleh relay outbox saat request benar-benar dikirim, bukan saat outbox disimpan
+    @NotNull
+    private LocalDateTime waktuKirim = LocalDateTime.now();
+
+    private Long idOutbox;
+
+    // diisi node yang menerima response, dibaca dan dihapus oleh node yang mengirim request
+    private LocalDateTime waktuResponse;
+    private Boolean sukses;
+}
@@ -0,0 +1,24 @@
+package id.ac.tazkia.payment.virtualaccount.entity;
+
+import lombok.Data;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+/**
+ * Jumlah dan nilai pembayaran per tanggal, bank dan jenis tagihan.
+ */
+@Entity @Data
+public class RekapPembayaranHarian {
+
+    @EmbeddedId
+    private RekapPembayaranHarianId id;
+
+    @NotNull
+    private Long jumlah;
+
+    @NotNull
+    private BigDecimal nilai;
+}
@@ -0,0 +1,14 @@
+package id.ac.tazkia.payment.virtualaccount.entity;
+
+import lombok.Data;
+
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable @Data
+public class RekapPembayaranHarianId implements Serializable {
+    private LocalDate tanggal;
+    private String idBank;
+    private String idJenisTagihan;
+}
@@ -0,0 +1,17 @@
+package id.ac.tazkia.payment.virtualaccount.entity;
+
+import lombok.Data;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+@Entity @Data
+public class SchedulerLease {
+    @Id
+    private Integer shard;
+
+    private String idNode;
+
+    private LocalDateTime berlakuSampai;
+}
@@ -0,0 +1,5 @@
+package id.ac.tazkia.payment.virtualaccount.entity;
+
+public enum StatusImport {
+    ANTRI, PROSES, SELESAI, GAGAL
+}
@@ -63,6 +63,11 @@ public class Tagihan {
     @NotNull @Enumerated(EnumType.STRING)
     private StatusNotifikasi statusNotifikasi = StatusNotifikasi.BELUM_TERKIRIM;
 
+    // pembayaran dan status notifikasi diubah dengan query update yang juga menaikkan version,
+    // save tagihan yang dibaca sebelumnya akan gagal, bukan menimpa perubahan tersebut
+    @Version
+    private Long version;
+
     public BigDecimal getNilaiTagihanEfektif() {
         return nilaiTagihan.subtract(jumlahPembayaran);
     }
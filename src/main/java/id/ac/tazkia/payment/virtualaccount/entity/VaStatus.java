@@ -8,5 +8,6 @@ public enum VaStatus {
     SEDANG_PROSES,
     AKTIF,
     NONAKTIF,
-    ERROR
+    ERROR,
+    GAGAL
 }
@@ -5,6 +5,7 @@ import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
 
 @Entity
 @Data
@@ -31,4 +32,16 @@ public class VirtualAccount {
     @Enumerated(EnumType.STRING)
     private VaStatus vaStatus = VaStatus.CREATE;
 
+    @Enumerated(EnumType.STRING)
+    private VaStatus requestTerakhir;
+
+    private LocalDateTime waktuRequestTerakhir;
+
+    @NotNull
+    private Integer jumlahPercobaan = 0;
+
+    private LocalDateTime jadwalPercobaan;
+
+    private String keteranganGagal;
+
 }
@@ -0,0 +1,127 @@
+package id.ac.tazkia.payment.virtualaccount.helper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Membaca file CSV (RFC 4180) satu record demi satu record tanpa memuat seluruh file.
+ * Mendukung field dalam tanda kutip yang berisi koma, baris baru dan kutip ganda ("").
+ * Pemisah baris boleh CRLF atau LF.
+ */
+public class CsvReader implements Closeable {
+    private static final int AKHIR = -1;
+
+    private final Reader reader;
+    private final char pemisah;
+    private final StringBuilder field = new StringBuilder();
+    private final StringBuilder mentah = new StringBuilder();
+    private int berikutnya = -2;
+    private int nomorRecord = 0;
+
+    public CsvReader(Reader reader) {
+        this(reader, ',');
+    }
+
+    public CsvReader(Reader reader, char pemisah) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+        this.pemisah = pemisah;
+    }
+
+    /**
+     * @return field-field pada record berikutnya, atau null bila file sudah habis
+     */
+    public String[] bacaRecord() throws IOException {
+        if (intip() == AKHIR) {
+            return null;
+        }
+
+        List<String> hasil = new ArrayList<>();
+        field.setLength(0);
+        mentah.setLength(0);
+        boolean dalamKutip = false;
+        boolean adaKutip = false;
+
+        while (true) {
+            int c = baca();
+            if (c == AKHIR) {
+                if (dalamKutip) {
+                    throw new IOException("Tanda kutip tidak ditutup pada record " + (nomorRecord + 1));
+                }
+                break;
+            }
+            if (dalamKutip) {
+                if (c == '"') {
+                    if (intip() == '"') {
+                        field.append((char) baca());
+                    } else {
+                        dalamKutip = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !adaKutip) {
+                dalamKutip = true;
+                adaKutip = true;
+            } else if (c == pemisah) {
+                hasil.add(field.toString());
+                field.setLength(0);
+                adaKutip = false;
+            } else if (c == '\r' && intip() == '\n') {
+                baca();
+                break;
+            } else if (c == '\n') {
+                break;
+            } else {
+                field.append((char) c);
+            }
+        }
+
+        hasil.add(field.toString());
+        nomorRecord++;
+        int panjang = mentah.length();
+        while (panjang > 0 && (mentah.charAt(panjang - 1) == '\n' || mentah.charAt(panjang - 1) == '\r')) {
+            panjang--;
+        }
+        mentah.setLength(panjang);
+        return hasil.toArray(new String[0]);
+    }
+
+    /**
+     * @return nomor urut record terakhir yang dibaca, dimulai dari 1
+     */
+    public int getNomorRecord() {
+        return nomorRecord;
+    }
+
+    /**
+     * @return isi record terakhir sebagaimana tertulis di file, untuk pesan error
+     */
+    public String getRecordMentah() {
+        return mentah.toString();
+    }
+
+    private int baca() throws IOException {
+        int c = berikutnya != -2 ? berikutnya : reader.read();
+        berikutnya = -2;
+        if (c != AKHIR) {
+            mentah.append((char) c);
+        }
+        return c;
+    }
+
+    private int intip() throws IOException {
+        if (berikutnya == -2) {
+            berikutnya = reader.read();
+        }
+        return berikutnya;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,63 @@
+package id.ac.tazkia.payment.virtualaccount.helper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import id.ac.tazkia.payment.virtualaccount.dto.*;
+import id.ac.tazkia.payment.virtualaccount.entity.Debitur;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encode dan decode message Kafka.
+ * ObjectReader dan ObjectWriter untuk setiap DTO dibuat sekali di awal, bukan dicari ulang di setiap message,
+ * message masuk dibaca langsung dari byte[] tanpa dijadikan String dulu,
+ * dan message keluar selalu ringkas walaupun output JSON web diatur indent.
+ * Buffer yang dipakai Jackson sudah di-recycle per thread oleh BufferRecycler.
+ */
+public class KafkaCodec {
+    private static final List<Class<?>> DAFTAR_DTO = Arrays.asList(
+            VaRequest.class, VaResponse.class, VaPayment.class,
+            TagihanRequest.class, TagihanResponse.class, PembayaranTagihan.class,
+            NotifikasiTagihanRequest.class, NotifikasiPembayaranRequest.class,
+            Debitur.class, LinkedHashMap.class);
+
+    private final ObjectMapper objectMapper;
+    private final Map<Class<?>, ObjectReader> daftarReader = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> daftarWriter = new ConcurrentHashMap<>();
+
+    public KafkaCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper.copy().disable(SerializationFeature.INDENT_OUTPUT);
+        for (Class<?> kelas : DAFTAR_DTO) {
+            daftarReader.put(kelas, this.objectMapper.readerFor(kelas));
+            daftarWriter.put(kelas, this.objectMapper.writerFor(kelas));
+        }
+    }
+
+    public <T> T baca(byte[] data, Class<T> kelas) throws IOException {
+        return reader(kelas).readValue(data);
+    }
+
+    public String tulis(Object data) throws JsonProcessingException {
+        return writer(data.getClass()).writeValueAsString(data);
+    }
+
+    public byte[] tulisBytes(Object data) throws JsonProcessingException {
+        return writer(data.getClass()).writeValueAsBytes(data);
+    }
+
+    private ObjectReader reader(Class<?> kelas) {
+        return daftarReader.computeIfAbsent(kelas, objectMapper::readerFor);
+    }
+
+    private ObjectWriter writer(Class<?> kelas) {
+        return daftarWriter.computeIfAbsent(kelas, objectMapper::writerFor);
+    }
+}
@@ -0,0 +1,95 @@
+package id.ac.tazkia.payment.virtualaccount.helper;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Satu kolom hasil ekspor, dibaca dari kolom result set dengan urutan yang sama.
+ * Tanggal dan waktu diformat dengan satu DateTimeFormatter milik kolom ini.
+ * Angka ditulis apa adanya dengan skala dari database, supaya nilai uang dan totalnya tidak terpotong.
+ */
+public class KolomEkspor {
+    public enum Jenis {
+        TEKS, ANGKA, TANGGAL, WAKTU
+    }
+
+    private final String nama;
+    private final Jenis jenis;
+    private final DateTimeFormatter formatter;
+    private final boolean dijumlahkan;
+
+    private KolomEkspor(String nama, Jenis jenis, DateTimeFormatter formatter, boolean dijumlahkan) {
+        this.nama = nama;
+        this.jenis = jenis;
+        this.formatter = formatter;
+        this.dijumlahkan = dijumlahkan;
+    }
+
+    public static KolomEkspor teks(String nama) {
+        return new KolomEkspor(nama, Jenis.TEKS, null, false);
+    }
+
+    public static KolomEkspor angka(String nama) {
+        return new KolomEkspor(nama, Jenis.ANGKA, null, false);
+    }
+
+    /**
+     * Angka yang totalnya ditulis di baris terakhir file CSV.
+     */
+    public static KolomEkspor total(String nama) {
+        return new KolomEkspor(nama, Jenis.ANGKA, null, true);
+    }
+
+    /**
+     * Untuk kolom SQL bertipe date.
+     */
+    public static KolomEkspor tanggal(String nama, DateTimeFormatter formatter) {
+        return new KolomEkspor(nama, Jenis.TANGGAL, formatter, false);
+    }
+
+    /**
+     * Untuk kolom SQL bertipe timestamp, formatter bisa hanya mengambil tanggal atau jamnya saja.
+     */
+    public static KolomEkspor waktu(String nama, DateTimeFormatter formatter) {
+        return new KolomEkspor(nama, Jenis.WAKTU, formatter, false);
+    }
+
+    public String getNama() {
+        return nama;
+    }
+
+    public Jenis getJenis() {
+        return jenis;
+    }
+
+    public boolean isDijumlahkan() {
+        return dijumlahkan;
+    }
+
+    public BigDecimal bacaAngka(ResultSet rs, int index) throws SQLException {
+        return rs.getBigDecimal(index);
+    }
+
+    /**
+     * @return nilai kolom sebagai teks, atau null bila kolomnya null
+     */
+    public String bacaTeks(ResultSet rs, int index) throws SQLException {
+        switch (jenis) {
+            case ANGKA:
+                BigDecimal angka = bacaAngka(rs, index);
+                return angka == null ? null : angka.toPlainString();
+            case TANGGAL:
+                Date tanggal = rs.getDate(index);
+                return tanggal == null ? null : formatter.format(tanggal.toLocalDate());
+            case WAKTU:
+                Timestamp waktu = rs.getTimestamp(index);
+                return waktu == null ? null : formatter.format(waktu.toLocalDateTime());
+            default:
+                return rs.getString(index);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package id.ac.tazkia.payment.virtualaccount.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor yang terdiri dari beberapa jalur single thread.
+ * Pekerjaan dengan kunci yang sama selalu masuk ke jalur yang sama sehingga dikerjakan berurutan,
+ * sedangkan pekerjaan dengan kunci berbeda bisa dikerjakan paralel di jalur lain.
+ */
+public class StripedExecutor {
+    private final List<ExecutorService> daftarJalur = new ArrayList<>();
+
+    public StripedExecutor(String nama, int jumlahJalur) {
+        if (jumlahJalur < 1) {
+            throw new IllegalArgumentException("Jumlah jalur [" + jumlahJalur + "] minimal 1");
+        }
+        for (int i = 0; i < jumlahJalur; i++) {
+            String namaThread = nama + "-" + i;
+            AtomicInteger urutan = new AtomicInteger();
+            daftarJalur.add(Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, namaThread + "-" + urutan.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }));
+        }
+    }
+
+    public Future<?> submit(Object kunci, Runnable pekerjaan) {
+        int jalur = kunci == null ? 0 : (kunci.hashCode() & Integer.MAX_VALUE) % daftarJalur.size();
+        return daftarJalur.get(jalur).submit(pekerjaan);
+    }
+
+    public int getJumlahJalur() {
+        return daftarJalur.size();
+    }
+
+    public void shutdown() {
+        for (ExecutorService jalur : daftarJalur) {
+            jalur.shutdown();
+        }
+    }
+}
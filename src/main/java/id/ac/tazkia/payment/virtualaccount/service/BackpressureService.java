@@ -0,0 +1,148 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Menghentikan sementara listener Kafka tertentu bila connection pool database sedang penuh,
+ * supaya thread listener tidak ikut mengantri koneksi bersama halaman web.
+ * Container yang di-pause tetap poll ke broker sehingga tidak memicu rebalance.
+ *
+ * Beban diukur dari jumlah thread yang menunggu koneksi dan rata-rata waktu tunggu koneksi
+ * sejak pemeriksaan sebelumnya. Lama koneksi dipakai tidak ikut diukur, karena ekspor, import job
+ * dan rekonsiliasi wajar memakai satu koneksi selama beberapa menit walaupun pool sedang sehat.
+ * Listener baru dijalankan lagi setelah beberapa pemeriksaan berturut-turut di bawah setengah batas.
+ */
+@Service
+public class BackpressureService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackpressureService.class);
+
+    @Value("#{'${kafka.backpressure.listener}'.split(',')}") private List<String> daftarListener;
+    @Value("${kafka.backpressure.antrian-koneksi}") private Integer batasAntrianKoneksi;
+    @Value("${kafka.backpressure.tunggu-koneksi}") private Long batasTungguKoneksi;
+    @Value("${kafka.backpressure.pulih}") private Integer jumlahPulih;
+
+    @Autowired private DataSource dataSource;
+    @Autowired private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private final Sampel tungguKoneksi = new Sampel("hikaricp.connections.acquire");
+    private final AtomicInteger berhenti = new AtomicInteger(0);
+    private int pemeriksaanSehat = 0;
+
+    @PostConstruct
+    public void daftarkanMetric() {
+        Gauge.builder("kafka.backpressure.berhenti", berhenti, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${kafka.backpressure.interval}")
+    public void periksa() {
+        HikariPoolMXBean pool = pool();
+        if (pool == null) {
+            return;
+        }
+
+        int antrian = pool.getThreadsAwaitingConnection();
+        double tunggu = tungguKoneksi.rataRata();
+
+        if (antrian > batasAntrianKoneksi || tunggu > batasTungguKoneksi) {
+            pemeriksaanSehat = 0;
+            if (berhenti.get() == 0) {
+                LOGGER.warn("Connection pool penuh ({} thread menunggu, tunggu {} ms), listener {} dihentikan sementara",
+                        antrian, (long) tunggu, daftarListener);
+                ubahStatus(true);
+            }
+            return;
+        }
+
+        if (berhenti.get() == 0) {
+            return;
+        }
+        if (antrian <= batasAntrianKoneksi / 2 && tunggu <= batasTungguKoneksi / 2) {
+            pemeriksaanSehat++;
+        } else {
+            pemeriksaanSehat = 0;
+        }
+        if (pemeriksaanSehat >= jumlahPulih) {
+            LOGGER.info("Connection pool pulih ({} thread menunggu, tunggu {} ms), listener {} dijalankan lagi",
+                    antrian, (long) tunggu, daftarListener);
+            ubahStatus(false);
+            pemeriksaanSehat = 0;
+        }
+    }
+
+    private void ubahStatus(boolean pause) {
+        for (String id : daftarListener) {
+            MessageListenerContainer container = kafkaListenerEndpointRegistry.getListenerContainer(id.trim());
+            if (container == null) {
+                LOGGER.warn("Listener {} tidak ditemukan", id);
+                continue;
+            }
+            if (pause) {
+                container.pause();
+            } else {
+                container.resume();
+            }
+            meterRegistry.counter("kafka.backpressure.event",
+                    "listener", id.trim(), "aksi", pause ? "pause" : "resume").increment();
+        }
+        berhenti.set(pause ? 1 : 0);
+    }
+
+    private HikariPoolMXBean pool() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                // null sampai koneksi pertama dibuat
+                return dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+            }
+        } catch (SQLException err) {
+            LOGGER.warn(err.getMessage(), err);
+        }
+        return null;
+    }
+
+    /**
+     * Rata-rata timer Hikari sejak pembacaan sebelumnya, bukan sejak aplikasi jalan.
+     */
+    private class Sampel {
+        private final String nama;
+        private long jumlahSebelumnya = 0;
+        private double totalSebelumnya = 0;
+
+        Sampel(String nama) {
+            this.nama = nama;
+        }
+
+        double rataRata() {
+            Timer timer = meterRegistry.find(nama).timer();
+            if (timer == null) {
+                return 0;
+            }
+            long jumlah = timer.count();
+            double total = timer.totalTime(TimeUnit.MILLISECONDS);
+            long selisihJumlah = jumlah - jumlahSebelumnya;
+            double selisihTotal = total - totalSebelumnya;
+            jumlahSebelumnya = jumlah;
+            totalSebelumnya = total;
+            return selisihJumlah > 0 ? selisihTotal / selisihJumlah : 0;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dto.UploadError;
+
+import java.util.List;
+
+/**
+ * Dipanggil import service setiap kali satu chunk selesai,
+ * di dalam transaksi yang menyimpan isi chunk tersebut.
+ * Bila chunk disimpan ulang satu per satu, dipanggil untuk setiap baris di transaksi penyimpanan baris tersebut.
+ * Exception yang dilempar membatalkan penyimpanan chunk dan menghentikan import.
+ */
+@FunctionalInterface
+public interface CheckpointImport {
+    CheckpointImport TANPA_CHECKPOINT = (barisTerakhir, errors) -> { };
+
+    /**
+     * @param barisTerakhir nomor baris terakhir yang sudah diproses, tidak termasuk header
+     * @param errors baris yang gagal diproses sejak checkpoint sebelumnya
+     */
+    void simpan(int barisTerakhir, List<UploadError> errors);
+}
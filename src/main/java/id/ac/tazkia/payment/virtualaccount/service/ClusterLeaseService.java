@@ -0,0 +1,90 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dao.SchedulerLeaseDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Membagi pekerjaan scheduler ke beberapa node aplikasi.
+ * Data yang diproses scheduler dibagi ke dalam beberapa shard berdasarkan hash id tagihan,
+ * setiap node hanya memproses shard yang lease-nya sedang dia pegang.
+ * Node yang berhenti heartbeat akan kehilangan lease-nya dan shard tersebut diambil alih node lain.
+ */
+@Service @Transactional
+public class ClusterLeaseService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterLeaseService.class);
+
+    @Value("${cluster.node.id}") private String nodeId;
+    @Value("${cluster.lease.ttl}") private Integer ttl;
+
+    @Autowired private SchedulerLeaseDao schedulerLeaseDao;
+
+    private volatile List<Integer> daftarShard = Collections.emptyList();
+    private volatile Integer jumlahShard = 0;
+    private volatile long berlakuSampai = 0;
+
+    @PostConstruct
+    public void inisialisasiNode() throws UnknownHostException {
+        if (!StringUtils.hasText(nodeId)) {
+            nodeId = InetAddress.getLocalHost().getHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        LOGGER.info("ID node cluster : {}", nodeId);
+    }
+
+    @Scheduled(fixedDelayString = "${cluster.lease.heartbeat}")
+    public void heartbeat() {
+        long mulai = System.currentTimeMillis();
+
+        schedulerLeaseDao.heartbeat(nodeId);
+        schedulerLeaseDao.perpanjang(nodeId, ttl);
+
+        int totalShard = (int) schedulerLeaseDao.count();
+        long nodeAktif = Math.max(1L, schedulerLeaseDao.hitungNodeAktif(ttl));
+        int jatah = (int) Math.ceil((double) totalShard / nodeAktif);
+
+        int dimiliki = schedulerLeaseDao.findShardByNode(nodeId).size();
+        if (dimiliki > jatah) {
+            schedulerLeaseDao.lepas(nodeId, dimiliki - jatah);
+        } else if (dimiliki < jatah) {
+            schedulerLeaseDao.klaim(nodeId, ttl, jatah - dimiliki);
+        }
+
+        List<Integer> hasil = schedulerLeaseDao.findShardByNode(nodeId);
+        if (!hasil.equals(daftarShard)) {
+            LOGGER.info("Node {} memegang shard {} dari {} shard, {} node aktif",
+                    nodeId, hasil, totalShard, nodeAktif);
+        }
+        jumlahShard = totalShard;
+        daftarShard = Collections.unmodifiableList(hasil);
+        // lease dianggap habis sebelum waktunya di database, supaya tidak ada dua node yang memproses shard yang sama
+        berlakuSampai = mulai + ttl * 1000L / 2;
+    }
+
+    public List<Integer> getDaftarShard() {
+        if (System.currentTimeMillis() > berlakuSampai) {
+            return Collections.emptyList();
+        }
+        return daftarShard;
+    }
+
+    public Integer getJumlahShard() {
+        return jumlahShard;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,223 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dto.StatusReplay;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Message yang gagal diproses dicoba ulang beberapa kali dengan jeda yang berlipat,
+ * bila tetap gagal dikirim ke dead letter topic (nama topic asal ditambah akhiran) beserta penyebab dan jumlah percobaannya.
+ * Message di dead letter topic bisa dikirim ulang ke topic asalnya dengan kecepatan terbatas.
+ *
+ * Dead letter dikirim langsung ke Kafka, tidak lewat outbox, karena salah satu penyebab gagal adalah database tidak bisa diakses.
+ */
+@Service
+public class DeadLetterService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeadLetterService.class);
+
+    public static final String HEADER_ERROR = "x-error";
+    public static final String HEADER_PERCOBAAN = "x-percobaan";
+    public static final String HEADER_TOPIC_ASAL = "x-topic-asal";
+    public static final String HEADER_PARTISI_ASAL = "x-partisi-asal";
+    public static final String HEADER_OFFSET_ASAL = "x-offset-asal";
+    public static final String HEADER_WAKTU_GAGAL = "x-waktu-gagal";
+    public static final String HEADER_JUMLAH_REPLAY = "x-jumlah-replay";
+
+    @Value("${kafka.dlt.suffix}") private String akhiranDlt;
+    @Value("${kafka.retry.maksimum}") private Integer maksimumPercobaan;
+    @Value("${kafka.retry.jeda}") private Long jedaAwal;
+    @Value("${spring.kafka.consumer.group-id}") private String groupId;
+
+    @Autowired private KafkaTemplate<String, String> kafkaTemplate;
+    @Autowired private KafkaProperties kafkaProperties;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private final ExecutorService replayExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean replayBerjalan = new AtomicBoolean(false);
+    private volatile StatusReplay statusReplay = new StatusReplay();
+
+    /**
+     * Menjalankan pekerjaan untuk satu record, dicoba ulang bila gagal.
+     * PesanDitolakException tidak dicoba ulang karena hasilnya akan tetap sama.
+     * @return error terakhir bila record akhirnya dikirim ke dead letter topic, null bila berhasil
+     */
+    public Exception proses(ConsumerRecord<String, byte[]> record, Runnable pekerjaan) {
+        for (int percobaan = 1; ; percobaan++) {
+            try {
+                pekerjaan.run();
+                return null;
+            } catch (PesanDitolakException err) {
+                LOGGER.warn("Message {}-{}@{} ditolak : {}", record.topic(), record.partition(), record.offset(), err.getMessage());
+                kirim(record, err, percobaan);
+                return err;
+            } catch (Exception err) {
+                if (percobaan >= maksimumPercobaan) {
+                    LOGGER.warn("Message {}-{}@{} gagal setelah {} percobaan : {}",
+                            record.topic(), record.partition(), record.offset(), percobaan, err.getMessage(), err);
+                    kirim(record, err, percobaan);
+                    return err;
+                }
+                LOGGER.debug("Percobaan {} message {}-{}@{} gagal : {}",
+                        percobaan, record.topic(), record.partition(), record.offset(), err.getMessage());
+                tunggu(jedaAwal << (percobaan - 1));
+            }
+        }
+    }
+
+    public void kirim(ConsumerRecord<String, byte[]> record, Exception err, int percobaan) {
+        String topicDlt = record.topic() + akhiranDlt;
+        String pesan = record.value() == null ? null : new String(record.value(), StandardCharsets.UTF_8);
+        ProducerRecord<String, String> dlt = new ProducerRecord<>(topicDlt, record.key(), pesan);
+        salinHeader(record.headers(), dlt.headers(), HEADER_JUMLAH_REPLAY);
+        tambahHeader(dlt.headers(), HEADER_ERROR, err.getClass().getName() + " : " + err.getMessage());
+        tambahHeader(dlt.headers(), HEADER_PERCOBAAN, String.valueOf(percobaan));
+        tambahHeader(dlt.headers(), HEADER_TOPIC_ASAL, record.topic());
+        tambahHeader(dlt.headers(), HEADER_PARTISI_ASAL, String.valueOf(record.partition()));
+        tambahHeader(dlt.headers(), HEADER_OFFSET_ASAL, String.valueOf(record.offset()));
+        tambahHeader(dlt.headers(), HEADER_WAKTU_GAGAL, LocalDateTime.now().toString());
+
+        try {
+            kafkaTemplate.send(dlt).get(30, TimeUnit.SECONDS);
+            meterRegistry.counter("kafka.dlt", "topic", record.topic()).increment();
+        } catch (Exception gagal) {
+            LOGGER.error("Gagal mengirim message {}-{}@{} ke {}, isi message : {}",
+                    record.topic(), record.partition(), record.offset(), topicDlt, pesan, gagal);
+        }
+    }
+
+    /**
+     * Mengirim ulang paling banyak sejumlah message dari dead letter topic ke topic asalnya.
+     * Berjalan di background, hanya satu replay yang boleh berjalan dalam satu waktu.
+     */
+    public StatusReplay mulaiReplay(String topic, Integer jumlah, Integer perDetik) {
+        if (!replayBerjalan.compareAndSet(false, true)) {
+            return statusReplay;
+        }
+
+        StatusReplay status = new StatusReplay();
+        status.setTopic(topic);
+        status.setTarget(jumlah);
+        status.setBerjalan(true);
+        status.setWaktuMulai(LocalDateTime.now());
+        statusReplay = status;
+
+        replayExecutor.submit(() -> {
+            try {
+                replay(status, topic, jumlah, Math.max(1, 1000L / Math.max(1, perDetik)));
+            } catch (Exception err) {
+                LOGGER.warn("Replay {} berhenti : {}", topic + akhiranDlt, err.getMessage(), err);
+                status.setError(err.getMessage());
+            } finally {
+                status.setBerjalan(false);
+                status.setWaktuSelesai(LocalDateTime.now());
+                replayBerjalan.set(false);
+            }
+        });
+        return status;
+    }
+
+    public StatusReplay getStatusReplay() {
+        return statusReplay;
+    }
+
+    private void replay(StatusReplay status, String topic, Integer jumlah, long jeda) {
+        Map<String, Object> konfigurasi = kafkaProperties.buildConsumerProperties();
+        konfigurasi.put(ConsumerConfig.GROUP_ID_CONFIG, groupId + "-replay");
+        konfigurasi.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        konfigurasi.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        konfigurasi.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, Math.min(jumlah, 500));
+
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(konfigurasi,
+                new StringDeserializer(), new StringDeserializer())) {
+            consumer.subscribe(Collections.singletonList(topic + akhiranDlt));
+
+            while (status.getTerkirim() < jumlah) {
+                ConsumerRecords<String, String> daftarRecord = consumer.poll(5000);
+                if (daftarRecord.isEmpty()) {
+                    break;
+                }
+                for (ConsumerRecord<String, String> record : daftarRecord) {
+                    // offset di-commit per record, sisa record di poll ini akan dibaca lagi pada replay berikutnya
+                    if (status.getTerkirim() >= jumlah) {
+                        break;
+                    }
+                    kirimUlang(record, topic);
+                    status.setTerkirim(status.getTerkirim() + 1);
+                    consumer.commitSync(Collections.singletonMap(
+                            new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1)));
+                    tunggu(jeda);
+                }
+            }
+        }
+        LOGGER.info("Replay {} selesai, {} message dikirim ulang", topic + akhiranDlt, status.getTerkirim());
+    }
+
+    private void kirimUlang(ConsumerRecord<String, String> record, String topic) {
+        ProducerRecord<String, String> asal = new ProducerRecord<>(topic, record.key(), record.value());
+        Header replay = record.headers().lastHeader(HEADER_JUMLAH_REPLAY);
+        int jumlahReplay = replay == null ? 1 : Integer.parseInt(new String(replay.value(), StandardCharsets.UTF_8)) + 1;
+        tambahHeader(asal.headers(), HEADER_JUMLAH_REPLAY, String.valueOf(jumlahReplay));
+        try {
+            kafkaTemplate.send(asal).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Proses diinterupsi", err);
+        } catch (ExecutionException | TimeoutException err) {
+            throw new IllegalStateException("Gagal mengirim ulang message ke " + topic, err);
+        }
+    }
+
+    private static void salinHeader(Headers dari, Headers ke, String nama) {
+        Header header = dari.lastHeader(nama);
+        if (header != null) {
+            ke.add(header);
+        }
+    }
+
+    private static void tambahHeader(Headers headers, String nama, String nilai) {
+        headers.add(nama, String.valueOf(nilai).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void tunggu(long milidetik) {
+        try {
+            Thread.sleep(milidetik);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Proses diinterupsi", err);
+        }
+    }
+
+    @PreDestroy
+    public void berhenti() {
+        replayExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,159 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import id.ac.tazkia.payment.virtualaccount.dao.DebiturDao;
+import id.ac.tazkia.payment.virtualaccount.entity.Debitur;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache debitur berdasarkan nomor debitur.
+ * Nomor yang tidak terdaftar juga disimpan untuk waktu singkat,
+ * supaya request atau file upload dengan nomor yang salah tidak terus-menerus query ke database.
+ *
+ * Debitur di dalam cache adalah salinan yang terlepas dari persistence context,
+ * boleh dipakai sebagai relasi tagihan tetapi jangan diubah.
+ * Setiap kali debitur disimpan atau dihapus, panggil invalidasi.
+ */
+@Service @Transactional(readOnly = true)
+public class DebiturCacheService {
+
+    @Value("${debitur.cache.kapasitas}") private Long kapasitas;
+    @Value("${debitur.cache.ttl}") private Long ttl;
+    @Value("${debitur.cache.ttl-kosong}") private Long ttlKosong;
+
+    @Autowired private DebiturDao debiturDao;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private Cache<String, Optional<Debitur>> cache;
+
+    @PostConstruct
+    public void inisialisasiCache() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(kapasitas)
+                .expireAfter(new Expiry<String, Optional<Debitur>>() {
+                    @Override
+                    public long expireAfterCreate(String nomor, Optional<Debitur> debitur, long sekarang) {
+                        return TimeUnit.SECONDS.toNanos(debitur.isPresent() ? ttl : ttlKosong);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String nomor, Optional<Debitur> debitur, long sekarang, long sisa) {
+                        return expireAfterCreate(nomor, debitur, sekarang);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String nomor, Optional<Debitur> debitur, long sekarang, long sisa) {
+                        return sisa;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "debitur");
+    }
+
+    public Debitur cari(String nomorDebitur) {
+        if (nomorDebitur == null) {
+            return null;
+        }
+        return cache.get(nomorDebitur, nomor -> Optional.ofNullable(debiturDao.findByNomorDebitur(nomor))
+                .map(DebiturCacheService::salin))
+                .orElse(null);
+    }
+
+    public boolean ada(String nomorDebitur) {
+        return cari(nomorDebitur) != null;
+    }
+
+    /**
+     * Nomor yang belum ada di cache dicari ke database dengan satu query.
+     * @return debitur per nomor debitur, hanya yang terdaftar
+     */
+    public Map<String, Debitur> cari(Collection<String> daftarNomor) {
+        Set<String> belumAda = new HashSet<>(daftarNomor);
+        belumAda.remove(null);
+        Map<String, Optional<Debitur>> hasil = new HashMap<>(cache.getAllPresent(belumAda));
+        belumAda.removeAll(hasil.keySet());
+        if (!belumAda.isEmpty()) {
+            Map<String, Optional<Debitur>> dariDatabase = new HashMap<>();
+            for (String nomor : belumAda) {
+                dariDatabase.put(nomor, Optional.empty());
+            }
+            for (Debitur d : debiturDao.findByNomorDebiturIn(belumAda)) {
+                dariDatabase.put(d.getNomorDebitur(), Optional.of(salin(d)));
+            }
+            cache.putAll(dariDatabase);
+            hasil.putAll(dariDatabase);
+        }
+
+        Map<String, Debitur> debitur = new HashMap<>();
+        for (Map.Entry<String, Optional<Debitur>> entry : hasil.entrySet()) {
+            entry.getValue().ifPresent(d -> debitur.put(entry.getKey(), d));
+        }
+        return debitur;
+    }
+
+    /**
+     * Untuk debitur baru, supaya nomornya tidak lagi tercatat sebagai tidak terdaftar.
+     */
+    public void invalidasi(String nomorDebitur) {
+        invalidasi(nomorDebitur, null);
+    }
+
+    /**
+     * Untuk debitur yang diubah atau dihapus.
+     * Entry dengan id yang sama juga dibuang, karena nomor debiturnya mungkin ikut diubah.
+     */
+    public void invalidasi(Debitur debitur) {
+        invalidasi(debitur.getNomorDebitur(), debitur.getId());
+    }
+
+    /**
+     * Bila ada transaksi, cache baru dibuang setelah commit.
+     */
+    private void invalidasi(String nomor, String id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            buang(nomor, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                buang(nomor, id);
+            }
+        });
+    }
+
+    private void buang(String nomor, String id) {
+        if (nomor != null) {
+            cache.invalidate(nomor);
+        }
+        if (id != null) {
+            cache.asMap().values().removeIf(d -> d.isPresent() && id.equals(d.get().getId()));
+        }
+    }
+
+    private static Debitur salin(Debitur debitur) {
+        Debitur salinan = new Debitur();
+        BeanUtils.copyProperties(debitur, salinan);
+        return salinan;
+    }
+}
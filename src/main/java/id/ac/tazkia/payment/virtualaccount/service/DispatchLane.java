@@ -0,0 +1,163 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jalur pengiriman VA request untuk satu bank.
+ * Jumlah request yang boleh menunggu response (window) naik perlahan selama bank merespon cepat,
+ * dipotong setengah bila ada timeout atau response ERROR,
+ * dan jalur dihentikan sementara bila bank berturut-turut tidak merespon.
+ * Request yang sedang diproses dicatat berdasarkan id pending VA request.
+ * Kapasitas dipesan lebih dulu sebelum request dibuat, supaya beberapa dispatcher yang berjalan bersamaan
+ * tidak melihat window kosong yang sama.
+ */
+class DispatchLane {
+
+    enum Status {
+        NORMAL, JEDA, PERCOBAAN
+    }
+
+    private final String bank;
+    private final double windowMinimum;
+    private final double windowMaksimum;
+
+    private final Map<String, Long> sedangProses = new LinkedHashMap<>();
+    private double window;
+    private Status status = Status.NORMAL;
+    private int timeoutBeruntun = 0;
+    private long jedaSampai = 0;
+    private long antrian = 0;
+    // kapasitas yang sudah diambil dispatcher tetapi request-nya belum dicatat atau dibatalkan
+    private int dipesan = 0;
+
+    DispatchLane(String bank, double windowAwal, double windowMinimum, double windowMaksimum) {
+        this.bank = bank;
+        this.window = windowAwal;
+        this.windowMinimum = windowMinimum;
+        this.windowMaksimum = windowMaksimum;
+    }
+
+    synchronized int kapasitas(long sekarang) {
+        if (Status.JEDA.equals(status)) {
+            if (sekarang < jedaSampai) {
+                return 0;
+            }
+            // masa jeda habis, coba kirim satu request dulu
+            status = Status.PERCOBAAN;
+        }
+
+        if (Status.PERCOBAAN.equals(status)) {
+            return sedangProses.isEmpty() && dipesan == 0 ? 1 : 0;
+        }
+
+        return Math.max(0, (int) window - sedangProses.size() - dipesan);
+    }
+
+    /**
+     * @return jumlah kapasitas yang dipesan, harus dilepas dengan {@link #lepas(int)} setelah request dicatat atau batal
+     */
+    synchronized int pesan(long sekarang, int maksimum) {
+        int jumlah = Math.min(maksimum, kapasitas(sekarang));
+        dipesan += jumlah;
+        return jumlah;
+    }
+
+    synchronized void lepas(int jumlah) {
+        dipesan = Math.max(0, dipesan - jumlah);
+    }
+
+    synchronized void kirim(String idRequest, long sekarang) {
+        sedangProses.put(idRequest, sekarang);
+    }
+
+    synchronized List<String> daftarSedangProses() {
+        return new ArrayList<>(sedangProses.keySet());
+    }
+
+    synchronized void sukses(String idRequest, long lamaResponse, long batasCepat) {
+        if (sedangProses.remove(idRequest) == null) {
+            return;
+        }
+
+        timeoutBeruntun = 0;
+        if (Status.PERCOBAAN.equals(status)) {
+            status = Status.NORMAL;
+            window = windowMinimum;
+            return;
+        }
+
+        // additive increase : bertambah satu setiap satu window response cepat
+        if (lamaResponse <= batasCepat) {
+            window = Math.min(windowMaksimum, window + 1 / window);
+        }
+    }
+
+    synchronized void error(String idRequest) {
+        if (sedangProses.remove(idRequest) == null) {
+            return;
+        }
+        turunkanWindow();
+    }
+
+    /**
+     * @return jumlah request yang dianggap timeout
+     */
+    synchronized int periksaTimeout(long sekarang, long batasTimeout, int batasTimeoutBeruntun, long lamaJeda) {
+        int jumlahTimeout = 0;
+        Iterator<Map.Entry<String, Long>> iterator = sedangProses.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (sekarang - iterator.next().getValue() > batasTimeout) {
+                iterator.remove();
+                jumlahTimeout++;
+            }
+        }
+
+        if (jumlahTimeout == 0) {
+            return 0;
+        }
+
+        turunkanWindow();
+        timeoutBeruntun += jumlahTimeout;
+        if (Status.PERCOBAAN.equals(status) || timeoutBeruntun >= batasTimeoutBeruntun) {
+            status = Status.JEDA;
+            jedaSampai = sekarang + lamaJeda;
+        }
+        return jumlahTimeout;
+    }
+
+    private void turunkanWindow() {
+        window = Math.max(windowMinimum, window / 2);
+    }
+
+    synchronized void setAntrian(long antrian) {
+        this.antrian = antrian;
+    }
+
+    String getBank() {
+        return bank;
+    }
+
+    synchronized double getWindow() {
+        return window;
+    }
+
+    synchronized int getSedangProses() {
+        return sedangProses.size();
+    }
+
+    synchronized long getAntrian() {
+        return antrian;
+    }
+
+    synchronized Status getStatus() {
+        return status;
+    }
+
+    synchronized int getTimeoutBeruntun() {
+        return timeoutBeruntun;
+    }
+}
@@ -0,0 +1,198 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dao.PendingVaRequestDao;
+import id.ac.tazkia.payment.virtualaccount.dao.VirtualAccountDao;
+import id.ac.tazkia.payment.virtualaccount.dto.StatusDispatchLane;
+import id.ac.tazkia.payment.virtualaccount.entity.VaStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Mengatur laju VA request per bank, supaya gateway bank yang lambat atau mati
+ * tidak mendapat beban yang sama dengan bank yang sehat.
+ *
+ * Status jalur hanya ada di node yang mengirim request, sedangkan response bisa diterima node lain.
+ * Karena itu hasil response tidak langsung dicatat ke jalur, tetapi disimpan di pending_va_request
+ * lalu dibaca secara berkala oleh node pengirim sebelum memeriksa timeout.
+ */
+@Service
+public class DispatchLaneService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchLaneService.class);
+
+    private static final List<VaStatus> STATUS_ANTRIAN = Arrays.asList(
+            VaStatus.CREATE, VaStatus.UPDATE, VaStatus.DELETE, VaStatus.INQUIRY);
+
+    @Value("${va.lane.window.awal}") private Integer windowAwal;
+    @Value("${va.lane.window.minimum}") private Integer windowMinimum;
+    @Value("${va.lane.window.maksimum}") private Integer windowMaksimum;
+    @Value("${va.lane.batas-cepat}") private Long batasCepat;
+    @Value("${va.lane.timeout}") private Long batasTimeout;
+    @Value("${va.lane.timeout-beruntun}") private Integer batasTimeoutBeruntun;
+    @Value("${va.lane.jeda}") private Long lamaJeda;
+
+    @Autowired private VirtualAccountDao virtualAccountDao;
+    @Autowired private PendingVaRequestDao pendingVaRequestDao;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, DispatchLane> daftarLane = new ConcurrentHashMap<>();
+
+    /**
+     * Memesan paling banyak sejumlah kapasitas di jalur bank.
+     * Pesanan dilepas setelah transaksi selesai, saat itu request yang di-commit sudah tercatat sedang diproses.
+     * Tanpa transaksi tidak ada yang melepas pesanan, sehingga kapasitas hanya dihitung tanpa dipesan.
+     */
+    public int pesanKapasitas(String bank, int maksimum) {
+        DispatchLane lane = lane(bank);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return Math.min(maksimum, lane.kapasitas(System.currentTimeMillis()));
+        }
+
+        int jumlah = lane.pesan(System.currentTimeMillis(), maksimum);
+        if (jumlah > 0) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    lane.lepas(jumlah);
+                }
+            });
+        }
+        return jumlah;
+    }
+
+    /**
+     * Bila ada transaksi, request baru dicatat sedang diproses setelah commit,
+     * karena sebelum itu pending request dan outbox-nya belum ada bagi node lain.
+     * Bila di-rollback, request tidak pernah terkirim dan tidak boleh dihitung timeout.
+     */
+    public void kirim(String bank, List<String> daftarIdRequest) {
+        if (daftarIdRequest.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            catatKirim(bank, daftarIdRequest);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                catatKirim(bank, daftarIdRequest);
+            }
+        });
+    }
+
+    private void catatKirim(String bank, List<String> daftarIdRequest) {
+        DispatchLane lane = lane(bank);
+        long sekarang = System.currentTimeMillis();
+        for (String idRequest : daftarIdRequest) {
+            lane.kirim(idRequest, sekarang);
+        }
+    }
+
+    @Scheduled(fixedDelay = 1000) @Transactional
+    public void periksaTimeout() {
+        terimaResponse();
+
+        long sekarang = System.currentTimeMillis();
+        for (DispatchLane lane : daftarLane.values()) {
+            DispatchLane.Status sebelumnya = lane.getStatus();
+            int jumlahTimeout = lane.periksaTimeout(sekarang, batasTimeout, batasTimeoutBeruntun, lamaJeda);
+            if (jumlahTimeout > 0) {
+                LOGGER.warn("{} VA request ke bank {} timeout, window menjadi {}",
+                        jumlahTimeout, lane.getBank(), lane.getWindow());
+            }
+            if (!sebelumnya.equals(lane.getStatus()) && DispatchLane.Status.JEDA.equals(lane.getStatus())) {
+                LOGGER.warn("Bank {} tidak merespon, pengiriman VA request dihentikan selama {} ms",
+                        lane.getBank(), lamaJeda);
+            }
+        }
+    }
+
+    private void terimaResponse() {
+        Map<String, DispatchLane> lanePerRequest = new HashMap<>();
+        for (DispatchLane lane : daftarLane.values()) {
+            for (String idRequest : lane.daftarSedangProses()) {
+                lanePerRequest.put(idRequest, lane);
+            }
+        }
+
+        if (!lanePerRequest.isEmpty()) {
+            List<String> sudahDibaca = new ArrayList<>();
+            for (Object[] hasil : pendingVaRequestDao.cariYangSudahDirespon(lanePerRequest.keySet())) {
+                String idRequest = (String) hasil[0];
+                DispatchLane lane = lanePerRequest.get(idRequest);
+                if (Boolean.TRUE.equals(hasil[1])) {
+                    // waktu kirim dan waktu response dicatat di database, tidak tergantung node yang menerima
+                    long lamaResponse = Duration.between((LocalDateTime) hasil[2], (LocalDateTime) hasil[3]).toMillis();
+                    lane.sukses(idRequest, lamaResponse, batasCepat);
+                } else {
+                    lane.error(idRequest);
+                }
+                sudahDibaca.add(idRequest);
+            }
+            if (!sudahDibaca.isEmpty()) {
+                pendingVaRequestDao.hapus(sudahDibaca);
+            }
+        }
+
+        // setelah batas timeout, request pasti sudah tidak dicatat di jalur node mana pun
+        pendingVaRequestDao.hapusResponseSebelum(LocalDateTime.now().minus(Duration.ofMillis(batasTimeout)));
+    }
+
+    @Scheduled(fixedDelay = 5000)
+    public void hitungAntrian() {
+        Map<String, Long> antrian = new HashMap<>();
+        for (Object[] hasil : virtualAccountDao.hitungAntrianPerBank(STATUS_ANTRIAN)) {
+            antrian.put((String) hasil[0], (Long) hasil[1]);
+        }
+
+        for (String bank : antrian.keySet()) {
+            lane(bank);
+        }
+        for (DispatchLane lane : daftarLane.values()) {
+            lane.setAntrian(antrian.getOrDefault(lane.getBank(), 0L));
+        }
+    }
+
+    public List<StatusDispatchLane> daftarStatus() {
+        List<StatusDispatchLane> hasil = new ArrayList<>();
+        for (DispatchLane lane : daftarLane.values()) {
+            hasil.add(new StatusDispatchLane(lane.getBank(), lane.getStatus().name(),
+                    lane.getWindow(), lane.getSedangProses(), lane.getAntrian(), lane.getTimeoutBeruntun()));
+        }
+        return hasil;
+    }
+
+    private DispatchLane lane(String bank) {
+        return daftarLane.computeIfAbsent(bank, this::buatLane);
+    }
+
+    private DispatchLane buatLane(String bank) {
+        DispatchLane lane = new DispatchLane(bank, windowAwal, windowMinimum, windowMaksimum);
+        Gauge.builder("va.lane.window", lane, DispatchLane::getWindow)
+                .tag("bank", bank).register(meterRegistry);
+        Gauge.builder("va.lane.sedang.proses", lane, DispatchLane::getSedangProses)
+                .tag("bank", bank).register(meterRegistry);
+        Gauge.builder("va.lane.antrian", lane, DispatchLane::getAntrian)
+                .tag("bank", bank).register(meterRegistry);
+        return lane;
+    }
+}
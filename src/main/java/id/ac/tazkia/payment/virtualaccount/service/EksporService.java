@@ -0,0 +1,349 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import id.ac.tazkia.payment.virtualaccount.dto.FormatEkspor;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
+import id.ac.tazkia.payment.virtualaccount.helper.KolomEkspor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ekspor laporan dalam format CSV atau JSON lines tanpa memuat entity.
+ * Data diambil dengan query SQL yang hanya memilih kolom yang ditulis,
+ * dibaca lewat cursor di sisi database dengan fetch size tetap,
+ * lalu setiap baris langsung ditulis ke output, sehingga pemakaian memori tidak bergantung pada rentang tanggal.
+ */
+@Service
+public class EksporService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EksporService.class);
+
+    private static final String SQL_PEMBAYARAN = "select d.nomor_debitur, d.nama, b.nama, p.jumlah, " +
+            "p.waktu_transaksi, p.waktu_transaksi, p.referensi " +
+            "from pembayaran p " +
+            "inner join tagihan t on p.id_tagihan = t.id " +
+            "inner join debitur d on t.id_debitur = d.id " +
+            "left join bank b on p.id_bank = b.id " +
+            "where t.id_jenis_tagihan = ? and p.waktu_transaksi >= ? and p.waktu_transaksi < ? " +
+            "order by p.waktu_transaksi";
+
+    private static final List<KolomEkspor> KOLOM_PEMBAYARAN = Arrays.asList(
+            KolomEkspor.teks("NIM"),
+            KolomEkspor.teks("Nama"),
+            KolomEkspor.teks("Bank"),
+            KolomEkspor.total("Nominal"),
+            KolomEkspor.waktu("Tanggal Transfer", DateTimeFormatter.ISO_LOCAL_DATE),
+            KolomEkspor.waktu("Waktu Transfer", DateTimeFormatter.ISO_LOCAL_TIME),
+            KolomEkspor.teks("Referensi"));
+
+    private static final String SQL_TAGIHAN = "select t.nomor, d.nomor_debitur, d.nama, k.kode, t.keterangan, " +
+            "t.tanggal_tagihan, t.tanggal_jatuh_tempo, t.nilai_tagihan, t.jumlah_pembayaran, " +
+            "t.nilai_tagihan - t.jumlah_pembayaran, t.status_pembayaran " +
+            "from tagihan t " +
+            "inner join debitur d on t.id_debitur = d.id " +
+            "inner join kode_biaya k on t.id_kode_biaya = k.id " +
+            "where t.id_jenis_tagihan = ? and t.status_tagihan = 'AKTIF' " +
+            "and t.tanggal_tagihan >= ? and t.tanggal_tagihan <= ? ";
+    private static final String FILTER_LUNAS = "and t.status_pembayaran = 'LUNAS' ";
+    private static final String FILTER_OUTSTANDING = "and t.status_pembayaran <> 'LUNAS' ";
+    private static final String URUTAN_TAGIHAN = "order by t.tanggal_tagihan, t.nomor";
+
+    private static final List<KolomEkspor> KOLOM_TAGIHAN = Arrays.asList(
+            KolomEkspor.teks("Nomor Tagihan"),
+            KolomEkspor.teks("NIM"),
+            KolomEkspor.teks("Nama"),
+            KolomEkspor.teks("Kode Biaya"),
+            KolomEkspor.teks("Keterangan"),
+            KolomEkspor.tanggal("Tanggal Tagihan", DateTimeFormatter.ISO_LOCAL_DATE),
+            KolomEkspor.tanggal("Jatuh Tempo", DateTimeFormatter.ISO_LOCAL_DATE),
+            KolomEkspor.total("Nilai Tagihan"),
+            KolomEkspor.total("Jumlah Pembayaran"),
+            KolomEkspor.total("Sisa Tagihan"),
+            KolomEkspor.teks("Status Pembayaran"));
+
+    private static final String SQL_VIRTUAL_ACCOUNT = "select t.nomor, d.nomor_debitur, d.nama, b.nama, " +
+            "va.nomor, va.va_status, t.nilai_tagihan, t.tanggal_jatuh_tempo " +
+            "from virtual_account va " +
+            "inner join tagihan t on va.id_tagihan = t.id " +
+            "inner join debitur d on t.id_debitur = d.id " +
+            "inner join bank b on va.id_bank = b.id " +
+            "where t.id_jenis_tagihan = ? and t.status_tagihan = 'AKTIF' " +
+            "and t.tanggal_tagihan >= ? and t.tanggal_tagihan <= ? " +
+            "order by t.tanggal_tagihan, t.nomor, b.nama";
+
+    private static final List<KolomEkspor> KOLOM_VIRTUAL_ACCOUNT = Arrays.asList(
+            KolomEkspor.teks("Nomor Tagihan"),
+            KolomEkspor.teks("NIM"),
+            KolomEkspor.teks("Nama"),
+            KolomEkspor.teks("Bank"),
+            KolomEkspor.teks("Nomor VA"),
+            KolomEkspor.teks("Status VA"),
+            KolomEkspor.angka("Nilai Tagihan"),
+            KolomEkspor.tanggal("Jatuh Tempo", DateTimeFormatter.ISO_LOCAL_DATE));
+
+    private static final List<KolomEkspor> KOLOM_UMUR_TAGIHAN = Arrays.asList(
+            KolomEkspor.teks("Jenis Tagihan"),
+            KolomEkspor.teks("Kode Biaya"),
+            KolomEkspor.total("Jumlah Tagihan"),
+            KolomEkspor.total("0-30 Hari"),
+            KolomEkspor.total("31-60 Hari"),
+            KolomEkspor.total("61-90 Hari"),
+            KolomEkspor.total("Lebih dari 90 Hari"),
+            KolomEkspor.total("Total"));
+
+    private static final int UKURAN_BUFFER = 64 * 1024;
+
+    @Value("${ekspor.fetch-size}") private Integer fetchSize;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private ObjectMapper objectMapper;
+
+    private TransactionTemplate readOnly;
+
+    @PostConstruct
+    public void inisialisasi() {
+        // PostgreSQL hanya memakai cursor bila fetch size diisi dan query berjalan di dalam transaksi
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    public long eksporPembayaran(JenisTagihan jenis, LocalDate mulai, LocalDate sampai,
+                                 FormatEkspor format, OutputStream output) throws IOException {
+        return ekspor(SQL_PEMBAYARAN, KOLOM_PEMBAYARAN, format, output, jenis.getId(),
+                Timestamp.valueOf(mulai.atStartOfDay()), Timestamp.valueOf(sampai.plusDays(1).atStartOfDay()));
+    }
+
+    /**
+     * @param lunas true untuk tagihan yang sudah lunas, false untuk tagihan yang belum dibayar penuh
+     */
+    public long eksporTagihan(JenisTagihan jenis, boolean lunas, LocalDate mulai, LocalDate sampai,
+                              FormatEkspor format, OutputStream output) throws IOException {
+        String sql = SQL_TAGIHAN + (lunas ? FILTER_LUNAS : FILTER_OUTSTANDING) + URUTAN_TAGIHAN;
+        return ekspor(sql, KOLOM_TAGIHAN, format, output, jenis.getId(),
+                Date.valueOf(mulai), Date.valueOf(sampai));
+    }
+
+    public long eksporVirtualAccount(JenisTagihan jenis, LocalDate mulai, LocalDate sampai,
+                                     FormatEkspor format, OutputStream output) throws IOException {
+        return ekspor(SQL_VIRTUAL_ACCOUNT, KOLOM_VIRTUAL_ACCOUNT, format, output, jenis.getId(),
+                Date.valueOf(mulai), Date.valueOf(sampai));
+    }
+
+    public long eksporUmurTagihan(LocalDate tanggal, FormatEkspor format, OutputStream output) throws IOException {
+        return ekspor(UmurTagihanService.SQL_UMUR_TAGIHAN, KOLOM_UMUR_TAGIHAN, format, output,
+                UmurTagihanService.parameter(tanggal));
+    }
+
+    /**
+     * Kolom pertama di CSV selalu nomor urut baris, sama seperti laporan CSV sebelumnya.
+     * @return jumlah baris data yang ditulis
+     */
+    private long ekspor(String sql, List<KolomEkspor> kolom, FormatEkspor format,
+                        OutputStream output, Object... parameter) throws IOException {
+        long mulai = System.currentTimeMillis();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), UKURAN_BUFFER);
+        PenulisBaris penulis = format == FormatEkspor.JSONL
+                ? new PenulisJsonLines(kolom, objectMapper.getFactory().createGenerator(writer))
+                : new PenulisCsv(kolom, writer);
+
+        try {
+            penulis.awal();
+            readOnly.execute(status -> {
+                jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(sql,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    new ArgumentPreparedStatementSetter(parameter).setValues(ps);
+                    return ps;
+                }, (RowCallbackHandler) rs -> {
+                    try {
+                        penulis.tulis(rs);
+                    } catch (IOException err) {
+                        throw new UncheckedIOException(err);
+                    }
+                });
+                return null;
+            });
+            penulis.akhir();
+        } catch (UncheckedIOException err) {
+            // biasanya koneksi browser terputus, query ikut dihentikan
+            throw err.getCause();
+        }
+        writer.flush();
+
+        LOGGER.debug("Ekspor {} baris {} dalam {} ms", penulis.jumlahBaris, format,
+                System.currentTimeMillis() - mulai);
+        return penulis.jumlahBaris;
+    }
+
+    private abstract static class PenulisBaris {
+        protected final List<KolomEkspor> kolom;
+        protected long jumlahBaris = 0;
+
+        PenulisBaris(List<KolomEkspor> kolom) {
+            this.kolom = kolom;
+        }
+
+        abstract void awal() throws IOException;
+
+        abstract void tulis(ResultSet rs) throws IOException, SQLException;
+
+        abstract void akhir() throws IOException;
+    }
+
+    private static class PenulisCsv extends PenulisBaris {
+        private final Writer writer;
+        private final BigDecimal[] total;
+
+        PenulisCsv(List<KolomEkspor> kolom, Writer writer) {
+            super(kolom);
+            this.writer = writer;
+            this.total = new BigDecimal[kolom.size()];
+            for (int i = 0; i < kolom.size(); i++) {
+                if (kolom.get(i).isDijumlahkan()) {
+                    total[i] = BigDecimal.ZERO;
+                }
+            }
+        }
+
+        @Override
+        void awal() throws IOException {
+            writer.write("No");
+            for (KolomEkspor k : kolom) {
+                writer.write(',');
+                tulisField(k.getNama());
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        void tulis(ResultSet rs) throws IOException, SQLException {
+            jumlahBaris++;
+            writer.write(Long.toString(jumlahBaris));
+            for (int i = 0; i < kolom.size(); i++) {
+                KolomEkspor k = kolom.get(i);
+                writer.write(',');
+                if (total[i] != null) {
+                    BigDecimal nilai = k.bacaAngka(rs, i + 1);
+                    if (nilai != null) {
+                        total[i] = total[i].add(nilai);
+                        writer.write(nilai.toPlainString());
+                    }
+                } else {
+                    tulisField(k.bacaTeks(rs, i + 1));
+                }
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        void akhir() throws IOException {
+            boolean adaTotal = false;
+            for (BigDecimal t : total) {
+                adaTotal = adaTotal || t != null;
+            }
+            if (!adaTotal) {
+                return;
+            }
+
+            writer.write("Jumlah");
+            for (BigDecimal t : total) {
+                writer.write(',');
+                writer.write(t == null ? "-" : t.toPlainString());
+            }
+            writer.write('\n');
+        }
+
+        private void tulisField(String nilai) throws IOException {
+            if (nilai == null) {
+                return;
+            }
+            boolean perluKutip = false;
+            for (int i = 0; i < nilai.length() && !perluKutip; i++) {
+                char c = nilai.charAt(i);
+                perluKutip = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!perluKutip) {
+                writer.write(nilai);
+                return;
+            }
+            writer.write('"');
+            writer.write(nilai.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private static class PenulisJsonLines extends PenulisBaris {
+        private final JsonGenerator generator;
+
+        PenulisJsonLines(List<KolomEkspor> kolom, JsonGenerator generator) {
+            super(kolom);
+            this.generator = generator;
+        }
+
+        @Override
+        void awal() {
+            // JSON lines tidak punya header
+        }
+
+        @Override
+        void tulis(ResultSet rs) throws IOException, SQLException {
+            jumlahBaris++;
+            generator.writeStartObject();
+            for (int i = 0; i < kolom.size(); i++) {
+                KolomEkspor k = kolom.get(i);
+                generator.writeFieldName(k.getNama());
+                if (k.getJenis() == KolomEkspor.Jenis.ANGKA) {
+                    BigDecimal nilai = k.bacaAngka(rs, i + 1);
+                    if (nilai == null) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(nilai);
+                    }
+                } else {
+                    String nilai = k.bacaTeks(rs, i + 1);
+                    if (nilai == null) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeString(nilai);
+                    }
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        void akhir() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dao.DebiturDao;
+import id.ac.tazkia.payment.virtualaccount.dto.HasilImport;
+import id.ac.tazkia.payment.virtualaccount.dto.UploadError;
+import id.ac.tazkia.payment.virtualaccount.helper.CsvReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Import debitur dari file CSV dengan kolom nomor debitur, nama, email dan nomor handphone.
+ * Per chunk, nomor debitur yang sudah terdaftar dicari dengan satu query,
+ * nomor yang muncul dua kali di dalam file dideteksi di memori,
+ * lalu baris yang valid di-insert dengan JDBC batch INSERT ... ON CONFLICT DO NOTHING dalam satu transaksi.
+ * Baris yang ternyata sudah di-insert proses lain di antara pemeriksaan dan insert dilaporkan sebagai duplikat.
+ * Checkpoint dicatat di transaksi yang sama dengan insert, sehingga import yang terputus bisa dilanjutkan
+ * dari baris sesudah chunk terakhir yang berhasil di-commit.
+ */
+@Service
+public class ImportDebiturService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportDebiturService.class);
+
+    private static final int JUMLAH_KOLOM = 4;
+    private static final String SQL_INSERT = "insert into debitur (id, nomor_debitur, nama, email, no_hp) " +
+            "values (?, ?, ?, ?, ?) on conflict (nomor_debitur) do nothing";
+    private static final Pattern EMAIL = Pattern.compile(
+            "^[A-Za-z0-9!#$%&'*+/=?^_`{|}~-]+(\\.[A-Za-z0-9!#$%&'*+/=?^_`{|}~-]+)*"
+                    + "@[A-Za-z0-9]([A-Za-z0-9-]*[A-Za-z0-9])?(\\.[A-Za-z0-9]([A-Za-z0-9-]*[A-Za-z0-9])?)*$");
+
+    @Value("${import.debitur.chunk}") private Integer ukuranChunk;
+
+    @Autowired private DebiturDao debiturDao;
+    @Autowired private DebiturCacheService debiturCacheService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    public HasilImport importDebitur(InputStream input, boolean pakaiHeader) {
+        return importDebitur(input, pakaiHeader, 0, CheckpointImport.TANPA_CHECKPOINT);
+    }
+
+    /**
+     * @param mulaiBaris baris sampai nomor ini dilewati, karena sudah di-commit pada proses sebelumnya
+     */
+    public HasilImport importDebitur(InputStream input, boolean pakaiHeader,
+                                     int mulaiBaris, CheckpointImport checkpoint) {
+        HasilImport hasil = new HasilImport();
+        // nomor debitur yang sudah muncul di file, beserta nomor barisnya
+        Map<String, Integer> nomorDiFile = new HashMap<>();
+
+        try (CsvReader reader = new CsvReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            if (pakaiHeader) {
+                reader.bacaRecord();
+            }
+
+            List<Object[]> chunk = new ArrayList<>();
+            List<UploadError> barisChunk = new ArrayList<>();
+            List<UploadError> errorChunk = new ArrayList<>();
+            int jumlahBarisChunk = 0;
+            int baris = mulaiBaris;
+            String[] data;
+            while ((data = reader.bacaRecord()) != null) {
+                baris = reader.getNomorRecord() - (pakaiHeader ? 1 : 0);
+                if (baris <= mulaiBaris) {
+                    continue;
+                }
+                hasil.setJumlahBaris(hasil.getJumlahBaris() + 1);
+                jumlahBarisChunk++;
+
+                UploadError error = validasi(data, baris, reader.getRecordMentah(), nomorDiFile);
+                if (error != null) {
+                    errorChunk.add(error);
+                } else {
+                    chunk.add(new Object[]{UUID.randomUUID().toString(), data[0], data[1],
+                            kosongJadiNull(data[2]), kosongJadiNull(data[3])});
+                    barisChunk.add(new UploadError(baris, null, reader.getRecordMentah()));
+                }
+
+                if (jumlahBarisChunk >= ukuranChunk) {
+                    simpan(chunk, barisChunk, errorChunk, baris, checkpoint);
+                    hasil.getErrors().addAll(errorChunk);
+                    chunk.clear();
+                    barisChunk.clear();
+                    errorChunk.clear();
+                    jumlahBarisChunk = 0;
+                }
+            }
+            if (jumlahBarisChunk > 0) {
+                simpan(chunk, barisChunk, errorChunk, baris, checkpoint);
+                hasil.getErrors().addAll(errorChunk);
+            }
+        } catch (IOException err) {
+            LOGGER.warn(err.getMessage(), err);
+            hasil.getErrors().add(new UploadError(0, "Format file salah", err.getMessage()));
+        }
+        hasil.getErrors().sort((a, b) -> a.getBaris().compareTo(b.getBaris()));
+
+        LOGGER.info("Import debitur : {} baris, {} gagal", hasil.getJumlahBaris(), hasil.getErrors().size());
+        return hasil;
+    }
+
+    private UploadError validasi(String[] data, int baris, String mentah, Map<String, Integer> nomorDiFile) {
+        if (data.length != JUMLAH_KOLOM) {
+            return new UploadError(baris, "Format data salah", mentah);
+        }
+        if (!StringUtils.hasText(data[0])) {
+            return new UploadError(baris, "Nomor debitur harus diisi", mentah);
+        }
+        if (!StringUtils.hasText(data[1])) {
+            return new UploadError(baris, "Nama debitur harus diisi", mentah);
+        }
+        if (StringUtils.hasText(data[2]) && !EMAIL.matcher(data[2]).matches()) {
+            return new UploadError(baris, "Format email salah", mentah);
+        }
+        Integer barisSebelumnya = nomorDiFile.putIfAbsent(data[0], baris);
+        if (barisSebelumnya != null) {
+            return new UploadError(baris, "Nomor debitur " + data[0]
+                    + " sudah digunakan di baris " + barisSebelumnya, mentah);
+        }
+        return null;
+    }
+
+    /**
+     * @param barisChunk nomor baris dan isi record untuk setiap baris valid di chunk, keterangan belum diisi
+     * @param errors baris yang gagal validasi, ditambah baris yang ternyata sudah terdaftar
+     */
+    private void simpan(List<Object[]> chunk, List<UploadError> barisChunk, List<UploadError> errors,
+                        int barisTerakhir, CheckpointImport checkpoint) {
+        List<Object[]> baru = new ArrayList<>();
+        List<UploadError> barisBaru = new ArrayList<>();
+        if (!chunk.isEmpty()) {
+            Set<String> nomorDebitur = new HashSet<>();
+            for (Object[] debitur : chunk) {
+                nomorDebitur.add((String) debitur[1]);
+            }
+            Set<String> sudahAda = new HashSet<>(debiturDao.findNomorDebiturByNomorDebiturIn(nomorDebitur));
+
+            for (int i = 0; i < chunk.size(); i++) {
+                String nomor = (String) chunk.get(i)[1];
+                if (sudahAda.contains(nomor)) {
+                    errors.add(duplikat(barisChunk.get(i), nomor));
+                } else {
+                    baru.add(chunk.get(i));
+                    barisBaru.add(barisChunk.get(i));
+                }
+            }
+        }
+
+        transactionTemplate.execute(status -> {
+            int[] hasil = baru.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(SQL_INSERT, baru);
+            for (int i = 0; i < hasil.length; i++) {
+                if (hasil[i] == 0) {
+                    errors.add(duplikat(barisBaru.get(i), (String) baru.get(i)[1]));
+                } else {
+                    debiturCacheService.invalidasi((String) baru.get(i)[1]);
+                }
+            }
+            checkpoint.simpan(barisTerakhir, errors);
+            return null;
+        });
+    }
+
+    private static UploadError duplikat(UploadError baris, String nomor) {
+        return new UploadError(baris.getBaris(), "Nomor debitur " + nomor + " sudah digunakan", baris.getData());
+    }
+
+    private static String kosongJadiNull(String data) {
+        return StringUtils.hasText(data) ? data : null;
+    }
+}
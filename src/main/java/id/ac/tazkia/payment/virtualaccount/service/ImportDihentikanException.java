@@ -0,0 +1,12 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+/**
+ * Import dihentikan di tengah jalan, misalnya karena aplikasi sedang shutdown
+ * atau job sudah diambil alih node lain. Chunk yang sedang disimpan dibatalkan,
+ * import dilanjutkan kemudian dari checkpoint terakhir.
+ */
+public class ImportDihentikanException extends RuntimeException {
+    public ImportDihentikanException(String message) {
+        super(message);
+    }
+}
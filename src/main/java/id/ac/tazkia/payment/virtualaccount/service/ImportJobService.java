@@ -0,0 +1,263 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dao.ImportJobDao;
+import id.ac.tazkia.payment.virtualaccount.dto.HasilImport;
+import id.ac.tazkia.payment.virtualaccount.dto.UploadError;
+import id.ac.tazkia.payment.virtualaccount.entity.ImportJob;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisImport;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
+import id.ac.tazkia.payment.virtualaccount.entity.KodeBiaya;
+import id.ac.tazkia.payment.virtualaccount.entity.StatusImport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Menjalankan import file sebagai job di background.
+ * File upload disimpan dulu ke disk lokal, lalu job dicatat di tabel import_job
+ * dan diproses oleh worker pool dengan jumlah thread terbatas, sehingga request upload langsung selesai.
+ *
+ * Setiap chunk yang di-commit mencatat nomor baris terakhirnya di job (checkpoint).
+ * Job yang terputus karena aplikasi restart dilanjutkan dari checkpoint tersebut
+ * oleh node yang masih memiliki file-nya, setelah heartbeat job berhenti lebih lama dari import.job.ttl.
+ */
+@Service
+public class ImportJobService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportJobService.class);
+
+    private static final String SQL_INSERT_ERROR = "insert into import_job_error " +
+            "(id, id_import_job, baris, keterangan, data) values (?, ?, ?, ?, ?)";
+
+    @Value("${import.job.lokasi}") private String lokasi;
+    @Value("${import.job.jumlah-worker}") private Integer jumlahWorker;
+    @Value("${import.job.ttl}") private Integer ttl;
+
+    @Autowired private ImportJobDao importJobDao;
+    @Autowired private ImportTagihanService importTagihanService;
+    @Autowired private ImportDebiturService importDebiturService;
+    @Autowired private ClusterLeaseService clusterLeaseService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private final Set<String> sedangDiproses = ConcurrentHashMap.newKeySet();
+    private ExecutorService worker;
+    private volatile boolean berhenti = false;
+
+    @PostConstruct
+    public void inisialisasiWorker() throws IOException {
+        Files.createDirectories(Paths.get(lokasi));
+        AtomicInteger urutan = new AtomicInteger();
+        worker = Executors.newFixedThreadPool(jumlahWorker, r -> {
+            Thread t = new Thread(r, "import-job-" + urutan.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void hentikanWorker() {
+        // job yang sedang berjalan berhenti di checkpoint berikutnya dan dilanjutkan setelah restart
+        berhenti = true;
+        worker.shutdown();
+    }
+
+    public ImportJob kirimTagihan(JenisTagihan jenisTagihan, KodeBiaya kodeBiaya,
+                                  InputStream input, String namaFile, boolean pakaiHeader) throws IOException {
+        ImportJob job = buatJob(JenisImport.TAGIHAN, input, namaFile, pakaiHeader);
+        job.setJenisTagihan(jenisTagihan);
+        job.setKodeBiaya(kodeBiaya);
+        return simpanDanJalankan(job);
+    }
+
+    public ImportJob kirimDebitur(InputStream input, String namaFile, boolean pakaiHeader) throws IOException {
+        return simpanDanJalankan(buatJob(JenisImport.DEBITUR, input, namaFile, pakaiHeader));
+    }
+
+    private ImportJob buatJob(JenisImport jenis, InputStream input,
+                              String namaFile, boolean pakaiHeader) throws IOException {
+        ImportJob job = new ImportJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setJenis(jenis);
+        job.setNamaFile(namaFile);
+        job.setPakaiHeader(pakaiHeader);
+        job.setIdNode(clusterLeaseService.getNodeId());
+
+        Path file = Paths.get(lokasi, job.getId() + ".csv");
+        int jumlahBaris = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (OutputStream output = Files.newOutputStream(file)) {
+            int n;
+            int terakhir = '\n';
+            while ((n = input.read(buffer)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] == '\n') {
+                        jumlahBaris++;
+                    }
+                }
+                terakhir = buffer[n - 1];
+                output.write(buffer, 0, n);
+            }
+            if (terakhir != '\n') {
+                jumlahBaris++;
+            }
+        }
+        job.setLokasiFile(file.toAbsolutePath().toString());
+        job.setPerkiraanJumlahBaris(Math.max(0, jumlahBaris - (pakaiHeader ? 1 : 0)));
+        return job;
+    }
+
+    private ImportJob simpanDanJalankan(ImportJob job) {
+        importJobDao.save(job);
+        LOGGER.info("Import job {} {} : {} ({} baris)",
+                job.getJenis(), job.getId(), job.getNamaFile(), job.getPerkiraanJumlahBaris());
+        periksaAntrian();
+        return job;
+    }
+
+    /**
+     * Mengambil job yang menunggu atau terputus sebanyak worker yang masih kosong,
+     * sekaligus memperbarui heartbeat job yang sedang diproses node ini.
+     */
+    @Scheduled(fixedDelayString = "${import.job.interval}")
+    public synchronized void periksaAntrian() {
+        if (berhenti) {
+            return;
+        }
+        String node = clusterLeaseService.getNodeId();
+        if (!sedangDiproses.isEmpty()) {
+            transactionTemplate.execute(status -> importJobDao.heartbeat(node, new ArrayList<>(sedangDiproses)));
+        }
+
+        int slot = jumlahWorker - sedangDiproses.size();
+        if (slot <= 0) {
+            return;
+        }
+        List<ImportJob> diklaim = transactionTemplate.execute(status -> {
+            List<ImportJob> hasil = new ArrayList<>();
+            for (ImportJob job : importJobDao.cariBelumSelesai(node, ttl)) {
+                // file hanya ada di node yang menerima upload, kecuali lokasinya disk bersama
+                if (hasil.size() < slot && !sedangDiproses.contains(job.getId())
+                        && Files.exists(Paths.get(job.getLokasiFile()))) {
+                    hasil.add(job);
+                }
+            }
+            if (!hasil.isEmpty()) {
+                List<String> ids = new ArrayList<>();
+                hasil.forEach(job -> ids.add(job.getId()));
+                importJobDao.klaim(node, ids);
+            }
+            return hasil;
+        });
+
+        for (ImportJob job : diklaim) {
+            sedangDiproses.add(job.getId());
+            worker.execute(() -> jalankan(job, node));
+        }
+    }
+
+    private void jalankan(ImportJob job, String node) {
+        if (job.getBarisTerakhir() > 0) {
+            LOGGER.info("Import job {} dilanjutkan dari baris {}", job.getId(), job.getBarisTerakhir() + 1);
+        }
+        CheckpointImport checkpoint = (barisTerakhir, errors) -> checkpoint(job.getId(), node, barisTerakhir, errors);
+
+        Path file = Paths.get(job.getLokasiFile());
+        try (InputStream input = Files.newInputStream(file)) {
+            HasilImport hasil;
+            if (job.getJenis() == JenisImport.TAGIHAN) {
+                hasil = importTagihanService.importTagihan(job.getJenisTagihan(), job.getKodeBiaya(),
+                        input, job.getPakaiHeader(), job.getBarisTerakhir(), checkpoint);
+            } else {
+                hasil = importDebiturService.importDebitur(input, job.getPakaiHeader(),
+                        job.getBarisTerakhir(), checkpoint);
+            }
+
+            // error di luar baris tertentu, misalnya tanda kutip yang tidak ditutup
+            String keterangan = null;
+            for (UploadError error : hasil.getErrors()) {
+                if (error.getBaris() == 0) {
+                    keterangan = error.getKeterangan() + " : " + error.getData();
+                }
+            }
+            selesai(job, node, keterangan == null ? StatusImport.SELESAI : StatusImport.GAGAL, keterangan);
+        } catch (Exception err) {
+            if (dihentikan(err)) {
+                LOGGER.info("Import job {} dihentikan : {}", job.getId(), err.getMessage());
+            } else {
+                LOGGER.warn("Import job " + job.getId() + " gagal", err);
+                selesai(job, node, StatusImport.GAGAL, err.getMessage());
+            }
+        } finally {
+            sedangDiproses.remove(job.getId());
+        }
+    }
+
+    /**
+     * Dipanggil di dalam transaksi yang menyimpan chunk.
+     */
+    private void checkpoint(String idJob, String node, int barisTerakhir, List<UploadError> errors) {
+        if (berhenti) {
+            throw new ImportDihentikanException("Aplikasi sedang berhenti");
+        }
+        if (importJobDao.checkpoint(idJob, node, barisTerakhir, errors.size()) == 0) {
+            throw new ImportDihentikanException("Job sudah diambil alih node lain");
+        }
+        if (errors.isEmpty()) {
+            return;
+        }
+        List<Object[]> data = new ArrayList<>();
+        for (UploadError error : errors) {
+            data.add(new Object[]{UUID.randomUUID().toString(), idJob,
+                    error.getBaris(), error.getKeterangan(), error.getData()});
+        }
+        jdbcTemplate.batchUpdate(SQL_INSERT_ERROR, data);
+    }
+
+    private void selesai(ImportJob job, String node, StatusImport status, String keterangan) {
+        if (keterangan != null && keterangan.length() > 255) {
+            keterangan = keterangan.substring(0, 255);
+        }
+        String ket = keterangan;
+        Integer hasil = transactionTemplate.execute(s -> importJobDao.selesai(job.getId(), node, status.name(), ket));
+        if (hasil == null || hasil == 0) {
+            return;
+        }
+        LOGGER.info("Import job {} {}", job.getId(), status);
+        try {
+            Files.deleteIfExists(Paths.get(job.getLokasiFile()));
+        } catch (IOException err) {
+            LOGGER.warn(err.getMessage(), err);
+        }
+    }
+
+    private static boolean dihentikan(Throwable err) {
+        for (Throwable t = err; t != null; t = t.getCause()) {
+            if (t instanceof ImportDihentikanException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,327 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dto.HasilImport;
+import id.ac.tazkia.payment.virtualaccount.dto.UploadError;
+import id.ac.tazkia.payment.virtualaccount.entity.Debitur;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
+import id.ac.tazkia.payment.virtualaccount.entity.KodeBiaya;
+import id.ac.tazkia.payment.virtualaccount.entity.Tagihan;
+import id.ac.tazkia.payment.virtualaccount.helper.CsvReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Import tagihan dari file CSV dengan kolom nomor debitur, keterangan, nilai tagihan dan tanggal jatuh tempo.
+ * File dibaca per chunk, debitur satu chunk dicari sekaligus, baris divalidasi paralel,
+ * lalu tagihan yang valid disimpan dengan JDBC batch di thread penulis.
+ * Selama satu chunk disimpan, chunk berikutnya sudah dibaca dan divalidasi.
+ *
+ * Bila penyimpanan satu chunk gagal, tagihan di chunk tersebut disimpan ulang satu per satu
+ * supaya hanya baris yang bermasalah yang dilaporkan gagal.
+ *
+ * Checkpoint dicatat di transaksi yang sama dengan penyimpanan chunk, atau penyimpanan satu baris
+ * bila chunk disimpan satu per satu, sehingga import yang terputus bisa dilanjutkan
+ * dari baris sesudah baris terakhir yang berhasil di-commit.
+ */
+@Service
+public class ImportTagihanService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportTagihanService.class);
+
+    private static final int JUMLAH_KOLOM = 4;
+
+    @Value("${import.chunk}") private Integer ukuranChunk;
+    @Value("${import.validasi.jumlah-thread}") private Integer jumlahThreadValidasi;
+    @Value("${import.penulis.jumlah-thread}") private Integer jumlahThreadPenulis;
+
+    @Autowired private TagihanService tagihanService;
+    @Autowired private DebiturCacheService debiturCacheService;
+    @Autowired private ReferensiDataService referensiDataService;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private ExecutorService validasiExecutor;
+    private ExecutorService penulisExecutor;
+
+    @PostConstruct
+    public void inisialisasiExecutor() {
+        validasiExecutor = Executors.newFixedThreadPool(jumlahThreadValidasi, namaThread("import-validasi"));
+        penulisExecutor = Executors.newFixedThreadPool(jumlahThreadPenulis, namaThread("import-penulis"));
+    }
+
+    @PreDestroy
+    public void hentikanExecutor() {
+        validasiExecutor.shutdown();
+        penulisExecutor.shutdown();
+    }
+
+    public HasilImport importTagihan(JenisTagihan jenisTagihan, KodeBiaya kodeBiaya,
+                                     InputStream input, boolean pakaiHeader) {
+        return importTagihan(jenisTagihan, kodeBiaya, input, pakaiHeader, 0, CheckpointImport.TANPA_CHECKPOINT);
+    }
+
+    /**
+     * @param mulaiBaris baris sampai nomor ini dilewati, karena sudah di-commit pada proses sebelumnya
+     */
+    public HasilImport importTagihan(JenisTagihan jenisTagihan, KodeBiaya kodeBiaya,
+                                     InputStream input, boolean pakaiHeader,
+                                     int mulaiBaris, CheckpointImport checkpoint) {
+        HasilImport hasil = new HasilImport();
+        // salinan dari cache, aman dipakai di thread penulis
+        JenisTagihan jt = referensiDataService.jenisTagihan(jenisTagihan.getId()).orElse(jenisTagihan);
+        KodeBiaya kb = kodeBiaya == null ? null : referensiDataService.kodeBiaya(kodeBiaya.getId()).orElse(kodeBiaya);
+
+        Future<List<UploadError>> penulisan = null;
+        try (CsvReader reader = new CsvReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            if (pakaiHeader) {
+                reader.bacaRecord();
+            }
+
+            List<Baris> chunk;
+            while (!(chunk = bacaChunk(reader, pakaiHeader, mulaiBaris)).isEmpty()) {
+                hasil.setJumlahBaris(hasil.getJumlahBaris() + chunk.size());
+                List<UploadError> errorChunk = new ArrayList<>();
+                List<Baris> valid = validasi(chunk, jt, kb, errorChunk);
+                int barisTerakhir = chunk.get(chunk.size() - 1).nomor;
+
+                hasil.getErrors().addAll(tunggu(penulisan));
+                penulisan = penulisExecutor.submit(() -> simpan(valid, errorChunk, barisTerakhir, checkpoint));
+            }
+        } catch (IOException err) {
+            LOGGER.warn(err.getMessage(), err);
+            hasil.getErrors().add(new UploadError(0, "Format file salah", err.getMessage()));
+        }
+        hasil.getErrors().addAll(tunggu(penulisan));
+        hasil.getErrors().sort((a, b) -> a.getBaris().compareTo(b.getBaris()));
+
+        LOGGER.info("Import tagihan {} : {} baris, {} gagal",
+                jt.getKode(), hasil.getJumlahBaris(), hasil.getErrors().size());
+        return hasil;
+    }
+
+    private List<Baris> bacaChunk(CsvReader reader, boolean pakaiHeader, int mulaiBaris) throws IOException {
+        List<Baris> chunk = new ArrayList<>();
+        String[] data;
+        while (chunk.size() < ukuranChunk && (data = reader.bacaRecord()) != null) {
+            int nomorBaris = reader.getNomorRecord() - (pakaiHeader ? 1 : 0);
+            if (nomorBaris <= mulaiBaris) {
+                continue;
+            }
+            chunk.add(new Baris(nomorBaris, data, reader.getRecordMentah()));
+        }
+        return chunk;
+    }
+
+    private List<Baris> validasi(List<Baris> chunk, JenisTagihan jenisTagihan, KodeBiaya kodeBiaya,
+                                 List<UploadError> errors) {
+        Set<String> nomorDebitur = new HashSet<>();
+        for (Baris baris : chunk) {
+            if (baris.data.length == JUMLAH_KOLOM) {
+                nomorDebitur.add(baris.data[0]);
+            }
+        }
+        Map<String, Debitur> debitur = debiturCacheService.cari(nomorDebitur);
+
+        int ukuranBagian = (chunk.size() + jumlahThreadValidasi - 1) / jumlahThreadValidasi;
+        List<Callable<Void>> daftarBagian = new ArrayList<>();
+        for (int awal = 0; awal < chunk.size(); awal += ukuranBagian) {
+            List<Baris> bagian = chunk.subList(awal, Math.min(chunk.size(), awal + ukuranBagian));
+            daftarBagian.add(() -> {
+                for (Baris baris : bagian) {
+                    validasi(baris, jenisTagihan, kodeBiaya, debitur);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : validasiExecutor.invokeAll(daftarBagian)) {
+                f.get();
+            }
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(err);
+        } catch (ExecutionException err) {
+            throw new IllegalStateException(err.getCause());
+        }
+
+        List<Baris> valid = new ArrayList<>();
+        for (Baris baris : chunk) {
+            if (baris.error != null) {
+                errors.add(baris.error);
+            } else {
+                valid.add(baris);
+            }
+        }
+        return valid;
+    }
+
+    private void validasi(Baris baris, JenisTagihan jenisTagihan, KodeBiaya kodeBiaya, Map<String, Debitur> debitur) {
+        String[] data = baris.data;
+        if (data.length != JUMLAH_KOLOM) {
+            baris.error = new UploadError(baris.nomor, "Format data salah", baris.mentah);
+            return;
+        }
+
+        Debitur d = debitur.get(data[0]);
+        if (d == null) {
+            baris.error = new UploadError(baris.nomor, "Debitur " + data[0] + " tidak terdaftar", baris.mentah);
+            return;
+        }
+
+        Tagihan t = new Tagihan();
+        t.setJenisTagihan(jenisTagihan);
+        t.setKodeBiaya(kodeBiaya);
+        t.setTanggalTagihan(LocalDate.now());
+        t.setDebitur(d);
+        t.setKeterangan(data[1]);
+
+        try {
+            t.setNilaiTagihan(new BigDecimal(data[2]));
+        } catch (NumberFormatException ex) {
+            baris.error = new UploadError(baris.nomor, "Format nilai tagihan salah", baris.mentah);
+            return;
+        }
+
+        try {
+            t.setTanggalJatuhTempo(LocalDate.parse(data[3], DateTimeFormatter.ISO_LOCAL_DATE));
+        } catch (DateTimeParseException ex) {
+            baris.error = new UploadError(baris.nomor, "Format tanggal salah", baris.mentah);
+            return;
+        }
+
+        baris.tagihan = t;
+    }
+
+    /**
+     * @param errors baris di chunk yang gagal validasi, ditambah baris yang gagal disimpan
+     */
+    private List<UploadError> simpan(List<Baris> chunk, List<UploadError> errors,
+                                     int barisTerakhir, CheckpointImport checkpoint) {
+        List<Tagihan> daftarTagihan = new ArrayList<>();
+        for (Baris baris : chunk) {
+            daftarTagihan.add(baris.tagihan);
+        }
+        try {
+            transactionTemplate.execute(status -> {
+                tagihanService.saveTagihanBaru(daftarTagihan);
+                checkpoint.simpan(barisTerakhir, errors);
+                return null;
+            });
+            return errors;
+        } catch (ImportDihentikanException err) {
+            throw err;
+        } catch (Exception err) {
+            LOGGER.warn("Gagal menyimpan {} tagihan sekaligus, disimpan satu per satu : {}",
+                    daftarTagihan.size(), err.getMessage());
+        }
+
+        // checkpoint dicatat bersama setiap tagihan, dengan error baris-baris sebelumnya yang belum tercatat,
+        // supaya tagihan yang sudah di-commit tidak disimpan lagi bila import dilanjutkan
+        List<UploadError> belumDicatat = new ArrayList<>(errors);
+        belumDicatat.sort((a, b) -> a.getBaris().compareTo(b.getBaris()));
+        for (Baris baris : chunk) {
+            List<UploadError> errorSebelumnya = ambilSampai(belumDicatat, baris.nomor);
+            try {
+                transactionTemplate.execute(status -> {
+                    // id dan nomor yang terisi saat percobaan simpan sebelumnya tidak berlaku lagi
+                    baris.tagihan.setId(null);
+                    baris.tagihan.setNomor(null);
+                    tagihanService.saveTagihan(baris.tagihan);
+                    checkpoint.simpan(baris.nomor, errorSebelumnya);
+                    return null;
+                });
+            } catch (ImportDihentikanException err) {
+                throw err;
+            } catch (Exception err) {
+                LOGGER.warn(err.getMessage(), err);
+                UploadError error = new UploadError(baris.nomor, "Gagal menyimpan tagihan", baris.mentah);
+                errors.add(error);
+                // belum tercatat, ikut di checkpoint berikutnya
+                belumDicatat.addAll(0, errorSebelumnya);
+                belumDicatat.add(errorSebelumnya.size(), error);
+            }
+        }
+        // baris sisa di akhir chunk yang gagal validasi atau gagal disimpan
+        transactionTemplate.execute(status -> {
+            checkpoint.simpan(barisTerakhir, belumDicatat);
+            return null;
+        });
+        return errors;
+    }
+
+    /**
+     * Mengeluarkan error sampai nomor baris tersebut dari daftar yang sudah terurut.
+     */
+    private static List<UploadError> ambilSampai(List<UploadError> daftarError, int nomorBaris) {
+        int jumlah = 0;
+        while (jumlah < daftarError.size() && daftarError.get(jumlah).getBaris() <= nomorBaris) {
+            jumlah++;
+        }
+        List<UploadError> hasil = new ArrayList<>(daftarError.subList(0, jumlah));
+        daftarError.subList(0, jumlah).clear();
+        return hasil;
+    }
+
+    private static List<UploadError> tunggu(Future<List<UploadError>> penulisan) {
+        if (penulisan == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return penulisan.get();
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(err);
+        } catch (ExecutionException err) {
+            throw new IllegalStateException(err.getCause());
+        }
+    }
+
+    private static ThreadFactory namaThread(String nama) {
+        AtomicInteger urutan = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, nama + "-" + urutan.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static class Baris {
+        private final int nomor;
+        private final String[] data;
+        private final String mentah;
+        private Tagihan tagihan;
+        private UploadError error;
+
+        Baris(int nomor, String[] data, String mentah) {
+            this.nomor = nomor;
+            this.data = data;
+            this.mentah = mentah;
+        }
+    }
+}
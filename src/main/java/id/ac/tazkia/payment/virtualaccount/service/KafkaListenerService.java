@@ -1,27 +1,37 @@
 package id.ac.tazkia.payment.virtualaccount.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import id.ac.tazkia.payment.virtualaccount.dao.*;
 import id.ac.tazkia.payment.virtualaccount.dto.*;
 import id.ac.tazkia.payment.virtualaccount.entity.*;
+import id.ac.tazkia.payment.virtualaccount.helper.KafkaCodec;
+import id.ac.tazkia.payment.virtualaccount.helper.StripedExecutor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.Validator;
 
-import javax.annotation.PostConstruct;
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 @Service
 @Transactional
@@ -37,320 +47,319 @@ public class KafkaListenerService {
     private String idKodeBiayaDefault;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private KafkaCodec kafkaCodec;
     @Autowired
     private Validator validator;
 
     @Autowired
-    private VirtualAccountDao virtualAccountDao;
+    private DebiturDao debiturDao;
     @Autowired
-    private BankDao bankDao;
+    private DebiturCacheService debiturCacheService;
     @Autowired
-    private KodeBiayaDao kodeBiayaDao;
+    private ReferensiDataService referensiDataService;
     @Autowired
-    private TagihanDao tagihanDao;
+    private TagihanService tagihanService;
     @Autowired
-    private PembayaranDao pembayaranDao;
+    private KafkaSenderService kafkaSenderService;
     @Autowired
-    private DebiturDao debiturDao;
+    private VaResponseService vaResponseService;
     @Autowired
-    private JenisTagihanDao jenisTagihanDao;
+    private VaPaymentService vaPaymentService;
     @Autowired
-    private PeriksaStatusTagihanDao periksaStatusTagihanDao;
+    private ReferensiPembayaranService referensiPembayaranService;
     @Autowired
-    private TagihanService tagihanService;
+    private DeadLetterService deadLetterService;
     @Autowired
-    private KafkaSenderService kafkaSenderService;
-
-    private KodeBiaya kodeBiayaDefault;
+    private StripedExecutor listenerExecutor;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
-    @PostConstruct
-    public void inisialisasiKodeBiaya() {
-        LOGGER.debug("ID kode biaya default : {}", idKodeBiayaDefault);
-        kodeBiayaDefault = kodeBiayaDao.findById(idKodeBiayaDefault).orElse(new KodeBiaya());
-        LOGGER.debug("Kode biaya default : {}", kodeBiayaDefault);
+    private KodeBiaya kodeBiayaDefault() {
+        return referensiDataService.kodeBiaya(idKodeBiayaDefault).orElse(new KodeBiaya());
     }
 
-    @KafkaListener(topics = "${kafka.topic.debitur.request}", groupId = "${spring.kafka.consumer.group-id}")
+    @KafkaListener(id = "debiturRequest", topics = "${kafka.topic.debitur.request}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "debiturKafkaListenerContainerFactory")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void handleDebiturRequest(ConsumerRecord<String, byte[]> record) {
+        if (LOGGER.isDebugEnabled() && record.value() != null) {
+            LOGGER.debug(TERIMA_MESSAGE, new String(record.value(), StandardCharsets.UTF_8));
+        }
+        Exception err = deadLetterService.proses(record,
+                () -> transactionTemplate.execute(status -> simpanDebitur(record.value())));
+        if (err != null) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put(SUKSES, false);
+            response.put("data", err.getMessage());
+            kafkaSenderService.sendDebiturResponse(response);
+        }
+    }
 
-    public void handleDebiturRequest(String message) {
+    private Debitur simpanDebitur(byte[] message) {
         Map<String, Object> response = new LinkedHashMap<>();
-        try {
-            LOGGER.debug(TERIMA_MESSAGE, message);
-            Debitur d = objectMapper.readValue(message, Debitur.class);
-            BeanPropertyBindingResult binder = new BeanPropertyBindingResult(d, "debitur");
-            validator.validate(d, binder);
-
-            if (binder.hasErrors()) {
-                LOGGER.warn("Gagal mendaftarkan debitur {}", binder.getAllErrors());
-                response.put(SUKSES, false);
-                response.put("data", binder.getAllErrors());
-                kafkaSenderService.sendDebiturResponse(response);
-                return;
-            }
+        Debitur d = bacaPesan(message, Debitur.class);
+        BeanPropertyBindingResult binder = new BeanPropertyBindingResult(d, "debitur");
+        validator.validate(d, binder);
 
-            if (debiturDao.findByNomorDebitur(d.getNomorDebitur()) != null) {
-                response.put(SUKSES, true);
-                response.put("data", "Nomor debitur " + d.getNomorDebitur() + " sudah ada");
-                response.put("nomorDebitur", d.getNomorDebitur());
-                kafkaSenderService.sendDebiturResponse(response);
-                return;
-            }
+        if (binder.hasErrors()) {
+            LOGGER.warn("Gagal mendaftarkan debitur {}", binder.getAllErrors());
+            response.put(SUKSES, false);
+            response.put("data", binder.getAllErrors());
+            kafkaSenderService.sendDebiturResponse(response);
+            return null;
+        }
 
-            debiturDao.save(d);
+        if (debiturCacheService.ada(d.getNomorDebitur())) {
             response.put(SUKSES, true);
+            response.put("data", "Nomor debitur " + d.getNomorDebitur() + " sudah ada");
             response.put("nomorDebitur", d.getNomorDebitur());
             kafkaSenderService.sendDebiturResponse(response);
-        } catch (Exception err) {
-            LOGGER.warn(err.getMessage(), err);
-            response.put(SUKSES, false);
-            response.put("data", err.getMessage());
-            kafkaSenderService.sendDebiturResponse(response);
+            return null;
         }
+
+        debiturDao.save(d);
+        debiturCacheService.invalidasi(d.getNomorDebitur());
+        response.put(SUKSES, true);
+        response.put("nomorDebitur", d.getNomorDebitur());
+        kafkaSenderService.sendDebiturResponse(response);
+        return d;
     }
 
-    @KafkaListener(topics = "${kafka.topic.tagihan.request}", groupId = "${spring.kafka.consumer.group-id}")
-    public void handleTagihanRequest(String message) {
-        TagihanResponse response = new TagihanResponse();
+    /**
+     * Tagihan request diterima per poll, debitur dicari sekali untuk semua request,
+     * jenis tagihan dan kode biaya diambil dari cache data referensi,
+     * lalu tagihan yang valid disimpan dalam satu transaksi.
+     * Bila pencarian debitur atau transaksi itu gagal, request diproses ulang satu per satu supaya hanya request
+     * yang bermasalah yang mendapat response gagal dan dikirim ke dead letter topic.
+     */
+    @KafkaListener(id = "tagihanRequest", topics = "${kafka.topic.tagihan.request}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void handleTagihanRequest(List<ConsumerRecord<String, byte[]>> records) {
+        LOGGER.debug("Terima {} tagihan request", records.size());
+
+        List<ConsumerRecord<String, byte[]>> daftarRecord = new ArrayList<>();
+        List<TagihanRequest> daftarRequest = new ArrayList<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                daftarRequest.add(kafkaCodec.baca(record.value(), TagihanRequest.class));
+                daftarRecord.add(record);
+            } catch (Exception err) {
+                LOGGER.warn(err.getMessage(), err);
+                deadLetterService.kirim(record, err, 1);
+                TagihanResponse response = new TagihanResponse();
+                response.setSukses(false);
+                response.setError(err.getMessage());
+                kafkaSenderService.sendTagihanResponse(response);
+            }
+        }
+
+        // urutannya sama dengan daftarRequest, berisi null untuk request yang ditolak
+        List<Tagihan> daftarTagihan;
         try {
-            LOGGER.debug(TERIMA_MESSAGE, message);
-            TagihanRequest request = objectMapper.readValue(message, TagihanRequest.class);
+            daftarTagihan = createTagihan(daftarRequest);
+        } catch (Exception err) {
+            LOGGER.warn("Gagal memproses {} tagihan request sekaligus, diproses satu per satu : {}",
+                    daftarRequest.size(), err.getMessage());
+            for (int i = 0; i < daftarRequest.size(); i++) {
+                prosesTagihan(daftarRecord.get(i), daftarRequest.get(i));
+            }
+            return;
+        }
+        List<Tagihan> tagihanValid = new ArrayList<>();
+        for (Tagihan t : daftarTagihan) {
+            if (t != null) {
+                tagihanValid.add(t);
+            }
+        }
+        if (tagihanValid.isEmpty()) {
+            return;
+        }
 
-            response.setSukses(true);
-            BeanUtils.copyProperties(request, response);
+        try {
+            tagihanService.saveTagihanBaru(tagihanValid);
+        } catch (Exception err) {
+            LOGGER.warn("Gagal menyimpan {} tagihan sekaligus, disimpan satu per satu : {}",
+                    tagihanValid.size(), err.getMessage());
+            for (int i = 0; i < daftarTagihan.size(); i++) {
+                if (daftarTagihan.get(i) != null) {
+                    simpanTagihan(daftarRecord.get(i), daftarTagihan.get(i));
+                }
+            }
+        }
+    }
 
+    private List<Tagihan> createTagihan(List<TagihanRequest> daftarRequest) {
+        if (daftarRequest.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<String> nomorDebitur = new HashSet<>();
+        for (TagihanRequest request : daftarRequest) {
+            nomorDebitur.add(request.getDebitur());
+        }
+
+        Map<String, Debitur> debitur = debiturCacheService.cari(nomorDebitur);
+
+        List<Tagihan> daftarTagihan = new ArrayList<>();
+        for (TagihanRequest request : daftarRequest) {
             Tagihan t = new Tagihan();
 
-            Debitur d = debiturDao.findByNomorDebitur(request.getDebitur());
+            Debitur d = debitur.get(request.getDebitur());
             if (d == null) {
                 LOGGER.warn("Debitur dengan nomor {} tidak terdaftar", request.getDebitur());
-                response.setSukses(false);
-                response.setError("Debitur dengan nomor " + request.getDebitur() + " tidak terdaftar");
-                kafkaSenderService.sendTagihanResponse(response);
-                return;
+                kirimTagihanGagal(request, "Debitur dengan nomor " + request.getDebitur() + " tidak terdaftar");
+                daftarTagihan.add(null);
+                continue;
             }
             t.setDebitur(d);
 
-            Optional<JenisTagihan> jt = jenisTagihanDao.findById(request.getJenisTagihan());
-            if (!jt.isPresent()) {
+            JenisTagihan jt = referensiDataService.jenisTagihan(request.getJenisTagihan()).orElse(null);
+            if (jt == null) {
                 LOGGER.warn("Jenis Tagihan dengan id {} tidak terdaftar", request.getJenisTagihan());
-                response.setSukses(false);
-                response.setError("Jenis Tagihan dengan id " + request.getJenisTagihan() + " tidak terdaftar");
-                kafkaSenderService.sendTagihanResponse(response);
-                return;
+                kirimTagihanGagal(request, "Jenis Tagihan dengan id " + request.getJenisTagihan() + " tidak terdaftar");
+                daftarTagihan.add(null);
+                continue;
             }
-            t.setJenisTagihan(jt.get());
+            t.setJenisTagihan(jt);
 
             LOGGER.debug("Kode biaya request : {}", request.getKodeBiaya());
+            KodeBiaya kb = StringUtils.hasText(request.getKodeBiaya())
+                    ? referensiDataService.kodeBiaya(request.getKodeBiaya()).orElse(null) : null;
             if (!StringUtils.hasText(request.getKodeBiaya())) {
-                t.setKodeBiaya(kodeBiayaDefault);
+                t.setKodeBiaya(kodeBiayaDefault());
+            } else if (kb == null) {
+                LOGGER.warn("Kode biaya dengan id {}  tidak terdaftar", request.getKodeBiaya());
+                t.setKodeBiaya(kodeBiayaDefault());
             } else {
-                Optional<KodeBiaya> kodeBiaya = kodeBiayaDao.findById(request.getKodeBiaya());
-                if (!kodeBiaya.isPresent()) {
-                    LOGGER.warn("Kode biaya dengan id {}  tidak terdaftar", request.getKodeBiaya());
-                    t.setKodeBiaya(Optional.of(kodeBiayaDefault).get());
-                } else {
-                    t.setKodeBiaya(kodeBiaya.get());
-                }
-
+                t.setKodeBiaya(kb);
             }
             LOGGER.debug("Kode Biaya Tagihan: {}", t.getKodeBiaya());
 
             t.setNilaiTagihan(request.getNilaiTagihan());
             t.setKeterangan(request.getKeterangan());
             t.setTanggalJatuhTempo(request.getTanggalJatuhTempo());
+            daftarTagihan.add(t);
+        }
+        return daftarTagihan;
+    }
+
+    private void prosesTagihan(ConsumerRecord<String, byte[]> record, TagihanRequest request) {
+        Exception err = deadLetterService.proses(record, () -> {
+            Tagihan t = createTagihan(Collections.singletonList(request)).get(0);
+            if (t != null) {
+                tagihanService.saveTagihan(t);
+            }
+        });
+        if (err != null) {
+            kirimTagihanGagal(request, err.getMessage());
+        }
+    }
 
+    private void simpanTagihan(ConsumerRecord<String, byte[]> record, Tagihan t) {
+        Exception err = deadLetterService.proses(record, () -> {
+            // id dan nomor yang terisi saat percobaan simpan sebelumnya tidak berlaku lagi
+            t.setId(null);
+            t.setNomor(null);
             tagihanService.saveTagihan(t);
-        } catch (Exception err) {
-            LOGGER.warn(err.getMessage(), err);
+        });
+        if (err != null) {
+            TagihanResponse response = new TagihanResponse();
+            response.setDebitur(t.getDebitur().getNomorDebitur());
+            response.setJenisTagihan(t.getJenisTagihan().getId());
+            response.setKodeBiaya(t.getKodeBiaya().getId());
+            response.setNilaiTagihan(t.getNilaiTagihan());
+            response.setKeterangan(t.getKeterangan());
+            response.setTanggalJatuhTempo(t.getTanggalJatuhTempo());
             response.setSukses(false);
             response.setError(err.getMessage());
             kafkaSenderService.sendTagihanResponse(response);
         }
     }
 
-    @KafkaListener(topics = "${kafka.topic.va.response}", groupId = "${spring.kafka.consumer.group-id}")
-    public void handleVaResponse(String message) {
-        try {
-            LOGGER.debug(TERIMA_MESSAGE, message);
-            VaResponse vaResponse = objectMapper.readValue(message, VaResponse.class);
-
-            List<VirtualAccount> daftarVa = virtualAccountDao.findByVaStatusAndTagihanNomor(VaStatus.SEDANG_PROSES, vaResponse.getInvoiceNumber());
-            if (daftarVa == null || daftarVa.isEmpty()) {
-                LOGGER.warn("VA untuk tagihan dengan nomor {} tidak ditemukan", vaResponse.getInvoiceNumber());
-                return;
-            }
-
-            VirtualAccount va = getVirtualAccount(vaResponse, daftarVa);
-
-            if (va == null) {
-                LOGGER.warn("VA untuk tagihan dengan nomor {} dan bank {} tidak ditemukan",
-                        vaResponse.getInvoiceNumber(),
-                        vaResponse.getBankId()
-                );
-                return;
-            }
-
-            if (VaStatus.INQUIRY.equals(vaResponse.getRequestType())) {
-                List<PeriksaStatusTagihan> daftarPeriksaStatus = periksaStatusTagihanDao.findByVirtualAccountAndStatusPemeriksaanTagihan(va, StatusPemeriksaanTagihan.BARU);
-                if (daftarPeriksaStatus == null || daftarPeriksaStatus.isEmpty()) {
-                    LOGGER.warn("Pemeriksaan status untuk VA {} di bank {} tidak ada", va.getNomor(), va.getBank().getNama());
-                    return;
-                }
-
-                for (PeriksaStatusTagihan p : daftarPeriksaStatus) {
-                    p.setStatusPemeriksaanTagihan(
-                            VaRequestStatus.SUCCESS.equals(vaResponse.getRequestStatus())
-                            ? StatusPemeriksaanTagihan.SUKSES : StatusPemeriksaanTagihan.ERROR);
-                }
-            }
-
-            if (saveVA(vaResponse, va)) {
-                return;
-            }
-
-        } catch (Exception err) {
-            LOGGER.warn(err.getMessage(), err);
-        }
+    private void kirimTagihanGagal(TagihanRequest request, String error) {
+        TagihanResponse response = new TagihanResponse();
+        BeanUtils.copyProperties(request, response);
+        response.setSukses(false);
+        response.setError(error);
+        kafkaSenderService.sendTagihanResponse(response);
     }
 
-    private VirtualAccount getVirtualAccount(VaResponse vaResponse, List<VirtualAccount> daftarVa) {
-        VirtualAccount va = null;
-        for (VirtualAccount v : daftarVa) {
-            if (vaResponse.getBankId().equals(v.getBank().getId())) {
-                va = v;
-                break;
+    /**
+     * Response dari beberapa partisi diproses paralel per nomor tagihan,
+     * method ini baru selesai (dan offset baru di-commit) setelah semua record dalam batch selesai.
+     */
+    @KafkaListener(id = "vaResponse", topics = "${kafka.topic.va.response}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "vaResponseKafkaListenerContainerFactory")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void handleVaResponse(List<ConsumerRecord<String, byte[]>> records) {
+        List<Future<?>> daftarProses = new ArrayList<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                VaResponse vaResponse = kafkaCodec.baca(record.value(), VaResponse.class);
+                LOGGER.debug(TERIMA_MESSAGE, vaResponse);
+                daftarProses.add(listenerExecutor.submit(vaResponse.getInvoiceNumber(),
+                        () -> deadLetterService.proses(record, () -> vaResponseService.prosesResponse(vaResponse))));
+            } catch (Exception err) {
+                LOGGER.warn(err.getMessage(), err);
+                deadLetterService.kirim(record, err, 1);
             }
         }
-        return va;
+        tungguSelesai(daftarProses);
     }
 
-    private Boolean saveVA(VaResponse vaResponse, VirtualAccount va) {
-        if (VaRequestStatus.ERROR.equals(vaResponse.getRequestStatus())) {
-            va.setVaStatus(VaStatus.ERROR);
-            virtualAccountDao.save(va);
-            return true;
-        }
-
-        if (VaStatus.DELETE.equals(vaResponse.getRequestType())) {
-            va.setVaStatus(VaStatus.NONAKTIF);
-            virtualAccountDao.save(va);
-            return true;
+    @KafkaListener(id = "vaPayment", topics = "${kafka.topic.va.payment}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "vaPaymentKafkaListenerContainerFactory")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void handleVaPayment(List<ConsumerRecord<String, byte[]>> records) {
+        List<Future<?>> daftarProses = new ArrayList<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                VaPayment payment = kafkaCodec.baca(record.value(), VaPayment.class);
+                LOGGER.debug(TERIMA_MESSAGE, payment);
+                daftarProses.add(listenerExecutor.submit(payment.getInvoiceNumber(),
+                        () -> deadLetterService.proses(record, () -> prosesPembayaran(payment))));
+            } catch (Exception err) {
+                LOGGER.warn(err.getMessage(), err);
+                deadLetterService.kirim(record, err, 1);
+            }
         }
-
-        va.setNomor(vaResponse.getAccountNumber());
-        va.setVaStatus(VaStatus.AKTIF);
-        virtualAccountDao.save(va);
-        return false;
+        tungguSelesai(daftarProses);
     }
 
-    @KafkaListener(topics = "${kafka.topic.va.payment}", groupId = "${spring.kafka.consumer.group-id}")
-    public void handleVaPayment(String message) {
+    private void prosesPembayaran(VaPayment payment) {
         try {
-            LOGGER.debug(TERIMA_MESSAGE, message);
-            VaPayment payment = objectMapper.readValue(message, VaPayment.class);
-            Optional<Bank> bank = bankDao.findById(payment.getBankId());
-
-            Tagihan tagihan = tagihanDao.findByNomor(payment.getInvoiceNumber());
-
-            List<VirtualAccount> daftarVa = virtualAccountDao.findByVaStatusAndTagihanNomor(VaStatus.AKTIF, tagihan.getNomor());
-
-            BigDecimal akumulasiPembayaran = tagihan.getJumlahPembayaran().add(payment.getAmount());
-            
-            if (paymentInvalid(bank, tagihan, daftarVa, payment)) {
+            vaPaymentService.prosesPembayaran(payment);
+        } catch (DataIntegrityViolationException err) {
+            // pembayaran yang sama baru saja dicatat node lain, tidak perlu dicoba ulang
+            if (String.valueOf(err.getMostSpecificCause().getMessage()).contains("pembayaran_bank_referensi_idx")) {
+                LOGGER.warn("Pembayaran bank {} dengan referensi {} sudah pernah diterima",
+                        payment.getBankId(), payment.getReference());
+                referensiPembayaranService.hitungKeputusan(ReferensiPembayaranService.DUPLIKAT_CONSTRAINT);
                 return;
             }
-            
-            Bank bankModel = bank.orElse(new Bank());
-
-            if (pembayaranKurangDariTagihan(akumulasiPembayaran, tagihan)) {
-                tagihan.setStatusPembayaran(StatusPembayaran.DIBAYAR_SEBAGIAN);
-            } else {
-                tagihan.setStatusPembayaran(StatusPembayaran.LUNAS);
-                tagihan.setStatusTagihan(StatusTagihan.NONAKTIF);
-            }
-            tagihan.setJumlahPembayaran(akumulasiPembayaran);
-
-            // update VA
-            VirtualAccount vaPembayaran = simpanVA(bankModel, tagihan, daftarVa);
-
-            if (vaPembayaran == null) {
-                LOGGER.warn("Virtual account untuk nomor tagihan {} dan bank {} tidak terdaftar",
-                        tagihan.getNomor(), bankModel.getNama());
-                return;
-            }
-
-            Pembayaran p = new Pembayaran();
-            p.setBank(bankModel);
-            p.setTagihan(tagihan);
-            p.setJenisPembayaran(JenisPembayaran.VIRTUAL_ACCOUNT);
-            p.setVirtualAccount(vaPembayaran);
-            p.setJumlah(payment.getAmount());
-            p.setReferensi(payment.getReference());
-            p.setKeterangan("Pembayaran melalui VA Bank " + bankModel.getNama() + " Nomor " + payment.getAccountNumber());
-            p.setWaktuTransaksi(payment.getPaymentTime());
-            pembayaranDao.save(p);
-
-            tagihanDao.save(tagihan);
-
-            LOGGER.info("Pembayaran melalui VA Bank {} Nomor {} telah diterima", bankModel.getNama(), payment.getAccountNumber());
-
-            kafkaSenderService.sendNotifikasiPembayaran(p);
-        } catch (Exception err) {
-            LOGGER.warn(err.getMessage(), err);
+            throw err;
         }
     }
 
-    private static boolean pembayaranKurangDariTagihan(BigDecimal akumulasiPembayaran, Tagihan tagihan) {
-        return akumulasiPembayaran.compareTo(tagihan.getNilaiTagihan()) < 0;
-    }
-
-    private static boolean pembayaranMelebihiTagihan(BigDecimal akumulasiPembayaran, Tagihan tagihan) {
-        return akumulasiPembayaran.compareTo(tagihan.getNilaiTagihan()) > 0;
-    }
-
-    private VirtualAccount simpanVA(Bank bank, Tagihan tagihan, List<VirtualAccount> daftarVa) {
-
-        VirtualAccount vaPembayaran = null;
-        for (VirtualAccount va : daftarVa) {
-            if (bank.getId().equalsIgnoreCase(va.getBank().getId())) {
-                vaPembayaran = va;
-                va.setVaStatus(StatusPembayaran.LUNAS.equals(tagihan.getStatusPembayaran())
-                        ? VaStatus.NONAKTIF : VaStatus.UPDATE);
-            } else {
-                va.setVaStatus(StatusPembayaran.LUNAS.equals(tagihan.getStatusPembayaran())
-                        ? VaStatus.DELETE : VaStatus.UPDATE);
-            }
-            virtualAccountDao.save(va);
+    private <T> T bacaPesan(byte[] message, Class<T> kelas) {
+        try {
+            return kafkaCodec.baca(message, kelas);
+        } catch (IOException err) {
+            throw new PesanDitolakException("Message tidak bisa dibaca : " + err.getMessage());
         }
-        return vaPembayaran;
     }
 
-    private boolean paymentInvalid(Optional<Bank> bank, Tagihan tagihan, List<VirtualAccount> daftarVa, VaPayment payment) {
-        if (!bank.isPresent()) {
-            LOGGER.warn("Bank dengan ID {} tidak terdaftar", payment.getBankId());
-            return true;
-        }
-        if (tagihan == null) {
-            LOGGER.warn("Tagihan dengan nomor {} tidak terdaftar", payment.getInvoiceNumber());
-            return true;
-        }
-        if (StatusPembayaran.LUNAS.equals(tagihan.getStatusPembayaran())) {
-            LOGGER.warn("Tagihan dengan nomor {} sudah lunas", tagihan.getNomor());
-            return true;
-        }
-        if (daftarVa == null || daftarVa.isEmpty()) {
-            LOGGER.warn("Nomor tagihan {} tidak memiliki VA", tagihan.getNomor());
-            return true;
-        }
-        
-        BigDecimal akumulasiPembayaran = tagihan.getJumlahPembayaran().add(payment.getAmount());
-        if (pembayaranMelebihiTagihan(akumulasiPembayaran, tagihan)) {
-                LOGGER.warn("Nilai pembayaran [{}] lebih besar daripada nilai tagihan [{}] nomor [{}]",
-                        akumulasiPembayaran, tagihan.getNilaiTagihan(), tagihan.getNomor());
-                return true;
+    private void tungguSelesai(List<Future<?>> daftarProses) {
+        for (Future<?> proses : daftarProses) {
+            try {
+                proses.get();
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Proses batch diinterupsi", err);
+            } catch (ExecutionException err) {
+                LOGGER.warn(err.getMessage(), err);
+            }
         }
-        
-        return false;
     }
 }
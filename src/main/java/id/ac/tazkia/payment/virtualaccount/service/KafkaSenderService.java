@@ -1,14 +1,16 @@
 package id.ac.tazkia.payment.virtualaccount.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import id.ac.tazkia.payment.virtualaccount.dao.PendingVaRequestDao;
 import id.ac.tazkia.payment.virtualaccount.dao.TagihanDao;
 import id.ac.tazkia.payment.virtualaccount.dao.VirtualAccountDao;
 import id.ac.tazkia.payment.virtualaccount.dto.*;
 import id.ac.tazkia.payment.virtualaccount.entity.*;
+import id.ac.tazkia.payment.virtualaccount.helper.KafkaCodec;
 import id.ac.tazkia.payment.virtualaccount.helper.VirtualAccountNumberGenerator;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -17,8 +19,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -39,6 +39,8 @@ public class KafkaSenderService {
 
     @Value("${notifikasi.delay.menit}") private Integer delayNotifikasi;
 
+    @Value("${va.dispatch.batch-size}") private Integer vaBatchSize;
+
     @Value("${notifikasi.konfigurasi.tagihan}") private String konfigurasiTagihan;
     @Value("${notifikasi.konfigurasi.pembayaran}") private String konfigurasiPembayaran;
     @Value("${notifikasi.contactinfo}") private String contactinfo;
@@ -53,36 +55,45 @@ public class KafkaSenderService {
     @Value("#{'${jenis.biaya.marketing}'.split(',')}")
     private List<String> jenisBiayaMarketing;
 
-    @Autowired private ObjectMapper objectMapper;
-    @Autowired private KafkaTemplate<String, String> kafkaTemplate;
+    @Autowired private KafkaCodec kafkaCodec;
+    @Autowired private OutboxService outboxService;
+    @Autowired private DispatchLaneService dispatchLaneService;
+    @Autowired private ClusterLeaseService clusterLeaseService;
+    @Autowired private ReferensiDataService referensiDataService;
 
     @Autowired private VirtualAccountDao virtualAccountDao;
     @Autowired private TagihanDao tagihanDao;
+    @Autowired private PendingVaRequestDao pendingVaRequestDao;
 
-    @Scheduled(fixedDelay = 1000)
+    @Scheduled(fixedDelayString = "${va.dispatch.interval}")
     public void prosesVaBaru() {
         processVa(VaStatus.CREATE);
     }
 
-    @Scheduled(fixedDelay = 1000)
+    @Scheduled(fixedDelayString = "${va.dispatch.interval}")
     public void prosesVaUpdate() {
         processVa(VaStatus.UPDATE);
     }
 
-    @Scheduled(fixedDelay = 1000)
+    @Scheduled(fixedDelayString = "${va.dispatch.interval}")
     public void prosesVaDelete() {
         processVa(VaStatus.DELETE);
     }
 
-    @Scheduled(fixedDelay = 1000)
+    @Scheduled(fixedDelayString = "${va.dispatch.interval}")
     public void prosesVaInquiry() {
         processVa(VaStatus.INQUIRY);
     }
 
     @Scheduled(fixedDelay = 60 * 1000)
     public void prosesNotifikasiTagihan() {
-        tagihanDao.findByStatusNotifikasi(StatusNotifikasi.BELUM_TERKIRIM,
-                PageRequest.of(0, NOTIFICATION_BATCH_SIZE)).getContent().stream()
+        List<Integer> daftarShard = clusterLeaseService.getDaftarShard();
+        if (daftarShard.isEmpty()) {
+            return;
+        }
+
+        tagihanDao.findByStatusNotifikasiAndShard(StatusNotifikasi.BELUM_TERKIRIM.name(),
+                clusterLeaseService.getJumlahShard(), daftarShard, NOTIFICATION_BATCH_SIZE).stream()
                 .filter((tagihan) -> punyaVaAktif(tagihan))
                 .forEachOrdered((tagihan) -> sendNotifikasiTagihan(tagihan));
     }
@@ -138,8 +149,7 @@ public class KafkaSenderService {
                         rekening.toString(), rekeningFull.toString());
             }
 
-            tagihan.setStatusNotifikasi(StatusNotifikasi.SUDAH_TERKIRIM);
-            tagihanDao.save(tagihan);
+            tagihanDao.updateStatusNotifikasi(tagihan.getId(), StatusNotifikasi.SUDAH_TERKIRIM);
         } catch (JsonProcessingException err) {
             LOGGER.warn(err.getMessage(), err);
         }
@@ -169,7 +179,7 @@ public class KafkaSenderService {
                 .build();
 
         notifikasi.put("data", requestData);
-        kafkaTemplate.send(kafkaTopicNotificationRequest, objectMapper.writeValueAsString(notifikasi));
+        outboxService.simpan(kafkaTopicNotificationRequest, tagihan.getNomor(), kafkaCodec.tulis(notifikasi));
     }
 
     public void sendNotifikasiPembayaran(Pembayaran pembayaran) {
@@ -220,14 +230,32 @@ public class KafkaSenderService {
         }
         notifikasi.put("konfigurasi", konfigurasiPembayaran);
         notifikasi.put("data", request);
-        kafkaTemplate.send(kafkaTopicNotificationRequest, objectMapper.writeValueAsString(notifikasi));
+        outboxService.simpan(kafkaTopicNotificationRequest, pembayaran.getTagihan().getNomor(), kafkaCodec.tulis(notifikasi));
     }
 
     public void sendTagihanResponse(TagihanResponse tagihanResponse) {
         try {
-            String message = objectMapper.writeValueAsString(tagihanResponse);
+            String message = kafkaCodec.tulis(tagihanResponse);
             LOGGER.debug("Kirim tagihan response : {}", message);
-            kafkaTemplate.send(kafkaTopicTagihanResponse, message);
+            if (Boolean.TRUE.equals(tagihanResponse.getSukses())) {
+                outboxService.simpan(kafkaTopicTagihanResponse, tagihanResponse.getNomorTagihan(), message);
+            } else {
+                // response gagal tetap harus terkirim walaupun transaksinya di-rollback
+                outboxService.simpanTerpisah(kafkaTopicTagihanResponse, tagihanResponse.getDebitur(), message);
+            }
+        } catch (Exception err) {
+            LOGGER.warn(err.getMessage(), err);
+        }
+    }
+
+    public void sendTagihanResponse(List<TagihanResponse> daftarResponse) {
+        try {
+            Map<String, String> pesanPerNomor = new LinkedHashMap<>();
+            for (TagihanResponse tagihanResponse : daftarResponse) {
+                pesanPerNomor.put(tagihanResponse.getNomorTagihan(), kafkaCodec.tulis(tagihanResponse));
+            }
+            LOGGER.debug("Kirim {} tagihan response", pesanPerNomor.size());
+            outboxService.simpanSemua(kafkaTopicTagihanResponse, pesanPerNomor);
         } catch (Exception err) {
             LOGGER.warn(err.getMessage(), err);
         }
@@ -235,7 +263,13 @@ public class KafkaSenderService {
 
     public void sendDebiturResponse(Map<String, Object> data) {
         try {
-            kafkaTemplate.send(kafkaTopicDebiturResponse, objectMapper.writeValueAsString(data));
+            String message = kafkaCodec.tulis(data);
+            if (Boolean.TRUE.equals(data.get("sukses"))) {
+                outboxService.simpan(kafkaTopicDebiturResponse, (String) data.get("nomorDebitur"), message);
+            } else {
+                // response gagal tetap harus terkirim walaupun transaksinya di-rollback
+                outboxService.simpanTerpisah(kafkaTopicDebiturResponse, (String) data.get("nomorDebitur"), message);
+            }
         } catch (Exception err) {
             LOGGER.warn(err.getMessage(), err);
         }
@@ -261,33 +295,87 @@ public class KafkaSenderService {
                 .build();
 
         try {
-            kafkaTemplate.send(kafkaTopicPembayaranTagihan, objectMapper.writeValueAsString(pt));
+            outboxService.simpan(kafkaTopicPembayaranTagihan, pt.getNomorTagihan(), kafkaCodec.tulis(pt));
         } catch (Exception err) {
             LOGGER.warn(err.getMessage(), err);
         }
     }
 
     private void processVa(VaStatus status) {
-        Iterator<VirtualAccount> daftarVa = virtualAccountDao.findByVaStatus(status).iterator();
-        if (daftarVa.hasNext()) {
-            VirtualAccount va = daftarVa.next();
+        List<Integer> daftarShard = clusterLeaseService.getDaftarShard();
+        if (daftarShard.isEmpty()) {
+            return;
+        }
+
+        for (Bank bank : referensiDataService.daftarBank()) {
+            int kapasitas = dispatchLaneService.pesanKapasitas(bank.getId(), vaBatchSize);
+            if (kapasitas > 0) {
+                processVa(status, bank, daftarShard, kapasitas);
+            }
+        }
+    }
+
+    private void processVa(VaStatus status, Bank bank, List<Integer> daftarShard, Integer jumlah) {
+        List<String> daftarId = virtualAccountDao.klaimVaUntukDiproses(status.name(), bank.getId(),
+                clusterLeaseService.getJumlahShard(), daftarShard, jumlah);
+        if (daftarId.isEmpty()) {
+            return;
+        }
+
+        // request sebelumnya untuk VA yang sama tidak berlaku lagi, response-nya akan diabaikan
+        pendingVaRequestDao.hapusByVirtualAccount(daftarId);
+
+        List<String> terkirim = new ArrayList<>();
+        List<String> daftarRequest = new ArrayList<>();
+        List<String> tanpaNomor = new ArrayList<>();
+        List<String> gagal = new ArrayList<>();
+        for (VirtualAccount va : virtualAccountDao.findByIdIn(daftarId)) {
             try {
                 // VA update dan delete harus ada nomor VAnya
                 if (!VaStatus.CREATE.equals(status) && !StringUtils.hasText(va.getNomor())) {
                     LOGGER.warn("VA Request {} untuk no tagihan {} tidak ada nomer VA-nya ", status, va.getTagihan().getNomor());
-                    return;
+                    tanpaNomor.add(va.getId());
+                    continue;
                 }
 
                 VaRequest vaRequest = createRequest(va, status);
-                String json = objectMapper.writeValueAsString(vaRequest);
+
+                PendingVaRequest pending = new PendingVaRequest();
+                pending.setVirtualAccount(va);
+                pending.setRequestType(status);
+                pendingVaRequestDao.save(pending);
+                vaRequest.setRequestId(pending.getId());
+                String json = kafkaCodec.tulis(vaRequest);
                 LOGGER.debug("VA Request : {}", json);
-                kafkaTemplate.send(kafkaTopicVaRequest, json);
-                va.setVaStatus(VaStatus.SEDANG_PROSES);
-                virtualAccountDao.save(va);
+                // request ke bank lain untuk tagihan yang sama tidak perlu menunggu
+                pending.setIdOutbox(outboxService.simpan(kafkaTopicVaRequest, vaRequest.getInvoiceNumber(),
+                        bank.getId() + "|" + vaRequest.getInvoiceNumber(), json));
+                daftarRequest.add(pending.getId());
+                terkirim.add(va.getId());
             } catch (Exception err) {
                 LOGGER.warn(err.getMessage(), err);
+                gagal.add(va.getId());
             }
         }
+
+        if (!terkirim.isEmpty()) {
+            virtualAccountDao.tandaiSedangProses(status, LocalDateTime.now(), terkirim);
+        }
+        dispatchLaneService.kirim(bank.getId(), daftarRequest);
+        // VA yang tidak bisa dibuatkan request tidak boleh menghalangi antrian berikutnya
+        if (!tanpaNomor.isEmpty()) {
+            if (VaStatus.DELETE.equals(status)) {
+                // VA belum pernah dibuat di bank, tidak ada yang perlu dihapus
+                virtualAccountDao.updateVaStatus(VaStatus.NONAKTIF, tanpaNomor);
+            } else {
+                virtualAccountDao.tandaiError(status, "VA Request " + status + " tanpa nomor VA", tanpaNomor);
+            }
+        }
+        if (!gagal.isEmpty()) {
+            virtualAccountDao.tandaiError(status, "VA Request " + status + " tidak dapat dibuat", gagal);
+        }
+        LOGGER.debug("VA Request {} bank {} : {} terkirim, {} gagal", status, bank.getId(),
+                terkirim.size(), tanpaNomor.size() + gagal.size());
     }
 
     private VaRequest createRequest(VirtualAccount va, VaStatus requestType) {
@@ -0,0 +1,177 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dao.OutboxDao;
+import id.ac.tazkia.payment.virtualaccount.dao.PendingVaRequestDao;
+import id.ac.tazkia.payment.virtualaccount.entity.Outbox;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Semua message Kafka disimpan dulu di tabel outbox dalam transaksi yang sama
+ * dengan perubahan datanya, baru kemudian dikirim oleh relay.
+ * Dengan demikian message tidak terkirim sebelum commit, dan tidak terkirim sama sekali bila rollback.
+ *
+ * Relay mengirim secara asynchronous dengan jumlah message yang belum dikonfirmasi broker dibatasi.
+ * Baris outbox baru dihapus setelah broker mengkonfirmasi, yang gagal dikembalikan ke antrian.
+ * Untuk setiap topic dan kunci urutan paling banyak satu message yang sedang dikirim, message berikutnya
+ * baru diambil setelah message sebelumnya terhapus, sehingga urutannya tetap terjaga walaupun ada yang gagal
+ * dan dikirim ulang. Kunci urutan biasanya sama dengan kunci message, sehingga message topic lain
+ * dengan kunci yang sama (misalnya nomor tagihan) tidak ikut menunggu.
+ */
+@Service @Transactional
+public class OutboxService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboxService.class);
+
+    @Value("${outbox.relay.batch-size}") private Integer batchSize;
+    @Value("${outbox.relay.max-in-flight}") private Integer maxInFlight;
+    @Value("${outbox.relay.timeout}") private Integer timeoutDetik;
+
+    @Autowired private OutboxDao outboxDao;
+    @Autowired private PendingVaRequestDao pendingVaRequestDao;
+    @Autowired private KafkaTemplate<String, String> kafkaTemplate;
+    @Autowired private ClusterLeaseService clusterLeaseService;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private Semaphore jendelaPengiriman;
+    private final Queue<Long> terkonfirmasi = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> gagal = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    public void inisialisasiJendela() {
+        jendelaPengiriman = new Semaphore(maxInFlight);
+    }
+
+    public Long simpan(String topic, String kunci, String pesan) {
+        return simpan(topic, kunci, kunci, pesan);
+    }
+
+    /**
+     * @param kunciUrutan message yang tidak perlu menunggu satu sama lain walaupun kuncinya sama
+     *                    diberi kunci urutan berbeda
+     * @return id outbox
+     */
+    public Long simpan(String topic, String kunci, String kunciUrutan, String pesan) {
+        Outbox outbox = new Outbox();
+        outbox.setTopic(topic);
+        outbox.setKunci(kunci);
+        outbox.setKunciUrutan(kunciUrutan);
+        outbox.setPesan(pesan);
+        return outboxDao.save(outbox).getId();
+    }
+
+    public void simpanSemua(String topic, Map<String, String> pesanPerKunci) {
+        List<Outbox> daftarOutbox = new ArrayList<>();
+        for (Map.Entry<String, String> pesan : pesanPerKunci.entrySet()) {
+            Outbox outbox = new Outbox();
+            outbox.setTopic(topic);
+            outbox.setKunci(pesan.getKey());
+            outbox.setKunciUrutan(pesan.getKey());
+            outbox.setPesan(pesan.getValue());
+            daftarOutbox.add(outbox);
+        }
+        outboxDao.saveAll(daftarOutbox);
+    }
+
+    /**
+     * Untuk message yang harus tetap terkirim walaupun transaksi pemanggil di-rollback,
+     * misalnya response gagal yang dikirim dari blok catch.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void simpanTerpisah(String topic, String kunci, String pesan) {
+        simpan(topic, kunci, pesan);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval}")
+    public void kirimPesan() {
+        prosesKonfirmasi();
+
+        List<Integer> daftarShard = clusterLeaseService.getDaftarShard();
+        int jumlah = Math.min(batchSize, jendelaPengiriman.availablePermits());
+        if (daftarShard.isEmpty() || jumlah < 1) {
+            return;
+        }
+
+        List<Outbox> daftarPesan = outboxDao.klaimPesan(clusterLeaseService.getJumlahShard(),
+                daftarShard, timeoutDetik, jumlah);
+        if (daftarPesan.isEmpty()) {
+            return;
+        }
+
+        List<Long> daftarId = new ArrayList<>();
+        for (Outbox outbox : daftarPesan) {
+            daftarId.add(outbox.getId());
+        }
+        outboxDao.tandaiSedangDikirim(daftarId);
+        // latency VA request dihitung dari sini, tanpa waktu tunggu di antrian outbox
+        pendingVaRequestDao.tandaiTerkirim(daftarId, LocalDateTime.now());
+
+        for (Outbox outbox : daftarPesan) {
+            kirim(outbox);
+        }
+        LOGGER.debug("Outbox : {} pesan dikirim, {} menunggu konfirmasi",
+                daftarPesan.size(), maxInFlight - jendelaPengiriman.availablePermits());
+    }
+
+    private void kirim(Outbox outbox) {
+        jendelaPengiriman.acquireUninterruptibly();
+        Long id = outbox.getId();
+        Timer latency = meterRegistry.timer("kafka.send.latency", "topic", outbox.getTopic());
+        long mulai = System.nanoTime();
+        try {
+            kafkaTemplate.send(outbox.getTopic(), outbox.getKunci(), outbox.getPesan())
+                    .addCallback(hasil -> {
+                        latency.record(System.nanoTime() - mulai, TimeUnit.NANOSECONDS);
+                        terkonfirmasi.add(id);
+                        jendelaPengiriman.release();
+                    }, err -> {
+                        LOGGER.warn("Gagal mengirim outbox {} ke topic {} : {}", id, outbox.getTopic(), err.getMessage());
+                        gagal.add(id);
+                        jendelaPengiriman.release();
+                    });
+        } catch (Exception err) {
+            LOGGER.warn("Gagal mengirim outbox {} ke topic {} : {}", id, outbox.getTopic(), err.getMessage());
+            gagal.add(id);
+            jendelaPengiriman.release();
+        }
+    }
+
+    private void prosesKonfirmasi() {
+        List<Long> sukses = ambilSemua(terkonfirmasi);
+        if (!sukses.isEmpty()) {
+            outboxDao.hapus(sukses);
+        }
+
+        List<Long> kirimUlang = ambilSemua(gagal);
+        if (!kirimUlang.isEmpty()) {
+            outboxDao.kembalikanKeAntrian(kirimUlang);
+        }
+    }
+
+    private static List<Long> ambilSemua(Queue<Long> antrian) {
+        List<Long> hasil = new ArrayList<>();
+        Long id;
+        while ((id = antrian.poll()) != null) {
+            hasil.add(id);
+        }
+        return hasil;
+    }
+}
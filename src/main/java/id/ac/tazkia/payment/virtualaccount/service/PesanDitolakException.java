@@ -0,0 +1,11 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+/**
+ * Message Kafka yang isinya tidak bisa diproses, misalnya referensi ke data yang tidak ada.
+ * Tidak dicoba ulang, langsung dikirim ke dead letter topic.
+ */
+public class PesanDitolakException extends RuntimeException {
+    public PesanDitolakException(String message) {
+        super(message);
+    }
+}
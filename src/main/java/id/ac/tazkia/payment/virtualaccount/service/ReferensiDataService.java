@@ -0,0 +1,218 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dao.BankDao;
+import id.ac.tazkia.payment.virtualaccount.dao.JenisTagihanDao;
+import id.ac.tazkia.payment.virtualaccount.dao.KodeBiayaDao;
+import id.ac.tazkia.payment.virtualaccount.entity.Bank;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
+import id.ac.tazkia.payment.virtualaccount.entity.KodeBiaya;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache data referensi bank, jenis tagihan (beserta daftar bank-nya) dan kode biaya.
+ * Semua data dimuat sekaligus menjadi satu snapshot yang tidak bisa diubah,
+ * lalu snapshot diganti utuh bila ada perubahan, sehingga pembaca tidak pernah melihat data setengah termuat.
+ *
+ * Entity di dalam snapshot adalah salinan yang terlepas dari persistence context,
+ * jadi aman dipakai sebagai relasi entity lain tetapi jangan diubah dan di-save.
+ * Perubahan dari node lain atau langsung di database terbaca paling lambat pada refresh berkala,
+ * atau lebih cepat bila ada id yang dicari tetapi belum ada di snapshot.
+ */
+@Service @Transactional(readOnly = true)
+public class ReferensiDataService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReferensiDataService.class);
+
+    private static final String BANK = "bank";
+    private static final String JENIS_TAGIHAN = "jenis-tagihan";
+    private static final String KODE_BIAYA = "kode-biaya";
+
+    @Autowired private BankDao bankDao;
+    @Autowired private JenisTagihanDao jenisTagihanDao;
+    @Autowired private KodeBiayaDao kodeBiayaDao;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private volatile Snapshot snapshot;
+    private final AtomicLong versi = new AtomicLong();
+
+    public Optional<Bank> bank(String id) {
+        Bank bank = id == null ? null : snapshot().bank.get(id);
+        if (bank != null) {
+            hitung(BANK, true);
+            return Optional.of(bank);
+        }
+        hitung(BANK, false);
+        Optional<Bank> hasil = id == null ? Optional.empty() : bankDao.findById(id);
+        hasil.ifPresent(b -> invalidasi());
+        return hasil.map(ReferensiDataService::salin);
+    }
+
+    // bukan pencarian id, tidak dihitung sebagai hit
+    public Collection<Bank> daftarBank() {
+        return snapshot().bank.values();
+    }
+
+    public Optional<JenisTagihan> jenisTagihan(String id) {
+        JenisTagihan jenisTagihan = id == null ? null : snapshot().jenisTagihan.get(id);
+        if (jenisTagihan != null) {
+            hitung(JENIS_TAGIHAN, true);
+            return Optional.of(jenisTagihan);
+        }
+        hitung(JENIS_TAGIHAN, false);
+        List<JenisTagihan> hasil = id == null ? Collections.emptyList()
+                : jenisTagihanDao.findByIdIn(Collections.singleton(id));
+        if (hasil.isEmpty()) {
+            return Optional.empty();
+        }
+        invalidasi();
+        return Optional.of(salin(hasil.get(0)));
+    }
+
+    /**
+     * Bank tujuan VA untuk jenis tagihan tersebut, tanpa lazy load daftarBank.
+     * Dipanggil untuk setiap tagihan, jadi hanya miss yang dihitung supaya rasio hit tidak menggelembung.
+     */
+    public Set<Bank> daftarBank(JenisTagihan jenisTagihan) {
+        JenisTagihan jt = jenisTagihan.getId() == null ? null : snapshot().jenisTagihan.get(jenisTagihan.getId());
+        if (jt != null) {
+            return jt.getDaftarBank();
+        }
+        return jenisTagihan(jenisTagihan.getId())
+                .map(JenisTagihan::getDaftarBank)
+                .orElse(Collections.emptySet());
+    }
+
+    public Optional<KodeBiaya> kodeBiaya(String id) {
+        KodeBiaya kodeBiaya = id == null ? null : snapshot().kodeBiaya.get(id);
+        if (kodeBiaya != null) {
+            hitung(KODE_BIAYA, true);
+            return Optional.of(kodeBiaya);
+        }
+        hitung(KODE_BIAYA, false);
+        Optional<KodeBiaya> hasil = id == null ? Optional.empty() : kodeBiayaDao.findById(id);
+        hasil.ifPresent(kb -> invalidasi());
+        return hasil.map(ReferensiDataService::salin);
+    }
+
+    /**
+     * Dipanggil setelah data referensi disimpan.
+     * Bila ada transaksi, snapshot baru dibuang setelah commit supaya tidak termuat ulang dengan data lama.
+     */
+    public void invalidasi() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            buang();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                buang();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${referensi.cache.refresh}")
+    public void refresh() {
+        buang();
+    }
+
+    private void buang() {
+        versi.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot s = snapshot;
+        if (s != null) {
+            return s;
+        }
+        synchronized (this) {
+            if (snapshot != null) {
+                return snapshot;
+            }
+            long versiMuat = versi.get();
+            s = muat();
+            // bila ada invalidasi selama memuat, snapshot ini dipakai sekali saja dan dimuat ulang berikutnya
+            if (versiMuat == versi.get()) {
+                snapshot = s;
+            }
+            return s;
+        }
+    }
+
+    private Snapshot muat() {
+        Map<String, Bank> bank = new LinkedHashMap<>();
+        for (Bank b : bankDao.findAll()) {
+            bank.put(b.getId(), salin(b));
+        }
+        Map<String, JenisTagihan> jenisTagihan = new LinkedHashMap<>();
+        for (JenisTagihan jt : jenisTagihanDao.findAllDenganBank()) {
+            jenisTagihan.put(jt.getId(), salin(jt));
+        }
+        Map<String, KodeBiaya> kodeBiaya = new LinkedHashMap<>();
+        for (KodeBiaya kb : kodeBiayaDao.findAll()) {
+            kodeBiaya.put(kb.getId(), salin(kb));
+        }
+        meterRegistry.counter("referensi.cache.muat").increment();
+        LOGGER.debug("Data referensi dimuat : {} bank, {} jenis tagihan, {} kode biaya",
+                bank.size(), jenisTagihan.size(), kodeBiaya.size());
+        return new Snapshot(bank, jenisTagihan, kodeBiaya);
+    }
+
+    private void hitung(String jenis, boolean hit) {
+        meterRegistry.counter("referensi.cache.akses", "jenis", jenis, "hasil", hit ? "hit" : "miss").increment();
+    }
+
+    private static Bank salin(Bank bank) {
+        Bank salinan = new Bank();
+        BeanUtils.copyProperties(bank, salinan);
+        return salinan;
+    }
+
+    private static KodeBiaya salin(KodeBiaya kodeBiaya) {
+        KodeBiaya salinan = new KodeBiaya();
+        BeanUtils.copyProperties(kodeBiaya, salinan);
+        return salinan;
+    }
+
+    private static JenisTagihan salin(JenisTagihan jenisTagihan) {
+        JenisTagihan salinan = new JenisTagihan();
+        BeanUtils.copyProperties(jenisTagihan, salinan, "daftarBank");
+        Set<Bank> daftarBank = new LinkedHashSet<>();
+        for (Bank b : jenisTagihan.getDaftarBank()) {
+            daftarBank.add(salin(b));
+        }
+        salinan.setDaftarBank(Collections.unmodifiableSet(daftarBank));
+        return salinan;
+    }
+
+    private static class Snapshot {
+        private final Map<String, Bank> bank;
+        private final Map<String, JenisTagihan> jenisTagihan;
+        private final Map<String, KodeBiaya> kodeBiaya;
+
+        Snapshot(Map<String, Bank> bank, Map<String, JenisTagihan> jenisTagihan, Map<String, KodeBiaya> kodeBiaya) {
+            this.bank = Collections.unmodifiableMap(bank);
+            this.jenisTagihan = Collections.unmodifiableMap(jenisTagihan);
+            this.kodeBiaya = Collections.unmodifiableMap(kodeBiaya);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dao.PembayaranDao;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Menyimpan referensi pembayaran bank yang baru-baru ini tercatat, supaya pembayaran ganda
+ * (message Kafka yang terkirim ulang atau bank yang mengirim dua kali) bisa ditolak tanpa query ke database.
+ * Isinya dibatasi, referensi yang paling lama tidak dipakai dibuang lebih dulu.
+ * Referensi yang tidak ada di sini tetap diperiksa ke database, dan terakhir dijaga unique index (id_bank, referensi).
+ * Pembayaran ganda yang sudah tercatat sebelum index dibuat tidak diubah, tetapi dilaporkan di log saat start
+ * supaya diperiksa manual.
+ */
+@Service @Transactional(readOnly = true)
+public class ReferensiPembayaranService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReferensiPembayaranService.class);
+
+    public static final String BARU = "baru";
+    public static final String DUPLIKAT_MEMORI = "duplikat-memori";
+    public static final String DUPLIKAT_DATABASE = "duplikat-database";
+    public static final String DUPLIKAT_CONSTRAINT = "duplikat-constraint";
+
+    @Value("${pembayaran.referensi.kapasitas}") private Integer kapasitas;
+    @Value("${pembayaran.referensi.hari}") private Integer jumlahHari;
+
+    @Autowired private PembayaranDao pembayaranDao;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private Set<String> daftarReferensi;
+
+    @PostConstruct
+    public void inisialisasiReferensi() {
+        daftarReferensi = Collections.synchronizedSet(Collections.newSetFromMap(
+                new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                        return size() > kapasitas;
+                    }
+                }));
+        meterRegistry.gauge("pembayaran.referensi.cache", daftarReferensi, Set::size);
+
+        for (Object[] data : pembayaranDao.findReferensiSejak(LocalDateTime.now().minusDays(jumlahHari))) {
+            daftarReferensi.add(kunci((String) data[0], (String) data[1]));
+        }
+        LOGGER.info("{} referensi pembayaran {} hari terakhir dimuat", daftarReferensi.size(), jumlahHari);
+
+        laporkanDuplikatLama();
+    }
+
+    private void laporkanDuplikatLama() {
+        List<Object[]> daftarDuplikat = pembayaranDao.findDuplikatLama();
+        if (daftarDuplikat.isEmpty()) {
+            return;
+        }
+        LOGGER.warn("{} pembayaran ganda lama perlu diperiksa manual", daftarDuplikat.size());
+        for (Object[] data : daftarDuplikat) {
+            LOGGER.warn("Pembayaran ganda lama {} : bank {}, referensi {}, jumlah {}, waktu {}",
+                    data[0], data[1], data[2], data[3], data[4]);
+        }
+    }
+
+    public boolean sudahAda(String bank, String referensi) {
+        return daftarReferensi.contains(kunci(bank, referensi));
+    }
+
+    /**
+     * Referensi baru dicatat setelah transaksi pembayarannya commit,
+     * supaya pembayaran yang di-rollback masih bisa diproses ulang.
+     */
+    public void catat(String bank, String referensi) {
+        String kunci = kunci(bank, referensi);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            daftarReferensi.add(kunci);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                daftarReferensi.add(kunci);
+            }
+        });
+    }
+
+    public void hitungKeputusan(String hasil) {
+        meterRegistry.counter("pembayaran.referensi.keputusan", "hasil", hasil).increment();
+    }
+
+    private static String kunci(String bank, String referensi) {
+        return bank + "|" + referensi;
+    }
+}
@@ -0,0 +1,355 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dto.LaporanTagihan;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
+import id.ac.tazkia.payment.virtualaccount.entity.StatusPembayaran;
+import id.ac.tazkia.payment.virtualaccount.entity.Tagihan;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Rekap tagihan untuk dashboard, per jenis tagihan, status pembayaran dan bulan tanggal tagihan, disimpan di memori.
+ * Rekap dimuat dengan satu query group by saat aplikasi mulai, lalu diubah setiap ada tagihan baru,
+ * tagihan yang diupdate dan pembayaran, setelah transaksinya commit.
+ * Nilai disimpan sebagai long dalam satuan sen, sehingga penjumlahan tetap eksak tanpa membuat BigDecimal.
+ *
+ * Perubahan dari node lain atau langsung di database tidak terlihat di sini, karena itu rekap
+ * dibandingkan dengan database setiap rekap.tagihan.periksa dan sel yang berbeda diganti dengan data database.
+ * Sel yang berubah selama query pemeriksaan berjalan dilewati dan diperiksa lagi berikutnya.
+ */
+@Service
+public class RekapTagihanService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RekapTagihanService.class);
+
+    private static final String SQL_REKAP = "select id_jenis_tagihan, status_pembayaran, " +
+            "cast(extract(year from tanggal_tagihan) * 100 + extract(month from tanggal_tagihan) as integer), " +
+            "count(*), sum(nilai_tagihan), sum(jumlah_pembayaran) " +
+            "from tagihan group by 1, 2, 3";
+    private static final String SQL_POSISI = "select id_jenis_tagihan, status_pembayaran, tanggal_tagihan, " +
+            "nilai_tagihan, jumlah_pembayaran from tagihan where id = ?";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private ReferensiDataService referensiDataService;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private final Object kunci = new Object();
+    // rekap dan tersentuh hanya diakses di dalam synchronized (kunci)
+    private Map<Sel, Nilai> rekap;
+    // sel yang berubah selama pemeriksaan berjalan, null bila tidak sedang diperiksa
+    private Set<Sel> tersentuh;
+
+    @PostConstruct
+    public void muat() {
+        long mulai = System.nanoTime();
+        Map<Sel, Nilai> hasil = hitungDariDatabase();
+        synchronized (kunci) {
+            rekap = hasil;
+        }
+        LOGGER.info("Rekap tagihan dimuat : {} sel dalam {} ms", hasil.size(), (System.nanoTime() - mulai) / 1000000);
+    }
+
+    /**
+     * Rekap dashboard per jenis tagihan untuk tagihan dengan tanggal tagihan di antara kedua bulan tersebut.
+     */
+    public List<LaporanTagihan> laporanPerJenisTagihan(YearMonth mulai, YearMonth sampai) {
+        int bulanMulai = bulan(mulai.getYear(), mulai.getMonthValue());
+        int bulanSampai = bulan(sampai.getYear(), sampai.getMonthValue());
+
+        // lunas, belum lunas, nilai tagihan, nilai pembayaran
+        Map<String, long[]> perJenis = new HashMap<>();
+        synchronized (kunci) {
+            for (Map.Entry<Sel, Nilai> e : rekap.entrySet()) {
+                Sel sel = e.getKey();
+                if (sel.bulan < bulanMulai || sel.bulan > bulanSampai) {
+                    continue;
+                }
+                long[] total = perJenis.computeIfAbsent(sel.jenisTagihan, k -> new long[4]);
+                total[StatusPembayaran.LUNAS.equals(sel.statusPembayaran) ? 0 : 1] += e.getValue().jumlah;
+                total[2] += e.getValue().nilaiTagihan;
+                total[3] += e.getValue().nilaiPembayaran;
+            }
+        }
+
+        List<LaporanTagihan> hasil = new ArrayList<>();
+        for (Map.Entry<String, long[]> e : perJenis.entrySet()) {
+            Optional<JenisTagihan> jenisTagihan = referensiDataService.jenisTagihan(e.getKey());
+            if (!jenisTagihan.isPresent()) {
+                continue;
+            }
+            LaporanTagihan laporan = new LaporanTagihan();
+            laporan.setJenisTagihan(jenisTagihan.get());
+            laporan.setJumlahTagihanLunas(e.getValue()[0]);
+            laporan.setJumlahTagihanBelumLunas(e.getValue()[1]);
+            laporan.setNilaiTagihan(BigDecimal.valueOf(e.getValue()[2], 2));
+            laporan.setNilaiPembayaran(BigDecimal.valueOf(e.getValue()[3], 2));
+            hasil.add(laporan);
+        }
+        hasil.sort(Comparator.comparing(l -> l.getJenisTagihan().getKode()));
+        return hasil;
+    }
+
+    public void tagihanBaru(Tagihan tagihan) {
+        Posisi posisi = posisi(tagihan);
+        setelahCommit(() -> terapkan(posisi, 1));
+    }
+
+    public void tagihanBaru(Collection<Tagihan> daftarTagihan) {
+        List<Posisi> daftarPosisi = new ArrayList<>();
+        for (Tagihan t : daftarTagihan) {
+            daftarPosisi.add(posisi(t));
+        }
+        setelahCommit(() -> daftarPosisi.forEach(p -> terapkan(p, 1)));
+    }
+
+    /**
+     * @param sebelum posisi tagihan sebelum diubah, dari {@link #posisiTersimpan(String)} atau {@link #posisi(Tagihan)}
+     */
+    public void tagihanBerubah(Posisi sebelum, Tagihan sesudah) {
+        if (sebelum == null) {
+            return;
+        }
+        Posisi posisiSesudah = posisi(sesudah);
+        if (sebelum.equals(posisiSesudah)) {
+            return;
+        }
+        setelahCommit(() -> {
+            terapkan(sebelum, -1);
+            terapkan(posisiSesudah, 1);
+        });
+    }
+
+    /**
+     * Posisi tagihan yang tersimpan di database.
+     * Dibaca dengan JdbcTemplate supaya perubahan entity yang belum di-flush tidak ikut terbaca,
+     * jadi harus dipanggil sebelum ada query JPA di transaksi yang mengubah tagihan tersebut.
+     */
+    public Posisi posisiTersimpan(String idTagihan) {
+        List<Posisi> hasil = jdbcTemplate.query(SQL_POSISI, (rs, i) -> {
+            LocalDate tanggal = rs.getDate(3).toLocalDate();
+            return new Posisi(new Sel(rs.getString(1), StatusPembayaran.valueOf(rs.getString(2)),
+                    bulan(tanggal.getYear(), tanggal.getMonthValue())),
+                    sen(rs.getBigDecimal(4)), sen(rs.getBigDecimal(5)));
+        }, idTagihan);
+        return hasil.isEmpty() ? null : hasil.get(0);
+    }
+
+    public static Posisi posisi(Tagihan t) {
+        return new Posisi(new Sel(t.getJenisTagihan().getId(), t.getStatusPembayaran(),
+                bulan(t.getTanggalTagihan().getYear(), t.getTanggalTagihan().getMonthValue())),
+                sen(t.getNilaiTagihan()), sen(t.getJumlahPembayaran()));
+    }
+
+    @Scheduled(fixedDelayString = "${rekap.tagihan.periksa}", initialDelayString = "${rekap.tagihan.periksa}")
+    public void periksaSelisih() {
+        synchronized (kunci) {
+            tersentuh = new HashSet<>();
+        }
+
+        Map<Sel, Nilai> database;
+        try {
+            database = hitungDariDatabase();
+        } catch (RuntimeException err) {
+            synchronized (kunci) {
+                tersentuh = null;
+            }
+            throw err;
+        }
+
+        int selisih = 0;
+        int dilewati;
+        synchronized (kunci) {
+            Set<Sel> semuaSel = new HashSet<>(rekap.keySet());
+            semuaSel.addAll(database.keySet());
+            for (Sel sel : semuaSel) {
+                if (tersentuh.contains(sel)) {
+                    continue;
+                }
+                Nilai seharusnya = database.get(sel);
+                if (!Objects.equals(seharusnya, rekap.get(sel))) {
+                    selisih++;
+                    LOGGER.debug("Rekap {} di memori {}, di database {}", sel, rekap.get(sel), seharusnya);
+                    if (seharusnya == null) {
+                        rekap.remove(sel);
+                    } else {
+                        rekap.put(sel, seharusnya);
+                    }
+                }
+            }
+            dilewati = tersentuh.size();
+            tersentuh = null;
+        }
+
+        if (selisih > 0) {
+            meterRegistry.counter("rekap.tagihan.selisih").increment(selisih);
+            LOGGER.warn("Rekap tagihan di memori berbeda dengan database di {} sel, sudah diperbaiki", selisih);
+        }
+        LOGGER.debug("Pemeriksaan rekap tagihan : {} sel, {} berbeda, {} dilewati karena berubah",
+                database.size(), selisih, dilewati);
+    }
+
+    private Map<Sel, Nilai> hitungDariDatabase() {
+        Map<Sel, Nilai> hasil = new LinkedHashMap<>();
+        jdbcTemplate.query(SQL_REKAP, rs -> {
+            Nilai nilai = new Nilai();
+            nilai.jumlah = rs.getLong(4);
+            nilai.nilaiTagihan = sen(rs.getBigDecimal(5));
+            nilai.nilaiPembayaran = sen(rs.getBigDecimal(6));
+            hasil.put(new Sel(rs.getString(1), StatusPembayaran.valueOf(rs.getString(2)), rs.getInt(3)), nilai);
+        });
+        meterRegistry.counter("rekap.tagihan.muat").increment();
+        return hasil;
+    }
+
+    private void terapkan(Posisi posisi, int arah) {
+        synchronized (kunci) {
+            if (rekap == null) {
+                // masih dimuat, perubahan ini sudah terbaca atau diperbaiki pada pemeriksaan berikutnya
+                return;
+            }
+            if (tersentuh != null) {
+                tersentuh.add(posisi.sel);
+            }
+            Nilai nilai = rekap.computeIfAbsent(posisi.sel, k -> new Nilai());
+            nilai.jumlah += arah;
+            nilai.nilaiTagihan += arah * posisi.nilaiTagihan;
+            nilai.nilaiPembayaran += arah * posisi.nilaiPembayaran;
+            if (nilai.jumlah == 0 && nilai.nilaiTagihan == 0 && nilai.nilaiPembayaran == 0) {
+                rekap.remove(posisi.sel);
+            }
+        }
+    }
+
+    private static void setelahCommit(Runnable perubahan) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            perubahan.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                perubahan.run();
+            }
+        });
+    }
+
+    private static int bulan(int tahun, int bulan) {
+        return tahun * 100 + bulan;
+    }
+
+    private static long sen(BigDecimal nilai) {
+        return nilai == null ? 0 : nilai.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Jenis tagihan, status pembayaran dan bulan (yyyyMM) tanggal tagihan.
+     */
+    private static class Sel {
+        private final String jenisTagihan;
+        private final StatusPembayaran statusPembayaran;
+        private final int bulan;
+
+        Sel(String jenisTagihan, StatusPembayaran statusPembayaran, int bulan) {
+            this.jenisTagihan = jenisTagihan;
+            this.statusPembayaran = statusPembayaran;
+            this.bulan = bulan;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Sel)) {
+                return false;
+            }
+            Sel sel = (Sel) o;
+            return bulan == sel.bulan && statusPembayaran == sel.statusPembayaran
+                    && jenisTagihan.equals(sel.jenisTagihan);
+        }
+
+        @Override
+        public int hashCode() {
+            return (jenisTagihan.hashCode() * 31 + statusPembayaran.hashCode()) * 31 + bulan;
+        }
+
+        @Override
+        public String toString() {
+            return jenisTagihan + "/" + statusPembayaran + "/" + bulan;
+        }
+    }
+
+    private static class Nilai {
+        private long jumlah;
+        private long nilaiTagihan;
+        private long nilaiPembayaran;
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Nilai)) {
+                return false;
+            }
+            Nilai n = (Nilai) o;
+            return jumlah == n.jumlah && nilaiTagihan == n.nilaiTagihan && nilaiPembayaran == n.nilaiPembayaran;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(jumlah) * 31 + Long.hashCode(nilaiTagihan);
+        }
+
+        @Override
+        public String toString() {
+            return jumlah + " tagihan, " + nilaiTagihan + " sen, dibayar " + nilaiPembayaran + " sen";
+        }
+    }
+
+    /**
+     * Sel rekap dan nilai satu tagihan di dalamnya, dalam sen.
+     */
+    public static class Posisi {
+        private final Sel sel;
+        private final long nilaiTagihan;
+        private final long nilaiPembayaran;
+
+        private Posisi(Sel sel, long nilaiTagihan, long nilaiPembayaran) {
+            this.sel = sel;
+            this.nilaiTagihan = nilaiTagihan;
+            this.nilaiPembayaran = nilaiPembayaran;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Posisi)) {
+                return false;
+            }
+            Posisi p = (Posisi) o;
+            return sel.equals(p.sel) && nilaiTagihan == p.nilaiTagihan && nilaiPembayaran == p.nilaiPembayaran;
+        }
+
+        @Override
+        public int hashCode() {
+            return sel.hashCode() * 31 + Long.hashCode(nilaiTagihan);
+        }
+    }
+}
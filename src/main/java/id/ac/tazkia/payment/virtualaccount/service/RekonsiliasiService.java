@@ -0,0 +1,416 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dto.HasilRekonsiliasi;
+import id.ac.tazkia.payment.virtualaccount.dto.StatusRekonsiliasi;
+import id.ac.tazkia.payment.virtualaccount.helper.CsvReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rekonsiliasi file mutasi bank dengan data pembayaran.
+ *
+ * Pembayaran dalam periode rekonsiliasi (ditambah toleransi hari di kedua ujungnya) dimuat sekali
+ * ke indeks di memori yang hanya berisi array kolom yang diperlukan, dengan dua hash index :
+ * (bank, referensi) dan (nilai, tanggal). File mutasi disimpan dulu ke file sementara lalu dibaca dua kali.
+ * Pembacaan pertama hanya mencocokkan berdasarkan referensi, supaya pembayaran yang referensinya muncul
+ * di mutasi tidak diambil baris lain yang kebetulan nilai dan tanggalnya sama.
+ * Pembacaan kedua mencari baris yang belum cocok berdasarkan nilai dan tanggal, lalu hasil setiap baris
+ * langsung ditulis ke output sesuai urutan file.
+ * Kecocokan berdasarkan nilai dan tanggal diberi status tersendiri (COCOK_NILAI) supaya diperiksa ulang.
+ * Pembayaran periode yang tidak pernah cocok ditulis di akhir sebagai tidak ada di bank.
+ * Pemakaian memori sebanding dengan jumlah pembayaran di periode tersebut ditambah satu bit per baris mutasi,
+ * bukan ukuran file mutasi.
+ *
+ * Format file mutasi : id bank, tanggal (yyyy-MM-dd), referensi, jumlah.
+ */
+@Service
+public class RekonsiliasiService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RekonsiliasiService.class);
+
+    private static final String SQL_PEMBAYARAN = "select p.id_bank, p.referensi, p.jumlah, p.waktu_transaksi, t.nomor " +
+            "from pembayaran p inner join tagihan t on p.id_tagihan = t.id " +
+            "where p.waktu_transaksi >= ? and p.waktu_transaksi < ?";
+    private static final int JUMLAH_KOLOM = 4;
+    private static final int UKURAN_BUFFER = 64 * 1024;
+    private static final String[] HEADER = {"Status", "Baris", "Bank", "Tanggal Mutasi", "Referensi Mutasi",
+            "Jumlah Mutasi", "Waktu Pembayaran", "Referensi Pembayaran", "Jumlah Pembayaran", "Nomor Tagihan",
+            "Keterangan"};
+    private static final DateTimeFormatter FORMAT_WAKTU = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Value("${rekonsiliasi.toleransi-hari}") private Integer toleransiHari;
+    @Value("${ekspor.fetch-size}") private Integer fetchSize;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnly;
+
+    @PostConstruct
+    public void inisialisasi() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    public HasilRekonsiliasi rekonsiliasi(InputStream mutasi, boolean pakaiHeader,
+                                         LocalDate mulai, LocalDate sampai, OutputStream output) throws IOException {
+        long waktuMulai = System.currentTimeMillis();
+        IndeksPembayaran indeks = muatPembayaran(mulai.minusDays(toleransiHari), sampai.plusDays(toleransiHari));
+        long waktuMuat = System.currentTimeMillis() - waktuMulai;
+
+        HasilRekonsiliasi hasil = new HasilRekonsiliasi();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), UKURAN_BUFFER);
+        tulisBaris(writer, HEADER);
+
+        boolean selesai;
+        Path file = Files.createTempFile("rekonsiliasi-", ".csv");
+        try {
+            Files.copy(mutasi, file, StandardCopyOption.REPLACE_EXISTING);
+            BitSet cocokReferensi = cocokkanReferensi(file, pakaiHeader, indeks);
+            selesai = bacaMutasi(file, pakaiHeader, indeks, cocokReferensi, hasil, writer);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        // pembayaran di tanggal toleransi tidak dilaporkan, karena mutasinya ada di periode lain
+        long hariMulai = mulai.toEpochDay();
+        long hariSampai = sampai.toEpochDay();
+        for (int i = 0; selesai && i < indeks.jumlah; i++) {
+            long hari = indeks.hari(i);
+            if (hari < hariMulai || hari > hariSampai) {
+                continue;
+            }
+            hasil.setJumlahPembayaran(hasil.getJumlahPembayaran() + 1);
+            if (!indeks.cocok.get(i)) {
+                tulis(writer, hasil, StatusRekonsiliasi.TIDAK_ADA_DI_BANK, null, indeks, i);
+            }
+        }
+        writer.flush();
+
+        LOGGER.info("Rekonsiliasi {} - {} : {} mutasi, {} pembayaran dimuat dalam {} ms, selesai dalam {} ms, {}",
+                mulai, sampai, hasil.getJumlahMutasi(), indeks.jumlah, waktuMuat,
+                System.currentTimeMillis() - waktuMulai, hasil.getJumlahPerStatus());
+        return hasil;
+    }
+
+    /**
+     * Pembacaan pertama, hanya mencocokkan berdasarkan referensi.
+     * Baris yang formatnya salah atau sisa file yang tidak bisa dibaca dilaporkan di pembacaan kedua.
+     * @return nomor baris yang cocok berdasarkan referensi
+     */
+    private BitSet cocokkanReferensi(Path file, boolean pakaiHeader, IndeksPembayaran indeks) throws IOException {
+        BitSet cocokReferensi = new BitSet();
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            boolean header = pakaiHeader;
+            while (true) {
+                String[] data;
+                try {
+                    data = reader.bacaRecord();
+                } catch (IOException err) {
+                    return cocokReferensi;
+                }
+                if (data == null) {
+                    return cocokReferensi;
+                }
+                if (header) {
+                    header = false;
+                    continue;
+                }
+                Mutasi m = Mutasi.baca(data, reader.getNomorRecord());
+                if (m == null) {
+                    continue;
+                }
+                int i = indeks.cariReferensi(m.bank, m.referensi);
+                if (i >= 0 && !indeks.cocok.get(i)) {
+                    indeks.cocok.set(i);
+                    cocokReferensi.set(m.baris);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pembacaan kedua, menulis hasil setiap baris.
+     * @return false bila file tidak bisa dibaca sampai habis
+     */
+    private boolean bacaMutasi(Path file, boolean pakaiHeader, IndeksPembayaran indeks, BitSet cocokReferensi,
+                               HasilRekonsiliasi hasil, Writer writer) throws IOException {
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            boolean header = pakaiHeader;
+            while (true) {
+                String[] data;
+                try {
+                    data = reader.bacaRecord();
+                } catch (IOException err) {
+                    // misalnya tanda kutip yang tidak ditutup, sisa file tidak bisa dibaca
+                    LOGGER.warn(err.getMessage());
+                    hasil.tambah(StatusRekonsiliasi.FORMAT_SALAH);
+                    tulisFormatSalah(writer, reader.getNomorRecord() + 1, err.getMessage());
+                    return false;
+                }
+                if (data == null) {
+                    return true;
+                }
+                if (header) {
+                    header = false;
+                    continue;
+                }
+                hasil.setJumlahMutasi(hasil.getJumlahMutasi() + 1);
+
+                Mutasi m = Mutasi.baca(data, reader.getNomorRecord());
+                if (m == null) {
+                    hasil.tambah(StatusRekonsiliasi.FORMAT_SALAH);
+                    tulisFormatSalah(writer, reader.getNomorRecord(), reader.getRecordMentah());
+                    continue;
+                }
+
+                int i = indeks.cariReferensi(m.bank, m.referensi);
+                if (cocokReferensi.get(m.baris)) {
+                    tulis(writer, hasil, indeks.jumlahSen[i] == m.jumlahSen
+                            ? StatusRekonsiliasi.COCOK : StatusRekonsiliasi.NILAI_BERBEDA, m, indeks, i);
+                    continue;
+                }
+                // referensi yang sudah dipakai baris sebelumnya berarti mutasi ganda, tidak dicocokkan dengan nilai
+                i = i >= 0 ? -1 : indeks.cariNilaiTanggal(m.bank, m.jumlahSen, m.hari, toleransiHari);
+                if (i >= 0) {
+                    indeks.cocok.set(i);
+                    tulis(writer, hasil, StatusRekonsiliasi.COCOK_NILAI, m, indeks, i);
+                } else {
+                    tulis(writer, hasil, StatusRekonsiliasi.TIDAK_ADA_DI_APLIKASI, m, indeks, -1);
+                }
+            }
+        }
+    }
+
+    private IndeksPembayaran muatPembayaran(LocalDate mulai, LocalDate sampai) {
+        IndeksPembayaran indeks = new IndeksPembayaran();
+        readOnly.execute(status -> {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(SQL_PEMBAYARAN,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                ps.setTimestamp(1, Timestamp.valueOf(mulai.atStartOfDay()));
+                ps.setTimestamp(2, Timestamp.valueOf(sampai.plusDays(1).atStartOfDay()));
+                return ps;
+            }, (RowCallbackHandler) rs -> indeks.tambah(rs.getString(1), rs.getString(2),
+                    sen(rs.getBigDecimal(3)), rs.getTimestamp(4).toLocalDateTime(), rs.getString(5)));
+            return null;
+        });
+        return indeks;
+    }
+
+    private void tulis(Writer writer, HasilRekonsiliasi hasil, StatusRekonsiliasi status,
+                       Mutasi m, IndeksPembayaran indeks, int i) throws IOException {
+        hasil.tambah(status);
+        boolean adaPembayaran = i >= 0;
+        tulisBaris(writer,
+                status.name(),
+                m == null ? null : Integer.toString(m.baris),
+                m == null ? indeks.bank[i] : m.bank,
+                m == null ? null : LocalDate.ofEpochDay(m.hari).toString(),
+                m == null ? null : m.referensi,
+                m == null ? null : rupiah(m.jumlahSen),
+                adaPembayaran ? FORMAT_WAKTU.format(
+                        LocalDateTime.ofEpochSecond(indeks.waktu[i], 0, ZoneOffset.UTC)) : null,
+                adaPembayaran ? indeks.referensi[i] : null,
+                adaPembayaran ? rupiah(indeks.jumlahSen[i]) : null,
+                adaPembayaran ? indeks.nomorTagihan[i] : null,
+                keterangan(status, m, indeks, i));
+    }
+
+    private static String keterangan(StatusRekonsiliasi status, Mutasi m, IndeksPembayaran indeks, int i) {
+        switch (status) {
+            case NILAI_BERBEDA:
+                return "Selisih " + rupiah(m.jumlahSen - indeks.jumlahSen[i]);
+            case COCOK_NILAI:
+                return "Referensi berbeda, dicocokkan berdasarkan nilai dan tanggal";
+            default:
+                return null;
+        }
+    }
+
+    private static void tulisFormatSalah(Writer writer, int baris, String keterangan) throws IOException {
+        String[] kolom = new String[HEADER.length];
+        kolom[0] = StatusRekonsiliasi.FORMAT_SALAH.name();
+        kolom[1] = Integer.toString(baris);
+        kolom[kolom.length - 1] = keterangan;
+        tulisBaris(writer, kolom);
+    }
+
+    private static void tulisBaris(Writer writer, String... kolom) throws IOException {
+        for (int i = 0; i < kolom.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String nilai = kolom[i];
+            if (nilai == null) {
+                continue;
+            }
+            if (nilai.indexOf(',') < 0 && nilai.indexOf('"') < 0 && nilai.indexOf('\n') < 0 && nilai.indexOf('\r') < 0) {
+                writer.write(nilai);
+            } else {
+                writer.write('"');
+                writer.write(nilai.replace("\"", "\"\""));
+                writer.write('"');
+            }
+        }
+        writer.write('\n');
+    }
+
+    private static long sen(BigDecimal nilai) {
+        return nilai.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static String rupiah(long sen) {
+        return BigDecimal.valueOf(sen, 2).toPlainString();
+    }
+
+    private static class Mutasi {
+        private int baris;
+        private String bank;
+        private long hari;
+        private String referensi;
+        private long jumlahSen;
+
+        /**
+         * @return null bila jumlah kolom salah, ada kolom yang kosong atau tanggal dan jumlah tidak bisa dibaca
+         */
+        static Mutasi baca(String[] data, int baris) {
+            if (data.length != JUMLAH_KOLOM) {
+                return null;
+            }
+            Mutasi m = new Mutasi();
+            m.baris = baris;
+            m.bank = data[0].trim();
+            m.referensi = data[2].trim();
+            try {
+                m.hari = LocalDate.parse(data[1].trim()).toEpochDay();
+                m.jumlahSen = sen(new BigDecimal(data[3].trim()));
+            } catch (DateTimeParseException | NumberFormatException | ArithmeticException err) {
+                return null;
+            }
+            return m.bank.isEmpty() || m.referensi.isEmpty() || m.jumlahSen <= 0 ? null : m;
+        }
+    }
+
+    /**
+     * Pembayaran satu periode dalam array per kolom.
+     * Index (nilai, tanggal) berupa linked list di dalam array berikutnya, dengan kepala list disimpan di map.
+     */
+    private static class IndeksPembayaran {
+        private static final int KAPASITAS_AWAL = 1024;
+        private static final int AKHIR = -1;
+
+        private int jumlah = 0;
+        private String[] bank = new String[KAPASITAS_AWAL];
+        private String[] referensi = new String[KAPASITAS_AWAL];
+        private String[] nomorTagihan = new String[KAPASITAS_AWAL];
+        private long[] jumlahSen = new long[KAPASITAS_AWAL];
+        // detik sejak epoch dari waktu transaksi lokal
+        private long[] waktu = new long[KAPASITAS_AWAL];
+        private int[] berikutnya = new int[KAPASITAS_AWAL];
+        private final BitSet cocok = new BitSet();
+
+        // id bank yang sama dipakai satu instance saja
+        private final Map<String, String> daftarBank = new HashMap<>();
+        private final Map<String, Map<String, Integer>> perReferensi = new HashMap<>();
+        private final Map<Long, Integer> perNilaiTanggal = new HashMap<>();
+
+        void tambah(String idBank, String ref, long sen, LocalDateTime waktuTransaksi, String nomor) {
+            if (jumlah == bank.length) {
+                int kapasitas = jumlah * 2;
+                bank = Arrays.copyOf(bank, kapasitas);
+                referensi = Arrays.copyOf(referensi, kapasitas);
+                nomorTagihan = Arrays.copyOf(nomorTagihan, kapasitas);
+                jumlahSen = Arrays.copyOf(jumlahSen, kapasitas);
+                waktu = Arrays.copyOf(waktu, kapasitas);
+                berikutnya = Arrays.copyOf(berikutnya, kapasitas);
+            }
+            int i = jumlah++;
+            // pembayaran tanpa bank tidak bisa muncul di mutasi bank mana pun, tetapi tetap dilaporkan
+            bank[i] = idBank == null ? "-" : daftarBank.computeIfAbsent(idBank, k -> k);
+            referensi[i] = ref;
+            nomorTagihan[i] = nomor;
+            jumlahSen[i] = sen;
+            waktu[i] = waktuTransaksi.toEpochSecond(ZoneOffset.UTC);
+
+            perReferensi.computeIfAbsent(bank[i], k -> new HashMap<>()).put(ref, i);
+            Integer kepala = perNilaiTanggal.put(kunci(sen, hari(i)), i);
+            berikutnya[i] = kepala == null ? AKHIR : kepala;
+        }
+
+        long hari(int i) {
+            return Math.floorDiv(waktu[i], 86400L);
+        }
+
+        int cariReferensi(String idBank, String ref) {
+            Map<String, Integer> daftar = perReferensi.get(idBank);
+            Integer i = daftar == null ? null : daftar.get(ref);
+            return i == null ? AKHIR : i;
+        }
+
+        /**
+         * Pembayaran bank tersebut yang belum cocok dengan nilai sama, di tanggal yang sama
+         * atau paling jauh selisih toleransi hari, mulai dari tanggal terdekat.
+         */
+        int cariNilaiTanggal(String idBank, long sen, long hari, int toleransi) {
+            for (int selisih = 0; selisih <= toleransi; selisih++) {
+                int i = cari(idBank, sen, hari - selisih);
+                if (i == AKHIR && selisih > 0) {
+                    i = cari(idBank, sen, hari + selisih);
+                }
+                if (i != AKHIR) {
+                    return i;
+                }
+            }
+            return AKHIR;
+        }
+
+        private int cari(String idBank, long sen, long hari) {
+            Integer kepala = perNilaiTanggal.get(kunci(sen, hari));
+            for (int i = kepala == null ? AKHIR : kepala; i != AKHIR; i = berikutnya[i]) {
+                if (!cocok.get(i) && bank[i].equals(idBank)) {
+                    return i;
+                }
+            }
+            return AKHIR;
+        }
+
+        private static long kunci(long sen, long hari) {
+            // hari sejak epoch masih di bawah 100000 sampai tahun 2243
+            return sen * 100000L + hari;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Membagikan running number dari blok yang dipesan per node.
+ * Setiap node memesan satu blok nomor per pemakaian dan prefix dalam satu transaksi pendek,
+ * lalu nomor di dalam blok dibagikan dari memori, sehingga pembuatan tagihan tidak antri di satu baris running_number.
+ *
+ * Sisa blok yang tidak terpakai (karena prefix tanggal berganti atau aplikasi berhenti)
+ * dikembalikan ke database bila belum ada blok lain yang dipesan sesudahnya,
+ * selain itu nomor sisa tersebut dilewati dan dicatat di log.
+ * Urutan nomor antar node tidak lagi sama dengan urutan waktu pembuatan tagihan.
+ */
+@Service
+public class RunningNumberBlokService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RunningNumberBlokService.class);
+
+    @Value("${running-number.blok}") private Integer ukuranBlok;
+
+    @Autowired private RunningNumberService runningNumberService;
+
+    private final Map<String, Blok> daftarBlok = new ConcurrentHashMap<>();
+
+    public Long ambil(String pemakaian, String prefix) {
+        String kunci = pemakaian + "|" + prefix;
+        while (true) {
+            Blok blok = daftarBlok.get(kunci);
+            if (blok != null) {
+                long nomor = blok.berikutnya.getAndIncrement();
+                if (nomor <= blok.akhir) {
+                    return nomor;
+                }
+            }
+            pesanBlok(kunci, pemakaian, prefix, blok);
+        }
+    }
+
+    /**
+     * Permintaan sebanyak satu blok atau lebih langsung dipesan ke database sebagai satu blok tersendiri.
+     */
+    public List<Long> ambil(String pemakaian, String prefix, int jumlah) {
+        List<Long> hasil = new ArrayList<>(jumlah);
+        if (jumlah >= ukuranBlok) {
+            long akhir = runningNumberService.getNumber(pemakaian, prefix, jumlah);
+            for (long nomor = akhir - jumlah + 1; nomor <= akhir; nomor++) {
+                hasil.add(nomor);
+            }
+            return hasil;
+        }
+
+        for (int i = 0; i < jumlah; i++) {
+            hasil.add(ambil(pemakaian, prefix));
+        }
+        return hasil;
+    }
+
+    private synchronized void pesanBlok(String kunci, String pemakaian, String prefix, Blok habis) {
+        if (daftarBlok.get(kunci) != habis) {
+            // sudah diganti thread lain
+            return;
+        }
+
+        // prefix lama (tanggal kemarin) dengan pemakaian yang sama tidak akan dipakai lagi
+        for (Map.Entry<String, Blok> entry : daftarBlok.entrySet()) {
+            Blok lama = entry.getValue();
+            if (lama.pemakaian.equals(pemakaian) && !lama.prefix.equals(prefix)) {
+                daftarBlok.remove(entry.getKey());
+                tutup(lama);
+            }
+        }
+
+        long akhir = runningNumberService.getNumber(pemakaian, prefix, ukuranBlok);
+        daftarBlok.put(kunci, new Blok(pemakaian, prefix, akhir - ukuranBlok + 1, akhir));
+        LOGGER.debug("Blok running number {} {} : {} - {}", pemakaian, prefix, akhir - ukuranBlok + 1, akhir);
+    }
+
+    @PreDestroy
+    public synchronized void kembalikanSemua() {
+        for (Blok blok : daftarBlok.values()) {
+            tutup(blok);
+        }
+        daftarBlok.clear();
+    }
+
+    private void tutup(Blok blok) {
+        // thread yang masih memegang blok ini akan mendapat nomor di luar blok dan memesan blok baru
+        long awalSisa = blok.berikutnya.getAndSet(blok.akhir + 1);
+        if (awalSisa > blok.akhir) {
+            return;
+        }
+
+        try {
+            if (runningNumberService.kembalikanSisa(blok.pemakaian, blok.prefix, awalSisa, blok.akhir)) {
+                LOGGER.debug("Sisa blok running number {} {} : {} - {} dikembalikan",
+                        blok.pemakaian, blok.prefix, awalSisa, blok.akhir);
+                return;
+            }
+        } catch (Exception err) {
+            LOGGER.warn(err.getMessage(), err);
+        }
+        LOGGER.info("Running number {} {} : {} - {} tidak terpakai",
+                blok.pemakaian, blok.prefix, awalSisa, blok.akhir);
+    }
+
+    private static class Blok {
+        private final String pemakaian;
+        private final String prefix;
+        private final long akhir;
+        private final AtomicLong berikutnya;
+
+        Blok(String pemakaian, String prefix, long awal, long akhir) {
+            this.pemakaian = pemakaian;
+            this.prefix = prefix;
+            this.akhir = akhir;
+            this.berikutnya = new AtomicLong(awal);
+        }
+    }
+}
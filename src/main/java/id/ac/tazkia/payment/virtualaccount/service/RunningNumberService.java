@@ -10,6 +10,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.UUID;
 
 @Service @Transactional(propagation = Propagation.REQUIRES_NEW)
 public class RunningNumberService {
@@ -28,16 +29,21 @@ public class RunningNumberService {
     }
 
     public Long getNumber(String pemakaian, String prefix) {
-        RunningNumber rn = runningNumberDao.findByPemakaianAndPrefix(pemakaian, prefix);
-        if(rn == null){
-            rn = new RunningNumber();
-            rn.setPrefix(prefix);
-            rn.setLastNumber(0L);
-        }
-
-        Long last = rn.getLastNumber() + 1;
-        rn.setLastNumber(last);
-        runningNumberDao.save(rn);
-        return last;
+        return getNumber(pemakaian, prefix, 1);
+    }
+
+    /**
+     * Mengambil sekaligus sejumlah nomor berurutan.
+     * @return nomor terakhir dari blok yang diambil
+     */
+    public Long getNumber(String pemakaian, String prefix, Integer jumlah) {
+        return runningNumberDao.tambah(UUID.randomUUID().toString(), pemakaian, prefix, jumlah.longValue());
+    }
+
+    /**
+     * @return true bila sisa blok berhasil dikembalikan, false bila sudah ada blok lain yang diambil sesudahnya
+     */
+    public boolean kembalikanSisa(String pemakaian, String prefix, Long awalSisa, Long akhir) {
+        return runningNumberDao.kembalikanSisa(pemakaian, prefix, awalSisa, akhir) > 0;
     }
 }
@@ -13,17 +13,22 @@ import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 @Service @Transactional
 public class TagihanService {
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
     private static final String TIMEZONE = "GMT+07:00";
 
-    @Autowired private RunningNumberService runningNumberService;
+    @Autowired private RunningNumberBlokService runningNumberBlokService;
     @Autowired private TagihanDao tagihanDao;
     @Autowired private VirtualAccountDao virtualAccountDao;
     @Autowired private PeriksaStatusTagihanDao periksaStatusTagihanDao;
     @Autowired private KafkaSenderService kafkaSenderService;
+    @Autowired private ReferensiDataService referensiDataService;
+    @Autowired private RekapTagihanService rekapTagihanService;
 
     public void saveTagihan(Tagihan t) {
         t.setNilaiTagihan(t.getNilaiTagihan().setScale(0, RoundingMode.DOWN));
@@ -31,24 +36,66 @@ public class TagihanService {
         // tagihan baru
         if (t.getId() == null) {
             String datePrefix = DATE_FORMAT.format(LocalDateTime.now(ZoneId.of(TIMEZONE)));
-            Long runningNumber = runningNumberService.getNumber(datePrefix);
+            Long runningNumber = runningNumberBlokService.ambil(RunningNumber.PEMAKAIAN_DEFAULT, datePrefix);
             String nomorTagihan = datePrefix + t.getJenisTagihan().getKode() + String.format("%06d", runningNumber);
             t.setNomor(nomorTagihan);
             tagihanDao.save(t);
-            for (Bank b : t.getJenisTagihan().getDaftarBank()) {
+            rekapTagihanService.tagihanBaru(t);
+            for (Bank b : referensiDataService.daftarBank(t.getJenisTagihan())) {
                 VirtualAccount va = new VirtualAccount();
                 va.setBank(b);
                 va.setTagihan(t);
                 virtualAccountDao.save(va);
             }
         } else {
+            // dibaca sebelum query lain, karena query JPA bisa mem-flush perubahan t lebih dulu
+            RekapTagihanService.Posisi sebelum = rekapTagihanService.posisiTersimpan(t.getId());
             for (VirtualAccount va : virtualAccountDao.findByTagihan(t)) {
                 va.setVaStatus(StatusTagihan.AKTIF.equals(t.getStatusTagihan()) ? VaStatus.UPDATE : VaStatus.DELETE);
                 virtualAccountDao.save(va);
             }
             tagihanDao.save(t);
+            rekapTagihanService.tagihanBerubah(sebelum, t);
         }
 
+        kafkaSenderService.sendTagihanResponse(createResponse(t));
+    }
+
+    /**
+     * Menyimpan banyak tagihan baru sekaligus.
+     * Nomor tagihan diambil sekaligus, insert tagihan dan VA dikirim dengan JDBC batch,
+     * dan response untuk semua tagihan ditulis ke outbox bersamaan.
+     */
+    public void saveTagihanBaru(List<Tagihan> daftarTagihan) {
+        if (daftarTagihan.isEmpty()) {
+            return;
+        }
+
+        String datePrefix = DATE_FORMAT.format(LocalDateTime.now(ZoneId.of(TIMEZONE)));
+        Iterator<Long> daftarNomor = runningNumberBlokService
+                .ambil(RunningNumber.PEMAKAIAN_DEFAULT, datePrefix, daftarTagihan.size()).iterator();
+
+        List<VirtualAccount> daftarVa = new ArrayList<>();
+        List<TagihanResponse> daftarResponse = new ArrayList<>();
+        for (Tagihan t : daftarTagihan) {
+            t.setNilaiTagihan(t.getNilaiTagihan().setScale(0, RoundingMode.DOWN));
+            t.setNomor(datePrefix + t.getJenisTagihan().getKode() + String.format("%06d", daftarNomor.next()));
+            for (Bank b : referensiDataService.daftarBank(t.getJenisTagihan())) {
+                VirtualAccount va = new VirtualAccount();
+                va.setBank(b);
+                va.setTagihan(t);
+                daftarVa.add(va);
+            }
+            daftarResponse.add(createResponse(t));
+        }
+
+        tagihanDao.saveAll(daftarTagihan);
+        rekapTagihanService.tagihanBaru(daftarTagihan);
+        virtualAccountDao.saveAll(daftarVa);
+        kafkaSenderService.sendTagihanResponse(daftarResponse);
+    }
+
+    private TagihanResponse createResponse(Tagihan t) {
         TagihanResponse response = new TagihanResponse();
         response.setDebitur(t.getDebitur().getNomorDebitur());
         response.setJenisTagihan(t.getJenisTagihan().getId());
@@ -59,7 +106,7 @@ public class TagihanService {
         response.setNomorTagihan(t.getNomor());
         response.setTanggalTagihan(t.getTanggalTagihan());
         response.setTanggalJatuhTempo(t.getTanggalJatuhTempo());
-        kafkaSenderService.sendTagihanResponse(response);
+        return response;
     }
 
     public void periksaStatus(Tagihan tagihan) {
@@ -0,0 +1,63 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dto.UmurTagihan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Laporan umur tagihan (aging) : sisa tagihan yang sudah lewat jatuh tempo per jenis tagihan dan kode biaya,
+ * dalam kelompok 0-30, 31-60, 61-90 dan lebih dari 90 hari.
+ * Semua kelompok dihitung dalam satu query group by, dengan batas tanggal tiap kelompok dihitung di sini,
+ * sehingga database cukup membaca index (status_tagihan, tanggal_jatuh_tempo) satu kali.
+ */
+@Service
+public class UmurTagihanService {
+
+    static final String SQL_UMUR_TAGIHAN = "select j.nama, k.kode, count(*), " +
+            "sum(case when t.tanggal_jatuh_tempo >= ? then t.nilai_tagihan - t.jumlah_pembayaran else 0 end), " +
+            "sum(case when t.tanggal_jatuh_tempo < ? and t.tanggal_jatuh_tempo >= ? " +
+            "then t.nilai_tagihan - t.jumlah_pembayaran else 0 end), " +
+            "sum(case when t.tanggal_jatuh_tempo < ? and t.tanggal_jatuh_tempo >= ? " +
+            "then t.nilai_tagihan - t.jumlah_pembayaran else 0 end), " +
+            "sum(case when t.tanggal_jatuh_tempo < ? then t.nilai_tagihan - t.jumlah_pembayaran else 0 end), " +
+            "sum(t.nilai_tagihan - t.jumlah_pembayaran) " +
+            "from tagihan t " +
+            "inner join jenis_tagihan j on t.id_jenis_tagihan = j.id " +
+            "inner join kode_biaya k on t.id_kode_biaya = k.id " +
+            "where t.status_tagihan = 'AKTIF' and t.tanggal_jatuh_tempo <= ? " +
+            "and t.nilai_tagihan > t.jumlah_pembayaran " +
+            "group by j.kode, j.nama, k.kode " +
+            "order by j.kode, k.kode";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    public List<UmurTagihan> hitung(LocalDate tanggal) {
+        return jdbcTemplate.query(SQL_UMUR_TAGIHAN, (rs, i) -> {
+            UmurTagihan u = new UmurTagihan();
+            u.setJenisTagihan(rs.getString(1));
+            u.setKodeBiaya(rs.getString(2));
+            u.setJumlahTagihan(rs.getLong(3));
+            u.setSampai30Hari(rs.getBigDecimal(4));
+            u.setSampai60Hari(rs.getBigDecimal(5));
+            u.setSampai90Hari(rs.getBigDecimal(6));
+            u.setLebih90Hari(rs.getBigDecimal(7));
+            u.setTotal(rs.getBigDecimal(8));
+            return u;
+        }, parameter(tanggal));
+    }
+
+    /**
+     * Parameter {@link #SQL_UMUR_TAGIHAN}, jatuh tempo tepat di tanggal laporan dihitung 0 hari.
+     */
+    static Object[] parameter(LocalDate tanggal) {
+        Date batas30 = Date.valueOf(tanggal.minusDays(30));
+        Date batas60 = Date.valueOf(tanggal.minusDays(60));
+        Date batas90 = Date.valueOf(tanggal.minusDays(90));
+        return new Object[]{batas30, batas30, batas60, batas60, batas90, batas90, Date.valueOf(tanggal)};
+    }
+}
@@ -0,0 +1,145 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dao.PembayaranDao;
+import id.ac.tazkia.payment.virtualaccount.dao.RekapPembayaranHarianDao;
+import id.ac.tazkia.payment.virtualaccount.dao.TagihanDao;
+import id.ac.tazkia.payment.virtualaccount.dao.VirtualAccountDao;
+import id.ac.tazkia.payment.virtualaccount.dto.VaPayment;
+import id.ac.tazkia.payment.virtualaccount.entity.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+@Service @Transactional
+public class VaPaymentService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VaPaymentService.class);
+
+    @Autowired private TagihanDao tagihanDao;
+    @Autowired private VirtualAccountDao virtualAccountDao;
+    @Autowired private PembayaranDao pembayaranDao;
+    @Autowired private RekapPembayaranHarianDao rekapPembayaranHarianDao;
+    @Autowired private KafkaSenderService kafkaSenderService;
+    @Autowired private ReferensiPembayaranService referensiPembayaranService;
+    @Autowired private ReferensiDataService referensiDataService;
+    @Autowired private RekapTagihanService rekapTagihanService;
+
+    @PersistenceContext private EntityManager entityManager;
+
+    public void prosesPembayaran(VaPayment payment) {
+        if (referensiPembayaranService.sudahAda(payment.getBankId(), payment.getReference())) {
+            LOGGER.warn("Pembayaran bank {} dengan referensi {} sudah pernah diterima", payment.getBankId(), payment.getReference());
+            referensiPembayaranService.hitungKeputusan(ReferensiPembayaranService.DUPLIKAT_MEMORI);
+            return;
+        }
+
+        Optional<Bank> bank = referensiDataService.bank(payment.getBankId());
+        if (bank.isPresent() && pembayaranDao.existsByBankAndReferensi(bank.get(), payment.getReference())) {
+            LOGGER.warn("Pembayaran bank {} dengan referensi {} sudah pernah diterima", payment.getBankId(), payment.getReference());
+            referensiPembayaranService.hitungKeputusan(ReferensiPembayaranService.DUPLIKAT_DATABASE);
+            referensiPembayaranService.catat(payment.getBankId(), payment.getReference());
+            return;
+        }
+
+        Tagihan tagihan = tagihanDao.findByNomor(payment.getInvoiceNumber());
+        List<VirtualAccount> daftarVa = tagihan == null ? null
+                : virtualAccountDao.findByVaStatusAndTagihanNomor(VaStatus.AKTIF, tagihan.getNomor());
+
+        String alasan = alasanPembayaranDitolak(bank, tagihan, daftarVa, payment);
+        if (alasan != null) {
+            throw new PesanDitolakException(alasan);
+        }
+
+        Bank bankModel = bank.get();
+        VirtualAccount vaPembayaran = null;
+        for (VirtualAccount va : daftarVa) {
+            if (bankModel.getId().equalsIgnoreCase(va.getBank().getId())) {
+                vaPembayaran = va;
+            }
+        }
+        if (vaPembayaran == null) {
+            throw new PesanDitolakException("Virtual account untuk nomor tagihan " + tagihan.getNomor()
+                    + " dan bank " + bankModel.getNama() + " tidak terdaftar");
+        }
+
+        // pemeriksaan di atas memakai data yang mungkin sudah berubah, yang menentukan adalah update berikut
+        List<Object[]> hasil = tagihanDao.tambahPembayaran(tagihan.getId(), payment.getAmount());
+        if (hasil.isEmpty()) {
+            throw new PesanDitolakException("Pembayaran [" + payment.getAmount() + "] untuk tagihan nomor ["
+                    + tagihan.getNomor() + "] ditolak, tagihan sudah lunas atau pembayaran melebihi tagihan");
+        }
+
+        // tagihan tidak di-save lagi, nilainya cukup disamakan dengan hasil update untuk notifikasi
+        entityManager.detach(tagihan);
+
+        // posisi sebelum pembayaran dihitung dari hasil update, tagihan yang dibaca di atas mungkin sudah berubah
+        BigDecimal pembayaranSebelum = ((BigDecimal) hasil.get(0)[0]).subtract(payment.getAmount());
+        tagihan.setJumlahPembayaran(pembayaranSebelum);
+        tagihan.setStatusPembayaran(pembayaranSebelum.signum() == 0
+                ? StatusPembayaran.BELUM_DIBAYAR : StatusPembayaran.DIBAYAR_SEBAGIAN);
+        RekapTagihanService.Posisi sebelum = RekapTagihanService.posisi(tagihan);
+
+        tagihan.setJumlahPembayaran((BigDecimal) hasil.get(0)[0]);
+        tagihan.setStatusPembayaran(StatusPembayaran.valueOf((String) hasil.get(0)[1]));
+        tagihan.setStatusTagihan(StatusTagihan.valueOf((String) hasil.get(0)[2]));
+        rekapTagihanService.tagihanBerubah(sebelum, tagihan);
+
+        boolean lunas = StatusPembayaran.LUNAS.equals(tagihan.getStatusPembayaran());
+        virtualAccountDao.updateStatusSetelahPembayaran(tagihan.getId(), bankModel.getId(),
+                (lunas ? VaStatus.NONAKTIF : VaStatus.UPDATE).name(),
+                (lunas ? VaStatus.DELETE : VaStatus.UPDATE).name());
+
+        Pembayaran p = new Pembayaran();
+        p.setBank(bankModel);
+        p.setTagihan(tagihan);
+        p.setJenisPembayaran(JenisPembayaran.VIRTUAL_ACCOUNT);
+        p.setVirtualAccount(vaPembayaran);
+        p.setJumlah(payment.getAmount());
+        p.setReferensi(payment.getReference());
+        p.setKeterangan("Pembayaran melalui VA Bank " + bankModel.getNama() + " Nomor " + payment.getAccountNumber());
+        p.setWaktuTransaksi(payment.getPaymentTime());
+        pembayaranDao.save(p);
+        rekapPembayaranHarianDao.tambah(p.getWaktuTransaksi().toLocalDate(),
+                bankModel.getId(), tagihan.getJenisTagihan().getId(), p.getJumlah());
+        referensiPembayaranService.catat(bankModel.getId(), p.getReferensi());
+        referensiPembayaranService.hitungKeputusan(ReferensiPembayaranService.BARU);
+
+        LOGGER.info("Pembayaran melalui VA Bank {} Nomor {} telah diterima", bankModel.getNama(), payment.getAccountNumber());
+
+        kafkaSenderService.sendNotifikasiPembayaran(p);
+    }
+
+    private static boolean pembayaranMelebihiTagihan(BigDecimal akumulasiPembayaran, Tagihan tagihan) {
+        return akumulasiPembayaran.compareTo(tagihan.getNilaiTagihan()) > 0;
+    }
+
+    private String alasanPembayaranDitolak(Optional<Bank> bank, Tagihan tagihan, List<VirtualAccount> daftarVa, VaPayment payment) {
+        if (!bank.isPresent()) {
+            return "Bank dengan ID " + payment.getBankId() + " tidak terdaftar";
+        }
+        if (tagihan == null) {
+            return "Tagihan dengan nomor " + payment.getInvoiceNumber() + " tidak terdaftar";
+        }
+        if (StatusPembayaran.LUNAS.equals(tagihan.getStatusPembayaran())) {
+            return "Tagihan dengan nomor " + tagihan.getNomor() + " sudah lunas";
+        }
+        if (daftarVa == null || daftarVa.isEmpty()) {
+            return "Nomor tagihan " + tagihan.getNomor() + " tidak memiliki VA";
+        }
+
+        BigDecimal akumulasiPembayaran = tagihan.getJumlahPembayaran().add(payment.getAmount());
+        if (pembayaranMelebihiTagihan(akumulasiPembayaran, tagihan)) {
+            return "Nilai pembayaran [" + akumulasiPembayaran + "] lebih besar daripada nilai tagihan ["
+                    + tagihan.getNilaiTagihan() + "] nomor [" + tagihan.getNomor() + "]";
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,163 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dao.PendingVaRequestDao;
+import id.ac.tazkia.payment.virtualaccount.dao.PeriksaStatusTagihanDao;
+import id.ac.tazkia.payment.virtualaccount.dao.VirtualAccountDao;
+import id.ac.tazkia.payment.virtualaccount.dto.VaRequestStatus;
+import id.ac.tazkia.payment.virtualaccount.dto.VaResponse;
+import id.ac.tazkia.payment.virtualaccount.entity.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Service @Transactional
+public class VaResponseService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VaResponseService.class);
+
+    @Autowired private VirtualAccountDao virtualAccountDao;
+    @Autowired private PeriksaStatusTagihanDao periksaStatusTagihanDao;
+    @Autowired private PendingVaRequestDao pendingVaRequestDao;
+    @Autowired private MeterRegistry meterRegistry;
+
+    public void prosesResponse(VaResponse vaResponse) {
+        VirtualAccount va;
+        VaStatus requestType;
+        if (StringUtils.hasText(vaResponse.getRequestId())) {
+            PendingVaRequest request = getPendingVaRequest(vaResponse);
+            va = request == null ? null : request.getVirtualAccount();
+            requestType = request == null ? null : request.getRequestType();
+        } else {
+            va = getVirtualAccount(vaResponse);
+            requestType = vaResponse.getRequestType();
+        }
+
+        if (va == null) {
+            return;
+        }
+
+        if (VaStatus.INQUIRY.equals(requestType)) {
+            List<PeriksaStatusTagihan> daftarPeriksaStatus = periksaStatusTagihanDao.findByVirtualAccountAndStatusPemeriksaanTagihan(va, StatusPemeriksaanTagihan.BARU);
+            if (daftarPeriksaStatus == null || daftarPeriksaStatus.isEmpty()) {
+                LOGGER.warn("Pemeriksaan status untuk VA {} di bank {} tidak ada", va.getNomor(), va.getBank().getNama());
+                return;
+            }
+
+            for (PeriksaStatusTagihan p : daftarPeriksaStatus) {
+                p.setStatusPemeriksaanTagihan(
+                        VaRequestStatus.SUCCESS.equals(vaResponse.getRequestStatus())
+                        ? StatusPemeriksaanTagihan.SUKSES : StatusPemeriksaanTagihan.ERROR);
+            }
+        }
+
+        // sudah ada request yang lebih baru untuk VA ini, status VA tidak boleh ditimpa response lama
+        if (!VaStatus.SEDANG_PROSES.equals(va.getVaStatus()) || va.getRequestTerakhir() != requestType) {
+            simpanNomor(vaResponse, va, requestType);
+            return;
+        }
+
+        saveVA(vaResponse, va, requestType);
+    }
+
+    private PendingVaRequest getPendingVaRequest(VaResponse vaResponse) {
+        Optional<PendingVaRequest> pending = pendingVaRequestDao.findById(vaResponse.getRequestId());
+        if (!pending.isPresent()) {
+            LOGGER.warn("Request {} untuk tagihan dengan nomor {} sudah tidak berlaku",
+                    vaResponse.getRequestId(), vaResponse.getInvoiceNumber());
+            return null;
+        }
+
+        PendingVaRequest request = pending.get();
+        if (request.getWaktuResponse() != null) {
+            LOGGER.warn("Request {} untuk tagihan dengan nomor {} sudah pernah direspon",
+                    vaResponse.getRequestId(), vaResponse.getInvoiceNumber());
+            return null;
+        }
+
+        // baris pending dihapus oleh DispatchLaneService di node yang mengirim request
+        request.setWaktuResponse(LocalDateTime.now());
+        request.setSukses(VaRequestStatus.SUCCESS.equals(vaResponse.getRequestStatus()));
+        meterRegistry.timer("va.request.latency",
+                "bank", request.getVirtualAccount().getBank().getId(),
+                "type", request.getRequestType().name())
+                .record(Duration.between(request.getWaktuKirim(), request.getWaktuResponse()));
+        return request;
+    }
+
+    // untuk response dari gateway yang belum mengirimkan requestId
+    private VirtualAccount getVirtualAccount(VaResponse vaResponse) {
+        List<VirtualAccount> daftarVa = virtualAccountDao.findByVaStatusAndTagihanNomor(VaStatus.SEDANG_PROSES, vaResponse.getInvoiceNumber());
+        if (daftarVa == null || daftarVa.isEmpty()) {
+            LOGGER.warn("VA untuk tagihan dengan nomor {} tidak ditemukan", vaResponse.getInvoiceNumber());
+            return null;
+        }
+
+        for (VirtualAccount v : daftarVa) {
+            if (vaResponse.getBankId().equals(v.getBank().getId())) {
+                pendingVaRequestDao.tandaiDirespon(v.getId(), LocalDateTime.now(),
+                        VaRequestStatus.SUCCESS.equals(vaResponse.getRequestStatus()));
+                return v;
+            }
+        }
+
+        LOGGER.warn("VA untuk tagihan dengan nomor {} dan bank {} tidak ditemukan",
+                vaResponse.getInvoiceNumber(),
+                vaResponse.getBankId()
+        );
+        return null;
+    }
+
+    /**
+     * VA yang berhasil dibuat di bank tetap dicatat nomornya walaupun response-nya terlambat,
+     * supaya request UPDATE atau DELETE yang sudah mengantri bisa dikirim dengan nomor tersebut.
+     */
+    private void simpanNomor(VaResponse vaResponse, VirtualAccount va, VaStatus requestType) {
+        if (VaStatus.CREATE.equals(requestType)
+                && VaRequestStatus.SUCCESS.equals(vaResponse.getRequestStatus())
+                && !StringUtils.hasText(va.getNomor())
+                && StringUtils.hasText(vaResponse.getAccountNumber())) {
+            LOGGER.info("Response CREATE untuk tagihan {} terlambat, status VA {} dipertahankan, hanya nomor VA {} yang dicatat",
+                    vaResponse.getInvoiceNumber(), va.getVaStatus(), vaResponse.getAccountNumber());
+            va.setNomor(vaResponse.getAccountNumber());
+            virtualAccountDao.save(va);
+            return;
+        }
+
+        LOGGER.warn("Response {} {} untuk tagihan {} diabaikan, status VA sudah {} dengan request terakhir {}",
+                requestType, vaResponse.getRequestStatus(), vaResponse.getInvoiceNumber(),
+                va.getVaStatus(), va.getRequestTerakhir());
+    }
+
+    private void saveVA(VaResponse vaResponse, VirtualAccount va, VaStatus requestType) {
+        if (VaRequestStatus.ERROR.equals(vaResponse.getRequestStatus())) {
+            // jadwal percobaan ulang ditentukan oleh VaRetryService
+            va.setVaStatus(VaStatus.ERROR);
+            va.setJadwalPercobaan(null);
+            va.setKeteranganGagal("Response ERROR dari bank untuk request " + requestType);
+            virtualAccountDao.save(va);
+            return;
+        }
+
+        va.setJumlahPercobaan(0);
+        va.setJadwalPercobaan(null);
+        va.setKeteranganGagal(null);
+
+        if (VaStatus.DELETE.equals(requestType)) {
+            va.setVaStatus(VaStatus.NONAKTIF);
+            virtualAccountDao.save(va);
+            return;
+        }
+
+        va.setNomor(vaResponse.getAccountNumber());
+        va.setVaStatus(VaStatus.AKTIF);
+        virtualAccountDao.save(va);
+    }
+}
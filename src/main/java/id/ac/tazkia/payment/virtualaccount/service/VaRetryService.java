@@ -0,0 +1,64 @@
+package id.ac.tazkia.payment.virtualaccount.service;
+
+import id.ac.tazkia.payment.virtualaccount.dao.PendingVaRequestDao;
+import id.ac.tazkia.payment.virtualaccount.dao.VirtualAccountDao;
+import id.ac.tazkia.payment.virtualaccount.entity.Bank;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Menyapu VA yang tidak mendapat response dan VA yang ERROR.
+ * VA SEDANG_PROSES yang melewati batas waktu response bank dijadikan ERROR,
+ * VA ERROR dijadwalkan ulang dengan jeda eksponensial yang diberi jitter,
+ * dan setelah jumlah percobaan maksimum tercapai VA dihentikan di status GAGAL.
+ * Pending request yang tidak pernah direspon dan VA-nya sudah tidak menunggu response juga dihapus.
+ * Setiap langkah hanya mengubah paling banyak satu batch per jalan, melalui index status.
+ */
+@Service @Transactional
+public class VaRetryService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VaRetryService.class);
+
+    @Value("${va.retry.batch-size}") private Integer batchSize;
+    @Value("${va.retry.maksimum}") private Integer maksimumPercobaan;
+    @Value("${va.retry.jeda.awal}") private Integer jedaAwal;
+    @Value("${va.retry.jeda.maksimum}") private Integer jedaMaksimum;
+
+    @Autowired private VirtualAccountDao virtualAccountDao;
+    @Autowired private PendingVaRequestDao pendingVaRequestDao;
+    @Autowired private ReferensiDataService referensiDataService;
+    @Autowired private ClusterLeaseService clusterLeaseService;
+
+    @Scheduled(fixedDelayString = "${va.retry.interval}")
+    public void sapuVa() {
+        List<Integer> daftarShard = clusterLeaseService.getDaftarShard();
+        if (daftarShard.isEmpty()) {
+            return;
+        }
+        Integer jumlahShard = clusterLeaseService.getJumlahShard();
+
+        int timeout = 0;
+        for (Bank bank : referensiDataService.daftarBank()) {
+            timeout += virtualAccountDao.tandaiTimeout(bank.getId(), bank.getBatasWaktuRespon(),
+                    "Tidak ada response dari bank dalam " + bank.getBatasWaktuRespon() + " detik",
+                    jumlahShard, daftarShard, batchSize);
+        }
+
+        int dihentikan = virtualAccountDao.hentikanPercobaan(maksimumPercobaan, jumlahShard, daftarShard, batchSize);
+        int dijadwalkan = virtualAccountDao.jadwalkanPercobaan(maksimumPercobaan, jedaAwal, jedaMaksimum,
+                jumlahShard, daftarShard, batchSize);
+        int diulang = virtualAccountDao.kembalikanKeAntrian(jumlahShard, daftarShard, batchSize);
+        int pendingDihapus = pendingVaRequestDao.hapusTanpaResponse(jumlahShard, daftarShard, batchSize);
+
+        if (timeout + dihentikan + dijadwalkan + diulang + pendingDihapus > 0) {
+            LOGGER.info("Sweeper VA : {} timeout, {} dijadwalkan ulang, {} dikirim ulang, {} gagal, {} pending request dihapus",
+                    timeout, dijadwalkan, diulang, dihentikan, pendingDihapus);
+        }
+    }
+}
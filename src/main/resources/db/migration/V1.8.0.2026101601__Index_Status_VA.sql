@@ -0,0 +1 @@
+create index virtual_account_va_status_idx on virtual_account(va_status, id);
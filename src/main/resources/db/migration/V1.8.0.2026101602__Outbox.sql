@@ -0,0 +1,10 @@
+create sequence outbox_id_seq;
+
+create table outbox (
+  id           BIGINT,
+  topic        VARCHAR(255) NOT NULL,
+  kunci        VARCHAR(255),
+  pesan        TEXT         NOT NULL,
+  waktu_dibuat TIMESTAMP    NOT NULL DEFAULT NOW(),
+  PRIMARY KEY (id)
+);
@@ -0,0 +1,2 @@
+drop index virtual_account_va_status_idx;
+create index virtual_account_va_status_idx on virtual_account(va_status, id_bank, id);
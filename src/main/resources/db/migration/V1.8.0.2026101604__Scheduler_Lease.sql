@@ -0,0 +1,18 @@
+create table cluster_node (
+  id                 VARCHAR(255),
+  heartbeat_terakhir TIMESTAMP NOT NULL,
+  PRIMARY KEY (id)
+);
+
+create table scheduler_lease (
+  shard          INTEGER,
+  id_node        VARCHAR(255),
+  berlaku_sampai TIMESTAMP,
+  PRIMARY KEY (shard)
+);
+
+create index scheduler_lease_node_idx on scheduler_lease(id_node);
+
+-- jumlah shard ditentukan dari jumlah baris di tabel ini
+insert into scheduler_lease (shard)
+  select generate_series(0, 15);
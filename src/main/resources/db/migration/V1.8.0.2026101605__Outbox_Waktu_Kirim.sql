@@ -0,0 +1,2 @@
+alter table outbox
+  add column waktu_kirim TIMESTAMP;
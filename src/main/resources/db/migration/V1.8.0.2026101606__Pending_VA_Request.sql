@@ -0,0 +1,10 @@
+create table pending_va_request (
+  id                 VARCHAR(36),
+  id_virtual_account VARCHAR(36)  NOT NULL,
+  request_type       VARCHAR(255) NOT NULL,
+  waktu_kirim        TIMESTAMP    NOT NULL,
+  PRIMARY KEY (id),
+  FOREIGN KEY (id_virtual_account) REFERENCES virtual_account (id)
+);
+
+create index pending_va_request_va_idx on pending_va_request(id_virtual_account);
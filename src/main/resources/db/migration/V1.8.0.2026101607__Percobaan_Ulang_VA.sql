@@ -0,0 +1,20 @@
+alter table virtual_account
+  add column request_terakhir VARCHAR(255);
+alter table virtual_account
+  add column waktu_request_terakhir TIMESTAMP;
+alter table virtual_account
+  add column jumlah_percobaan INT NOT NULL DEFAULT 0;
+alter table virtual_account
+  add column jadwal_percobaan TIMESTAMP;
+alter table virtual_account
+  add column keterangan_gagal VARCHAR(255);
+
+-- VA yang sudah menunggu response sebelum kolom ini ada, dihitung mulai sekarang
+update virtual_account set waktu_request_terakhir = now()
+where va_status = 'SEDANG_PROSES';
+
+alter table bank
+  add column batas_waktu_respon INT NOT NULL DEFAULT 300;
+
+create index virtual_account_timeout_idx on virtual_account(va_status, id_bank, waktu_request_terakhir);
+create index virtual_account_jadwal_percobaan_idx on virtual_account(va_status, jadwal_percobaan);
@@ -0,0 +1,14 @@
+-- pembayaran ganda yang sudah terlanjur tercatat tidak diubah, hanya ditandai supaya bisa diperiksa manual
+alter table pembayaran
+  add column duplikat_lama BOOLEAN NOT NULL DEFAULT FALSE;
+
+update pembayaran p set duplikat_lama = true
+where exists (
+  select 1 from pembayaran d
+  where d.id_bank = p.id_bank and d.referensi = p.referensi
+  and (d.waktu_transaksi, d.id) < (p.waktu_transaksi, p.id)
+);
+
+-- pembayaran pertama dari setiap referensi ganda tetap ikut dijaga index
+create unique index pembayaran_bank_referensi_idx on pembayaran(id_bank, referensi)
+  where not duplikat_lama;
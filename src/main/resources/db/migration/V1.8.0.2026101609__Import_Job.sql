@@ -0,0 +1,36 @@
+create table import_job (
+  id                     VARCHAR(36),
+  jenis                  VARCHAR(255) NOT NULL,
+  nama_file              VARCHAR(255),
+  lokasi_file            VARCHAR(255) NOT NULL,
+  pakai_header           BOOLEAN      NOT NULL,
+  id_jenis_tagihan       VARCHAR(36),
+  id_kode_biaya          VARCHAR(36),
+  status                 VARCHAR(255) NOT NULL,
+  id_node                VARCHAR(255) NOT NULL,
+  perkiraan_jumlah_baris INTEGER      NOT NULL,
+  baris_terakhir         INTEGER      NOT NULL,
+  jumlah_error           INTEGER      NOT NULL,
+  keterangan             VARCHAR(255),
+  waktu_dibuat           TIMESTAMP    NOT NULL,
+  waktu_mulai            TIMESTAMP,
+  waktu_selesai          TIMESTAMP,
+  heartbeat_terakhir     TIMESTAMP    NOT NULL,
+  PRIMARY KEY (id),
+  FOREIGN KEY (id_jenis_tagihan) REFERENCES jenis_tagihan (id),
+  FOREIGN KEY (id_kode_biaya) REFERENCES kode_biaya (id)
+);
+
+create index import_job_status_idx on import_job(status);
+
+create table import_job_error (
+  id            VARCHAR(36),
+  id_import_job VARCHAR(36)  NOT NULL,
+  baris         INTEGER      NOT NULL,
+  keterangan    VARCHAR(255) NOT NULL,
+  data          VARCHAR,
+  PRIMARY KEY (id),
+  FOREIGN KEY (id_import_job) REFERENCES import_job (id)
+);
+
+create index import_job_error_job_idx on import_job_error(id_import_job, baris);
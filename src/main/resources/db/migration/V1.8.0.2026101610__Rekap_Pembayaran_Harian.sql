@@ -0,0 +1,17 @@
+-- diperbarui di transaksi yang sama dengan insert pembayaran
+create table rekap_pembayaran_harian (
+  tanggal          DATE           NOT NULL,
+  id_bank          VARCHAR(36)    NOT NULL,
+  id_jenis_tagihan VARCHAR(36)    NOT NULL,
+  jumlah           BIGINT         NOT NULL,
+  nilai            DECIMAL(19, 2) NOT NULL,
+  PRIMARY KEY (tanggal, id_bank, id_jenis_tagihan),
+  FOREIGN KEY (id_jenis_tagihan) REFERENCES jenis_tagihan (id)
+);
+
+-- pembayaran lama yang tidak melalui bank dicatat dengan id_bank '-'
+insert into rekap_pembayaran_harian (tanggal, id_bank, id_jenis_tagihan, jumlah, nilai)
+  select cast(p.waktu_transaksi as date), coalesce(p.id_bank, '-'), t.id_jenis_tagihan, count(*), sum(p.jumlah)
+  from pembayaran p
+    inner join tagihan t on p.id_tagihan = t.id
+  group by cast(p.waktu_transaksi as date), coalesce(p.id_bank, '-'), t.id_jenis_tagihan;
@@ -0,0 +1,5 @@
+-- laporan umur tagihan membaca tagihan AKTIF yang sudah lewat jatuh tempo dengan range scan index ini
+create index tagihan_status_jatuh_tempo_idx on tagihan(status_tagihan, tanggal_jatuh_tempo);
+
+-- query per status_tagihan saja sudah dilayani kolom pertama index di atas
+drop index tagihan_status_idx;
@@ -0,0 +1,2 @@
+-- rekonsiliasi mutasi bank membaca semua pembayaran dalam satu periode
+create index pembayaran_waktu_transaksi_idx on pembayaran(waktu_transaksi);
@@ -0,0 +1,2 @@
+-- relay hanya mengambil message paling awal untuk setiap kunci
+create index outbox_kunci_id_idx on outbox(kunci, id);
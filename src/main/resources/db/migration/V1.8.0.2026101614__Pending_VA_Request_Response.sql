@@ -0,0 +1,7 @@
+-- hasil response disimpan dulu supaya bisa dibaca node yang mengirim request
+alter table pending_va_request
+  add column waktu_response TIMESTAMP,
+  add column sukses BOOLEAN;
+
+create index pending_va_request_response_idx on pending_va_request(waktu_response)
+  where waktu_response is not null;
@@ -0,0 +1,9 @@
+-- urutan pengiriman dijaga per topic dan kunci urutan,
+-- yang biasanya sama dengan kunci message tetapi bisa lebih sempit, misalnya VA request per bank
+alter table outbox
+  add column kunci_urutan VARCHAR(255);
+
+update outbox set kunci_urutan = kunci;
+
+drop index outbox_kunci_id_idx;
+create index outbox_topic_kunci_urutan_id_idx on outbox(topic, kunci_urutan, id);
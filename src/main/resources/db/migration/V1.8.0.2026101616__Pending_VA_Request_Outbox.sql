@@ -0,0 +1,5 @@
+-- waktu kirim diisi ulang saat relay outbox benar-benar mengirim request
+alter table pending_va_request
+  add column id_outbox BIGINT;
+
+create index pending_va_request_outbox_idx on pending_va_request(id_outbox);
@@ -0,0 +1,3 @@
+-- dipakai optimistic locking, supaya save entity tagihan tidak menimpa pembayaran yang masuk bersamaan
+alter table tagihan
+  add column version BIGINT NOT NULL DEFAULT 0;
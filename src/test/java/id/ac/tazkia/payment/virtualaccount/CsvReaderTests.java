@@ -0,0 +1,34 @@
+package id.ac.tazkia.payment.virtualaccount;
+
+import id.ac.tazkia.payment.virtualaccount.helper.CsvReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class CsvReaderTests {
+
+    @Test
+    public void testBacaRecord() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader(
+                "2018001,SPP,1500000,2018-09-30\r\n" +
+                "\"2018002\",\"Biaya \"\"praktikum\"\", lab\",250000,2018-09-30\n" +
+                "2018003,\"dua\nbaris\",,2018-09-30"));
+
+        Assert.assertArrayEquals(new String[]{"2018001", "SPP", "1500000", "2018-09-30"}, reader.bacaRecord());
+        Assert.assertEquals(1, reader.getNomorRecord());
+        Assert.assertEquals("2018001,SPP,1500000,2018-09-30", reader.getRecordMentah());
+
+        Assert.assertArrayEquals(new String[]{"2018002", "Biaya \"praktikum\", lab", "250000", "2018-09-30"},
+                reader.bacaRecord());
+        Assert.assertArrayEquals(new String[]{"2018003", "dua\nbaris", "", "2018-09-30"}, reader.bacaRecord());
+        Assert.assertEquals(3, reader.getNomorRecord());
+        Assert.assertNull(reader.bacaRecord());
+    }
+
+    @Test(expected = IOException.class)
+    public void testKutipTidakDitutup() throws Exception {
+        new CsvReader(new StringReader("2018001,\"SPP,1500000")).bacaRecord();
+    }
+}
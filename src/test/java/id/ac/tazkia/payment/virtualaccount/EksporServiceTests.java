@@ -0,0 +1,85 @@
+package id.ac.tazkia.payment.virtualaccount;
+
+import id.ac.tazkia.payment.virtualaccount.dao.JenisTagihanDao;
+import id.ac.tazkia.payment.virtualaccount.dto.FormatEkspor;
+import id.ac.tazkia.payment.virtualaccount.dto.UmurTagihan;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
+import id.ac.tazkia.payment.virtualaccount.service.EksporService;
+import id.ac.tazkia.payment.virtualaccount.service.UmurTagihanService;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Membaca data dari database yang dikonfigurasi.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class EksporServiceTests {
+
+    @Autowired private JenisTagihanDao jenisTagihanDao;
+    @Autowired private EksporService eksporService;
+    @Autowired private UmurTagihanService umurTagihanService;
+
+    @Test
+    public void eksporTagihan() throws Exception {
+        JenisTagihan jenis = jenisTagihanDao.findByAktifOrderByKode(true).get(0);
+        LocalDate mulai = LocalDate.now().minusYears(1);
+        LocalDate sampai = LocalDate.now();
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        long mulaiCsv = System.nanoTime();
+        long jumlahCsv = eksporService.eksporTagihan(jenis, false, mulai, sampai, FormatEkspor.CSV, csv);
+        cetak("CSV", jumlahCsv, csv.size(), System.nanoTime() - mulaiCsv);
+
+        ByteArrayOutputStream jsonl = new ByteArrayOutputStream();
+        long mulaiJsonl = System.nanoTime();
+        long jumlahJsonl = eksporService.eksporTagihan(jenis, false, mulai, sampai, FormatEkspor.JSONL, jsonl);
+        cetak("JSONL", jumlahJsonl, jsonl.size(), System.nanoTime() - mulaiJsonl);
+
+        Assert.assertEquals(jumlahCsv, jumlahJsonl);
+        // header, data dan baris jumlah
+        Assert.assertEquals(jumlahCsv + 2, jumlahBaris(csv));
+        Assert.assertEquals(jumlahJsonl, jumlahBaris(jsonl));
+    }
+
+    @Test
+    public void eksporUmurTagihan() throws Exception {
+        LocalDate tanggal = LocalDate.now();
+
+        long mulai = System.nanoTime();
+        List<UmurTagihan> daftarUmur = umurTagihanService.hitung(tanggal);
+        System.out.println("Umur tagihan : " + daftarUmur.size() + " baris dalam "
+                + (System.nanoTime() - mulai) / 1000000 + " ms");
+        for (UmurTagihan u : daftarUmur) {
+            Assert.assertEquals(0, u.getTotal().compareTo(u.getSampai30Hari().add(u.getSampai60Hari())
+                    .add(u.getSampai90Hari()).add(u.getLebih90Hari())));
+        }
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        long mulaiCsv = System.nanoTime();
+        long jumlahCsv = eksporService.eksporUmurTagihan(tanggal, FormatEkspor.CSV, csv);
+        cetak("CSV", jumlahCsv, csv.size(), System.nanoTime() - mulaiCsv);
+
+        Assert.assertEquals(daftarUmur.size(), jumlahCsv);
+        Assert.assertEquals(jumlahCsv + 2, jumlahBaris(csv));
+    }
+
+    private static long jumlahBaris(ByteArrayOutputStream output) {
+        String isi = new String(output.toByteArray(), StandardCharsets.UTF_8);
+        return isi.isEmpty() ? 0 : isi.split("\n").length;
+    }
+
+    private void cetak(String format, long jumlah, int ukuran, long durasi) {
+        System.out.println(String.format("Ekspor %-5s : %7d baris, %9d byte dalam %6d ms",
+                format, jumlah, ukuran, durasi / 1000000));
+    }
+}
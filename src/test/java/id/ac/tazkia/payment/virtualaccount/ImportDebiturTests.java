@@ -0,0 +1,79 @@
+package id.ac.tazkia.payment.virtualaccount;
+
+import id.ac.tazkia.payment.virtualaccount.dao.DebiturDao;
+import id.ac.tazkia.payment.virtualaccount.dto.HasilImport;
+import id.ac.tazkia.payment.virtualaccount.dto.UploadError;
+import id.ac.tazkia.payment.virtualaccount.entity.Debitur;
+import id.ac.tazkia.payment.virtualaccount.service.ImportDebiturService;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Import 50.000 baris debitur, termasuk nomor yang dobel di dalam file dan email yang salah format.
+ * Menulis data ke database yang dikonfigurasi, nomor debitur memakai prefix unik per run.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ImportDebiturTests {
+    private static final int JUMLAH_BARIS = 50000;
+    private static final int SETIAP_DOBEL = 500;
+    private static final int SETIAP_EMAIL_SALAH = 1000;
+
+    @Autowired private DebiturDao debiturDao;
+    @Autowired private ImportDebiturService importDebiturService;
+
+    @Test
+    public void import50RibuBaris() {
+        String prefix = "IMP-" + System.currentTimeMillis() + "-";
+        int jumlahDobel = 0;
+        int jumlahEmailSalah = 0;
+
+        StringBuilder file = new StringBuilder("nomor,nama,email,no_hp\n");
+        for (int i = 1; i <= JUMLAH_BARIS; i++) {
+            if (i % SETIAP_DOBEL == 0) {
+                // nomor baris sebelumnya dipakai lagi
+                file.append(prefix).append(i - 1).append(",Debitur Dobel ").append(i).append(",,\n");
+                jumlahDobel++;
+            } else if (i % SETIAP_EMAIL_SALAH == 1) {
+                file.append(prefix).append(i).append(",\"Debitur, Email Salah\",bukan-email,08123\n");
+                jumlahEmailSalah++;
+            } else {
+                file.append(prefix).append(i).append(",Debitur Import ").append(i)
+                        .append(",debitur").append(i).append("@example.com,0812").append(i).append("\n");
+            }
+        }
+        byte[] isi = file.toString().getBytes(StandardCharsets.UTF_8);
+
+        long mulai = System.nanoTime();
+        HasilImport hasil = importDebiturService.importDebitur(new ByteArrayInputStream(isi), true);
+        long durasi = System.nanoTime() - mulai;
+        System.out.println(String.format("Import debitur : %d baris, %d sukses dalam %d ms, %.1f baris/detik",
+                hasil.getJumlahBaris(), hasil.getJumlahSukses(), durasi / 1000000,
+                hasil.getJumlahSukses() * 1e9 / durasi));
+
+        Assert.assertEquals(Integer.valueOf(JUMLAH_BARIS), hasil.getJumlahBaris());
+        Assert.assertEquals(jumlahDobel + jumlahEmailSalah, hasil.getErrors().size());
+        Assert.assertEquals(Integer.valueOf(JUMLAH_BARIS - jumlahDobel - jumlahEmailSalah),
+                hasil.getJumlahSukses());
+        for (UploadError error : hasil.getErrors()) {
+            Assert.assertTrue(error.getKeterangan().contains("sudah digunakan")
+                    || error.getKeterangan().equals("Format email salah"));
+        }
+
+        Debitur d = debiturDao.findByNomorDebitur(prefix + 2);
+        Assert.assertNotNull(d);
+        Assert.assertEquals("debitur2@example.com", d.getEmail());
+        Assert.assertEquals("08122", d.getNoHp());
+
+        // import ulang file yang sama, semua nomor yang valid sudah terdaftar
+        HasilImport ulang = importDebiturService.importDebitur(new ByteArrayInputStream(isi), true);
+        Assert.assertEquals(Integer.valueOf(0), ulang.getJumlahSukses());
+    }
+}
@@ -0,0 +1,99 @@
+package id.ac.tazkia.payment.virtualaccount;
+
+import id.ac.tazkia.payment.virtualaccount.dao.DebiturDao;
+import id.ac.tazkia.payment.virtualaccount.dao.ImportJobDao;
+import id.ac.tazkia.payment.virtualaccount.entity.ImportJob;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisImport;
+import id.ac.tazkia.payment.virtualaccount.entity.StatusImport;
+import id.ac.tazkia.payment.virtualaccount.service.ImportJobService;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Menulis data ke database yang dikonfigurasi, nomor debitur memakai prefix unik per run.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ImportJobTests {
+    private static final int JUMLAH_BARIS = 2500;
+
+    @Value("${import.job.lokasi}") private String lokasi;
+    @Value("${import.job.ttl}") private Integer ttl;
+
+    @Autowired private DebiturDao debiturDao;
+    @Autowired private ImportJobDao importJobDao;
+    @Autowired private ImportJobService importJobService;
+
+    @Test
+    public void importDiBackground() throws Exception {
+        String prefix = "JOB-" + System.currentTimeMillis() + "-";
+        ImportJob job = importJobService.kirimDebitur(
+                new ByteArrayInputStream(buatFile(prefix)), "debitur.csv", false);
+
+        job = tungguSelesai(job.getId());
+        Assert.assertEquals(StatusImport.SELESAI, job.getStatus());
+        Assert.assertEquals(Integer.valueOf(JUMLAH_BARIS), job.getBarisTerakhir());
+        Assert.assertEquals(Integer.valueOf(0), job.getJumlahError());
+        Assert.assertFalse(Files.exists(Paths.get(job.getLokasiFile())));
+    }
+
+    @Test
+    public void lanjutkanDariCheckpoint() throws Exception {
+        // job node lain yang berhenti setelah 1000 baris di-commit
+        String prefix = "JOB-" + System.currentTimeMillis() + "-";
+        ImportJob job = new ImportJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setJenis(JenisImport.DEBITUR);
+        job.setNamaFile("debitur.csv");
+        Path file = Paths.get(lokasi, job.getId() + ".csv");
+        Files.write(file, buatFile(prefix));
+        job.setLokasiFile(file.toString());
+        job.setStatus(StatusImport.PROSES);
+        job.setIdNode("node-mati");
+        job.setPerkiraanJumlahBaris(JUMLAH_BARIS);
+        job.setBarisTerakhir(1000);
+        job.setHeartbeatTerakhir(LocalDateTime.now().minusSeconds(ttl + 1));
+        importJobDao.save(job);
+
+        importJobService.periksaAntrian();
+        job = tungguSelesai(job.getId());
+
+        Assert.assertEquals(StatusImport.SELESAI, job.getStatus());
+        Assert.assertEquals(Integer.valueOf(JUMLAH_BARIS), job.getBarisTerakhir());
+        Assert.assertNull(debiturDao.findByNomorDebitur(prefix + 1000));
+        Assert.assertNotNull(debiturDao.findByNomorDebitur(prefix + 1001));
+        Assert.assertNotNull(debiturDao.findByNomorDebitur(prefix + JUMLAH_BARIS));
+    }
+
+    private ImportJob tungguSelesai(String id) throws InterruptedException {
+        for (int i = 0; i < 600; i++) {
+            ImportJob job = importJobDao.findById(id).get();
+            if (!job.isBerjalan()) {
+                return job;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Import job " + id + " tidak selesai");
+    }
+
+    private static byte[] buatFile(String prefix) {
+        StringBuilder file = new StringBuilder();
+        for (int i = 1; i <= JUMLAH_BARIS; i++) {
+            file.append(prefix).append(i).append(",Debitur Job ").append(i).append(",,\n");
+        }
+        return file.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+package id.ac.tazkia.payment.virtualaccount;
+
+import id.ac.tazkia.payment.virtualaccount.dao.DebiturDao;
+import id.ac.tazkia.payment.virtualaccount.dao.JenisTagihanDao;
+import id.ac.tazkia.payment.virtualaccount.dao.KodeBiayaDao;
+import id.ac.tazkia.payment.virtualaccount.dto.HasilImport;
+import id.ac.tazkia.payment.virtualaccount.entity.Debitur;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
+import id.ac.tazkia.payment.virtualaccount.entity.KodeBiaya;
+import id.ac.tazkia.payment.virtualaccount.entity.Tagihan;
+import id.ac.tazkia.payment.virtualaccount.service.ImportTagihanService;
+import id.ac.tazkia.payment.virtualaccount.service.TagihanService;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Membandingkan upload tagihan cara lama (split per baris, query debitur dan saveTagihan per baris)
+ * dengan ImportTagihanService. Menulis data ke database yang dikonfigurasi.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ImportTagihanBenchmarkTests {
+    private static final int JUMLAH_BARIS = 2000;
+    private static final String PREFIX_DEBITUR = "BENCH-";
+
+    @Autowired private DebiturDao debiturDao;
+    @Autowired private JenisTagihanDao jenisTagihanDao;
+    @Autowired private KodeBiayaDao kodeBiayaDao;
+    @Autowired private TagihanService tagihanService;
+    @Autowired private ImportTagihanService importTagihanService;
+
+    @Test
+    public void bandingkanImportTagihan() throws Exception {
+        siapkanDebitur();
+        JenisTagihan jenisTagihan = jenisTagihanDao.findByAktifOrderByKode(true).get(0);
+        KodeBiaya kodeBiaya = kodeBiayaDao.findAll().iterator().next();
+        byte[] file = buatFile();
+
+        long mulai = System.nanoTime();
+        int suksesLama = importCaraLama(jenisTagihan, kodeBiaya, file);
+        cetak("Cara lama", suksesLama, System.nanoTime() - mulai);
+
+        mulai = System.nanoTime();
+        HasilImport hasil = importTagihanService.importTagihan(jenisTagihan, kodeBiaya,
+                new ByteArrayInputStream(file), false);
+        cetak("ImportTagihanService", hasil.getJumlahSukses(), System.nanoTime() - mulai);
+
+        Assert.assertEquals(JUMLAH_BARIS, suksesLama);
+        Assert.assertEquals(Integer.valueOf(JUMLAH_BARIS), hasil.getJumlahSukses());
+    }
+
+    private int importCaraLama(JenisTagihan jenisTagihan, KodeBiaya kodeBiaya, byte[] file) throws Exception {
+        int sukses = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(file)));
+        String content;
+        while ((content = reader.readLine()) != null) {
+            String[] data = content.split(",");
+            Debitur d = debiturDao.findByNomorDebitur(data[0]);
+            if (d == null) {
+                continue;
+            }
+            Tagihan t = new Tagihan();
+            t.setJenisTagihan(jenisTagihan);
+            t.setKodeBiaya(kodeBiaya);
+            t.setDebitur(d);
+            t.setKeterangan(data[1]);
+            t.setNilaiTagihan(new BigDecimal(data[2]));
+            t.setTanggalJatuhTempo(LocalDate.parse(data[3], DateTimeFormatter.ISO_LOCAL_DATE));
+            tagihanService.saveTagihan(t);
+            sukses++;
+        }
+        return sukses;
+    }
+
+    private void siapkanDebitur() {
+        List<Debitur> baru = new ArrayList<>();
+        for (int i = 0; i < JUMLAH_BARIS; i++) {
+            String nomor = PREFIX_DEBITUR + i;
+            if (debiturDao.findByNomorDebitur(nomor) == null) {
+                Debitur d = new Debitur();
+                d.setNomorDebitur(nomor);
+                d.setNama("Debitur Benchmark " + i);
+                baru.add(d);
+            }
+        }
+        debiturDao.saveAll(baru);
+    }
+
+    private byte[] buatFile() {
+        StringBuilder file = new StringBuilder();
+        String jatuhTempo = LocalDate.now().plusMonths(1).format(DateTimeFormatter.ISO_LOCAL_DATE);
+        for (int i = 0; i < JUMLAH_BARIS; i++) {
+            file.append(PREFIX_DEBITUR).append(i).append(",Benchmark import ").append(i)
+                    .append(",").append(100000 + i).append(",").append(jatuhTempo).append("\n");
+        }
+        return file.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void cetak(String nama, int jumlah, long durasi) {
+        System.out.println(String.format("%-22s : %5d baris dalam %6d ms, %8.1f baris/detik",
+                nama, jumlah, durasi / 1000000, jumlah * 1e9 / durasi));
+    }
+}
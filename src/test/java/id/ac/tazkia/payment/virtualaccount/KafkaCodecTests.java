@@ -0,0 +1,87 @@
+package id.ac.tazkia.payment.virtualaccount;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import id.ac.tazkia.payment.virtualaccount.dto.VaPayment;
+import id.ac.tazkia.payment.virtualaccount.helper.KafkaCodec;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+public class KafkaCodecTests {
+    private static final int JUMLAH_PESAN = 200000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+    private final KafkaCodec kafkaCodec = new KafkaCodec(objectMapper);
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        VaPayment payment = contohPembayaran();
+        String json = kafkaCodec.tulis(payment);
+        System.out.println(json);
+
+        Assert.assertFalse(json.contains("\n"));
+        Assert.assertEquals(payment, kafkaCodec.baca(json.getBytes(StandardCharsets.UTF_8), VaPayment.class));
+        Assert.assertEquals(payment, kafkaCodec.baca(kafkaCodec.tulisBytes(payment), VaPayment.class));
+    }
+
+    // benchmark, dijalankan manual karena tidak ada yang diperiksa
+    @Test @Ignore
+    public void testBandingkanObjectMapper() throws Exception {
+        byte[] pesan = objectMapper.writeValueAsBytes(contohPembayaran());
+
+        // pemanasan JIT
+        for (int i = 0; i < JUMLAH_PESAN / 10; i++) {
+            objectMapper.writeValueAsString(objectMapper.readValue(new String(pesan, StandardCharsets.UTF_8), VaPayment.class));
+            kafkaCodec.tulis(kafkaCodec.baca(pesan, VaPayment.class));
+        }
+
+        long alokasi = alokasiThread();
+        long mulai = System.nanoTime();
+        for (int i = 0; i < JUMLAH_PESAN; i++) {
+            objectMapper.writeValueAsString(objectMapper.readValue(new String(pesan, StandardCharsets.UTF_8), VaPayment.class));
+        }
+        cetak("ObjectMapper + String", System.nanoTime() - mulai, alokasiThread() - alokasi);
+
+        alokasi = alokasiThread();
+        mulai = System.nanoTime();
+        for (int i = 0; i < JUMLAH_PESAN; i++) {
+            kafkaCodec.tulis(kafkaCodec.baca(pesan, VaPayment.class));
+        }
+        cetak("KafkaCodec + byte[]", System.nanoTime() - mulai, alokasiThread() - alokasi);
+    }
+
+    private VaPayment contohPembayaran() {
+        VaPayment payment = new VaPayment();
+        payment.setBankId("bni");
+        payment.setInvoiceNumber("2026101600000123");
+        payment.setAccountNumber("9881234567890123");
+        payment.setReference("REF-0001234567");
+        payment.setAmount(new BigDecimal("1500000.00"));
+        payment.setCumulativeAmount(new BigDecimal("1500000.00"));
+        payment.setPaymentTime(LocalDateTime.of(2026, 10, 16, 9, 30, 15));
+        return payment;
+    }
+
+    private void cetak(String nama, long durasi, long alokasi) {
+        System.out.println(String.format("%-22s : %6d ns/pesan, %6d byte/pesan",
+                nama, durasi / JUMLAH_PESAN, alokasi / JUMLAH_PESAN));
+    }
+
+    private long alokasiThread() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,105 @@
+package id.ac.tazkia.payment.virtualaccount;
+
+import id.ac.tazkia.payment.virtualaccount.dao.DebiturDao;
+import id.ac.tazkia.payment.virtualaccount.dao.JenisTagihanDao;
+import id.ac.tazkia.payment.virtualaccount.dao.KodeBiayaDao;
+import id.ac.tazkia.payment.virtualaccount.dao.TagihanDao;
+import id.ac.tazkia.payment.virtualaccount.dto.LaporanTagihan;
+import id.ac.tazkia.payment.virtualaccount.dto.RekapTagihan;
+import id.ac.tazkia.payment.virtualaccount.entity.Debitur;
+import id.ac.tazkia.payment.virtualaccount.entity.JenisTagihan;
+import id.ac.tazkia.payment.virtualaccount.entity.StatusPembayaran;
+import id.ac.tazkia.payment.virtualaccount.entity.Tagihan;
+import id.ac.tazkia.payment.virtualaccount.service.RekapTagihanService;
+import id.ac.tazkia.payment.virtualaccount.service.TagihanService;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Membandingkan rekap dashboard di memori dengan query group by di database yang dikonfigurasi.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class RekapTagihanServiceTests {
+    private static final YearMonth BULAN_LIVE = YearMonth.of(2018, 1);
+
+    @Autowired private RekapTagihanService rekapTagihanService;
+    @Autowired private TagihanService tagihanService;
+    @Autowired private TagihanDao tagihanDao;
+    @Autowired private DebiturDao debiturDao;
+    @Autowired private JenisTagihanDao jenisTagihanDao;
+    @Autowired private KodeBiayaDao kodeBiayaDao;
+
+    @Test
+    public void testRekapSamaDenganDatabase() {
+        long mulai = System.nanoTime();
+        List<RekapTagihan> database = tagihanDao.rekapTagihan(BULAN_LIVE.atDay(1), LocalDate.now());
+        System.out.println("Rekap dari tabel tagihan : " + (System.nanoTime() - mulai) / 1000 + " us");
+
+        mulai = System.nanoTime();
+        List<LaporanTagihan> laporan = rekapTagihanService.laporanPerJenisTagihan(BULAN_LIVE, YearMonth.now());
+        System.out.println("Rekap dari memori : " + (System.nanoTime() - mulai) / 1000 + " us");
+
+        Map<String, LaporanTagihan> seharusnya = new HashMap<>();
+        for (RekapTagihan r : database) {
+            LaporanTagihan l = seharusnya.computeIfAbsent(r.getJenisTagihan().getId(), k -> new LaporanTagihan());
+            if (StatusPembayaran.LUNAS.equals(r.getStatusPembayaran())) {
+                l.setJumlahTagihanLunas(l.getJumlahTagihanLunas() + r.getJumlahTagihan());
+            } else {
+                l.setJumlahTagihanBelumLunas(l.getJumlahTagihanBelumLunas() + r.getJumlahTagihan());
+            }
+            l.setNilaiTagihan(l.getNilaiTagihan().add(r.getNilaiTagihan()));
+            l.setNilaiPembayaran(l.getNilaiPembayaran().add(r.getNilaiPembayaran()));
+        }
+
+        Assert.assertEquals(seharusnya.size(), laporan.size());
+        for (LaporanTagihan l : laporan) {
+            LaporanTagihan s = seharusnya.get(l.getJenisTagihan().getId());
+            Assert.assertEquals(s.getJumlahTagihanLunas(), l.getJumlahTagihanLunas());
+            Assert.assertEquals(s.getJumlahTagihanBelumLunas(), l.getJumlahTagihanBelumLunas());
+            Assert.assertEquals(0, s.getNilaiTagihan().compareTo(l.getNilaiTagihan()));
+            Assert.assertEquals(0, s.getNilaiPembayaran().compareTo(l.getNilaiPembayaran()));
+        }
+    }
+
+    @Test
+    public void testTagihanBaruLangsungMasukRekap() {
+        JenisTagihan jenisTagihan = jenisTagihanDao.findByAktifOrderByKode(true).get(0);
+        Debitur debitur = debiturDao.findAll().iterator().next();
+        LaporanTagihan sebelum = laporan(jenisTagihan);
+
+        Tagihan t = new Tagihan();
+        t.setJenisTagihan(jenisTagihan);
+        t.setKodeBiaya(kodeBiayaDao.findAll().iterator().next());
+        t.setDebitur(debitur);
+        t.setKeterangan("Test rekap tagihan");
+        t.setNilaiTagihan(new BigDecimal("150000"));
+        t.setTanggalJatuhTempo(LocalDate.now().plusMonths(1));
+        tagihanService.saveTagihan(t);
+
+        LaporanTagihan sesudah = laporan(jenisTagihan);
+        Assert.assertEquals(sebelum.getJumlahTagihanBelumLunas() + 1, sesudah.getJumlahTagihanBelumLunas().longValue());
+        Assert.assertEquals(0, sebelum.getNilaiTagihan().add(new BigDecimal("150000"))
+                .compareTo(sesudah.getNilaiTagihan()));
+    }
+
+    private LaporanTagihan laporan(JenisTagihan jenisTagihan) {
+        for (LaporanTagihan l : rekapTagihanService.laporanPerJenisTagihan(BULAN_LIVE, YearMonth.now())) {
+            if (l.getJenisTagihan().getId().equals(jenisTagihan.getId())) {
+                return l;
+            }
+        }
+        return new LaporanTagihan();
+    }
+}
@@ -0,0 +1,117 @@
+package id.ac.tazkia.payment.virtualaccount;
+
+import id.ac.tazkia.payment.virtualaccount.dto.HasilRekonsiliasi;
+import id.ac.tazkia.payment.virtualaccount.dto.StatusRekonsiliasi;
+import id.ac.tazkia.payment.virtualaccount.service.RekonsiliasiService;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Membuat file mutasi dari pembayaran setahun terakhir di database yang dikonfigurasi,
+ * dengan sebagian baris dihapus, sebagian referensinya diubah dan beberapa mutasi fiktif.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class RekonsiliasiServiceTests {
+    private static final int JUMLAH_FIKTIF = 100;
+
+    @Autowired private RekonsiliasiService rekonsiliasiService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void rekonsiliasiSetahun() throws Exception {
+        LocalDate sampai = LocalDate.now();
+        LocalDate mulai = sampai.minusYears(1);
+
+        StringBuilder mutasi = new StringBuilder("bank,tanggal,referensi,jumlah\n");
+        AtomicInteger nomor = new AtomicInteger();
+        jdbcTemplate.query("select id_bank, cast(waktu_transaksi as date), referensi, jumlah from pembayaran " +
+                        "where id_bank is not null and waktu_transaksi >= ? and waktu_transaksi < ?",
+                rs -> {
+                    int n = nomor.incrementAndGet();
+                    if (n % 10 == 0) {
+                        // tidak ada di bank
+                        return;
+                    }
+                    // referensi bank berbeda, harus cocok berdasarkan nilai dan tanggal
+                    String referensi = n % 7 == 0 ? "BANK-" + n : rs.getString(3);
+                    mutasi.append(rs.getString(1)).append(',').append(rs.getDate(2)).append(',')
+                            .append(referensi).append(',').append(rs.getBigDecimal(4).toPlainString()).append('\n');
+                },
+                Timestamp.valueOf(mulai.atStartOfDay()), Timestamp.valueOf(sampai.plusDays(1).atStartOfDay()));
+        for (int i = 0; i < JUMLAH_FIKTIF; i++) {
+            mutasi.append("BANK-FIKTIF,").append(sampai).append(",FIKTIF-").append(i).append(",10000\n");
+        }
+        mutasi.append("format,salah\n");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long waktuMulai = System.nanoTime();
+        HasilRekonsiliasi hasil = rekonsiliasiService.rekonsiliasi(
+                new ByteArrayInputStream(mutasi.toString().getBytes(StandardCharsets.UTF_8)),
+                true, mulai, sampai, output);
+        System.out.println(String.format("Rekonsiliasi %d mutasi dengan %d pembayaran dalam %d ms : %s",
+                hasil.getJumlahMutasi(), hasil.getJumlahPembayaran(),
+                (System.nanoTime() - waktuMulai) / 1000000, hasil.getJumlahPerStatus()));
+
+        Assert.assertEquals(Integer.valueOf(1), hasil.getJumlah(StatusRekonsiliasi.FORMAT_SALAH));
+        Assert.assertTrue(hasil.getJumlah(StatusRekonsiliasi.TIDAK_ADA_DI_APLIKASI) >= JUMLAH_FIKTIF);
+        // setiap pembayaran periode cocok atau tidak ada di bank,
+        // ditambah mutasi yang cocok dengan pembayaran di hari toleransi sebelum atau sesudah periode
+        Assert.assertTrue(hasil.getJumlah(StatusRekonsiliasi.COCOK)
+                + hasil.getJumlah(StatusRekonsiliasi.COCOK_NILAI)
+                + hasil.getJumlah(StatusRekonsiliasi.NILAI_BERBEDA)
+                + hasil.getJumlah(StatusRekonsiliasi.TIDAK_ADA_DI_BANK) >= hasil.getJumlahPembayaran());
+
+        // header ditambah satu baris per mutasi dan per pembayaran yang tidak ada di bank
+        String isi = new String(output.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertEquals(1 + hasil.getJumlahMutasi() + hasil.getJumlah(StatusRekonsiliasi.TIDAK_ADA_DI_BANK),
+                isi.split("\n").length);
+    }
+
+    /**
+     * Mutasi dengan referensi yang tidak dikenal muncul lebih dulu dengan bank, nilai dan tanggal yang sama
+     * dengan mutasi berikutnya yang referensinya cocok. Pembayaran harus tetap dicocokkan dengan mutasi berikutnya.
+     */
+    @Test
+    public void referensiDidahulukanDaripadaNilai() throws Exception {
+        List<Map<String, Object>> daftar = jdbcTemplate.queryForList(
+                "select id_bank, cast(waktu_transaksi as date) as tanggal, referensi, jumlah from pembayaran " +
+                        "where id_bank is not null order by waktu_transaksi desc limit 1");
+        Assume.assumeFalse(daftar.isEmpty());
+        Map<String, Object> p = daftar.get(0);
+        String bank = p.get("id_bank").toString();
+        LocalDate tanggal = ((Date) p.get("tanggal")).toLocalDate();
+        String referensi = p.get("referensi").toString();
+        String jumlah = ((BigDecimal) p.get("jumlah")).toPlainString();
+
+        String mutasi = bank + "," + tanggal + ",BUKAN-" + referensi + "," + jumlah + "\n"
+                + bank + "," + tanggal + "," + referensi + "," + jumlah + "\n";
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        rekonsiliasiService.rekonsiliasi(new ByteArrayInputStream(mutasi.getBytes(StandardCharsets.UTF_8)),
+                false, tanggal, tanggal, output);
+
+        String[] baris = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        // baris pertama boleh cocok berdasarkan nilai dengan pembayaran lain, tetapi tidak dengan pembayaran ini
+        Assert.assertFalse(baris[1], baris[1].contains("," + referensi + ","));
+        Assert.assertTrue(baris[2], baris[2].startsWith(StatusRekonsiliasi.COCOK.name() + ",2,"));
+        Assert.assertTrue(baris[2], baris[2].contains("," + referensi + ","));
+    }
+}
@@ -0,0 +1,89 @@
+package id.ac.tazkia.payment.virtualaccount;
+
+import id.ac.tazkia.payment.virtualaccount.dao.PendingVaRequestDao;
+import id.ac.tazkia.payment.virtualaccount.dao.VirtualAccountDao;
+import id.ac.tazkia.payment.virtualaccount.dto.VaRequestStatus;
+import id.ac.tazkia.payment.virtualaccount.dto.VaResponse;
+import id.ac.tazkia.payment.virtualaccount.entity.PendingVaRequest;
+import id.ac.tazkia.payment.virtualaccount.entity.VaStatus;
+import id.ac.tazkia.payment.virtualaccount.entity.VirtualAccount;
+import id.ac.tazkia.payment.virtualaccount.service.VaResponseService;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Iterator;
+
+/**
+ * Response untuk request CREATE yang datang setelah tagihan dinonaktifkan dan VA sudah diantrikan untuk DELETE.
+ * Perubahan di database di-rollback setelah setiap test.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class VaResponseServiceTests {
+
+    @Autowired private VaResponseService vaResponseService;
+    @Autowired private VirtualAccountDao virtualAccountDao;
+    @Autowired private PendingVaRequestDao pendingVaRequestDao;
+
+    @Test
+    public void responseSuksesSetelahDeleteDiantrikan() {
+        VirtualAccount va = createDenganDeleteDiantrikan();
+        PendingVaRequest pending = createPending(va);
+
+        vaResponseService.prosesResponse(createResponse(va, pending, VaRequestStatus.SUCCESS));
+
+        VirtualAccount hasil = virtualAccountDao.findById(va.getId()).get();
+        Assert.assertEquals(VaStatus.DELETE, hasil.getVaStatus());
+        // nomor tetap dicatat supaya DELETE bisa dikirim
+        Assert.assertEquals("1234567890", hasil.getNomor());
+    }
+
+    @Test
+    public void responseErrorSetelahDeleteDiantrikan() {
+        VirtualAccount va = createDenganDeleteDiantrikan();
+        PendingVaRequest pending = createPending(va);
+
+        vaResponseService.prosesResponse(createResponse(va, pending, VaRequestStatus.ERROR));
+
+        VirtualAccount hasil = virtualAccountDao.findById(va.getId()).get();
+        Assert.assertEquals(VaStatus.DELETE, hasil.getVaStatus());
+        Assert.assertNull(hasil.getNomor());
+    }
+
+    private VirtualAccount createDenganDeleteDiantrikan() {
+        Iterator<VirtualAccount> daftarVa = virtualAccountDao.findAll().iterator();
+        Assume.assumeTrue(daftarVa.hasNext());
+
+        // request CREATE sudah dikirim, lalu tagihannya dinonaktifkan
+        VirtualAccount va = daftarVa.next();
+        va.setNomor(null);
+        va.setRequestTerakhir(VaStatus.CREATE);
+        va.setVaStatus(VaStatus.DELETE);
+        return virtualAccountDao.save(va);
+    }
+
+    private PendingVaRequest createPending(VirtualAccount va) {
+        PendingVaRequest pending = new PendingVaRequest();
+        pending.setVirtualAccount(va);
+        pending.setRequestType(VaStatus.CREATE);
+        return pendingVaRequestDao.save(pending);
+    }
+
+    private VaResponse createResponse(VirtualAccount va, PendingVaRequest pending, VaRequestStatus status) {
+        VaResponse response = new VaResponse();
+        response.setRequestId(pending.getId());
+        response.setRequestType(VaStatus.CREATE);
+        response.setRequestStatus(status);
+        response.setAccountNumber("1234567890");
+        response.setInvoiceNumber(va.getTagihan().getNomor());
+        response.setBankId(va.getBank().getId());
+        return response;
+    }
+}
@@ -0,0 +1,49 @@
+package id.ac.tazkia.payment.virtualaccount.dao;
+
+import id.ac.tazkia.payment.virtualaccount.dto.RekapPembayaran;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class RekapPembayaranHarianDaoTests {
+
+    @Autowired private RekapPembayaranHarianDao rekapPembayaranHarianDao;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testRekapSamaDenganTabelPembayaran() {
+        LocalDate sampai = LocalDate.now();
+        LocalDate mulai = sampai.minusMonths(1);
+
+        long awal = System.nanoTime();
+        List<RekapPembayaran> rekap = rekapPembayaranHarianDao.rekapHarian(mulai, sampai);
+        System.out.println("Rekap dari rekap_pembayaran_harian : " + (System.nanoTime() - awal) / 1000 + " us");
+
+        awal = System.nanoTime();
+        List<Map<String, Object>> mentah = jdbcTemplate.queryForList(
+                "select cast(waktu_transaksi as date) as tanggal, sum(jumlah) as nilai, count(*) as jumlah " +
+                        "from pembayaran where waktu_transaksi >= ? and waktu_transaksi < ? " +
+                        "group by cast(waktu_transaksi as date) order by cast(waktu_transaksi as date)",
+                Date.valueOf(mulai), Date.valueOf(sampai.plusDays(1)));
+        System.out.println("Rekap dari tabel pembayaran : " + (System.nanoTime() - awal) / 1000 + " us");
+
+        Assert.assertEquals(mentah.size(), rekap.size());
+        for (int i = 0; i < rekap.size(); i++) {
+            Assert.assertEquals(mentah.get(i).get("tanggal").toString(), rekap.get(i).getTanggal().toString());
+            Assert.assertEquals(0, ((BigDecimal) mentah.get(i).get("nilai")).compareTo(rekap.get(i).getNilai()));
+            Assert.assertEquals(((Number) mentah.get(i).get("jumlah")).longValue(), rekap.get(i).getJumlah().longValue());
+        }
+    }
+}
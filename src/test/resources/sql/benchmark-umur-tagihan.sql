@@ -0,0 +1,57 @@
+-- Benchmark laporan umur tagihan dengan 1 juta tagihan.
+-- Jalankan di database development : psql -f benchmark-umur-tagihan.sql
+-- Data benchmark memakai prefix BENCH-UMUR- dan dihapus lagi di akhir script.
+
+insert into debitur (id, nomor_debitur, nama)
+select 'BENCH-UMUR-' || i, 'BENCH-UMUR-' || i, 'Debitur Benchmark Umur ' || i
+from generate_series(1, 100000) i;
+
+-- jatuh tempo tersebar 365 hari ke belakang sampai 60 hari ke depan,
+-- sekitar 20% lunas (NONAKTIF) dan 20% dibayar sebagian
+insert into tagihan (id, id_debitur, id_jenis_tagihan, id_kode_biaya, nomor, nilai_tagihan, jumlah_pembayaran,
+                     tanggal_tagihan, tanggal_jatuh_tempo, keterangan,
+                     status_tagihan, status_pembayaran, status_notifikasi)
+with jt as (select array_agg(id order by kode) as id from jenis_tagihan),
+     kb as (select array_agg(id order by kode) as id from kode_biaya)
+select 'BENCH-UMUR-' || i,
+       'BENCH-UMUR-' || (i % 100000 + 1),
+       jt.id[i % array_length(jt.id, 1) + 1],
+       kb.id[i % array_length(kb.id, 1) + 1],
+       'BENCH-UMUR-' || i,
+       1000000,
+       case i % 5 when 0 then 1000000 when 1 then 250000 else 0 end,
+       current_date - 400 + (i % 365),
+       current_date - 365 + (i % 425),
+       'Benchmark umur tagihan',
+       case i % 5 when 0 then 'NONAKTIF' else 'AKTIF' end,
+       case i % 5 when 0 then 'LUNAS' when 1 then 'DIBAYAR_SEBAGIAN' else 'BELUM_DIBAYAR' end,
+       'SUDAH_TERKIRIM'
+from generate_series(1, 1000000) i, jt, kb;
+
+analyze tagihan;
+
+\timing on
+
+-- query yang sama dengan UmurTagihanService.SQL_UMUR_TAGIHAN, tanggal laporan hari ini
+explain (analyze, buffers)
+select j.nama, k.kode, count(*),
+       sum(case when t.tanggal_jatuh_tempo >= current_date - 30 then t.nilai_tagihan - t.jumlah_pembayaran else 0 end),
+       sum(case when t.tanggal_jatuh_tempo < current_date - 30 and t.tanggal_jatuh_tempo >= current_date - 60
+           then t.nilai_tagihan - t.jumlah_pembayaran else 0 end),
+       sum(case when t.tanggal_jatuh_tempo < current_date - 60 and t.tanggal_jatuh_tempo >= current_date - 90
+           then t.nilai_tagihan - t.jumlah_pembayaran else 0 end),
+       sum(case when t.tanggal_jatuh_tempo < current_date - 90 then t.nilai_tagihan - t.jumlah_pembayaran else 0 end),
+       sum(t.nilai_tagihan - t.jumlah_pembayaran)
+from tagihan t
+inner join jenis_tagihan j on t.id_jenis_tagihan = j.id
+inner join kode_biaya k on t.id_kode_biaya = k.id
+where t.status_tagihan = 'AKTIF' and t.tanggal_jatuh_tempo <= current_date
+  and t.nilai_tagihan > t.jumlah_pembayaran
+group by j.kode, j.nama, k.kode
+order by j.kode, k.kode;
+
+\timing off
+
+delete from tagihan where id like 'BENCH-UMUR-%';
+delete from debitur where id like 'BENCH-UMUR-%';
+analyze tagihan;